@@ -21,6 +21,17 @@ package quarks.execution;
  *    <td>String</td>
  *    <td>The name of the job.</td>
  *  </tr>
+ * <tr>
+ *    <td>{@link #JOB_THREADS}</td>
+ *    <td>Integer</td>
+ *    <td>The maximum number of threads used concurrently to 
+ *        execute the job's tasks.</td>
+ *  </tr>
+ * <tr>
+ *    <td>{@link #JOB_VIRTUAL_THREADS}</td>
+ *    <td>Boolean</td>
+ *    <td>Use virtual threads for the job's threads.</td>
+ *  </tr>
  * </table>
  * </p>
  */
@@ -31,4 +42,25 @@ public interface Configs {
      * The value is {@value}.
      */
     static final String JOB_NAME = "jobName";
+
+    /**
+     * JOB_THREADS is used to identify the submission configuration property 
+     * containing the maximum number of threads used concurrently to 
+     * execute the job's tasks. When the provider's threads are shared
+     * across jobs this is the job's quota of those threads.
+     * A task which never completes holds one of the job's threads
+     * for the lifetime of the job, so the value must exceed the
+     * number of such tasks.
+     * The value is {@value}.
+     */
+    static final String JOB_THREADS = "jobThreads";
+
+    /**
+     * JOB_VIRTUAL_THREADS is used to identify the submission configuration 
+     * property indicating if threads dedicated to the job's oplets are
+     * virtual threads. Ignored if the Java virtual machine does not
+     * support virtual threads.
+     * The value is {@value}.
+     */
+    static final String JOB_VIRTUAL_THREADS = "jobVirtualThreads";
 }
@@ -0,0 +1,55 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet;
+
+/**
+ * Credit for submitting tuples to downstream processing.
+ * <P>
+ * Credit is the number of tuples that can be submitted before
+ * a bounded buffer in the downstream processing is full.
+ * It is advertised by oplets implementing {@link CreditProvider},
+ * and an oplet obtains the credit for its outputs from
+ * {@link OpletContext#getOutputCredit()}.
+ * A source oplet that honors credit stops submitting tuples
+ * while there is no credit, rather than filling the buffer,
+ * thus memory is bounded without discarding tuples.
+ * </P>
+ * <P>
+ * Credit is advisory, as tuples may be submitted concurrently by
+ * other threads a buffer may still be full when a tuple is submitted,
+ * the buffer then applies its own policy.
+ * </P>
+ */
+public interface Credit {
+
+    /**
+     * Credit that is never exhausted, for outputs
+     * that do not reach a bounded buffer.
+     */
+    Credit UNLIMITED = new Credit() {
+        @Override
+        public int available() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void await() {
+        }
+    };
+
+    /**
+     * Get the number of tuples that can currently be submitted.
+     * @return Number of tuples that can be submitted, zero
+     * if there is no credit, {@code Integer.MAX_VALUE} if unlimited.
+     */
+    int available();
+
+    /**
+     * Wait until there is credit to submit a tuple.
+     * Returns immediately if {@link #available()} is not zero.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    void await() throws InterruptedException;
+}
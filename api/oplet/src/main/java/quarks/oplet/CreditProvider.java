@@ -0,0 +1,36 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet;
+
+/**
+ * An oplet that holds its input tuples in a bounded buffer
+ * without discarding them, and advertises the buffer's free capacity
+ * as {@link Credit credit} to upstream oplets.
+ * <P>
+ * The runtime provides an oplet with the combined credit of the
+ * credit providers reached by its outputs through
+ * {@link OpletContext#getOutputCredit()}. Credit flows through any oplet
+ * that is not a credit provider, so a source's credit is that of the
+ * nearest bounded buffers downstream of it.
+ * </P>
+ * <P>
+ * Every credit provider stops the flow of credit. An oplet that discards
+ * tuples, or decouples its upstream processing from its downstream
+ * processing without blocking, must be a credit provider returning
+ * {@link Credit#UNLIMITED}, otherwise upstream processing would be
+ * blocked by a bounded buffer beyond it, defeating the oplet.
+ * </P>
+ */
+public interface CreditProvider {
+
+    /**
+     * Get the credit for this oplet's input.
+     * Called by the runtime once this oplet has been initialized.
+     * @return Credit for this oplet's input, {@link Credit#UNLIMITED} if this
+     * oplet never blocks its upstream processing, for example due to its configuration,
+     * {@code null} if the oplet has no credit yet.
+     */
+    Credit getInputCredit();
+}
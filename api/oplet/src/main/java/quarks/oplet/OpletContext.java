@@ -61,6 +61,16 @@ public interface OpletContext<I, O> extends RuntimeServices {
      */
     List<? extends Consumer<O>> getOutputs();
 
+    /**
+     * Get the credit for submitting tuples on this oplet's outputs.
+     * <P>
+     * The credit is the minimum credit of the {@link CreditProvider credit providers}
+     * downstream of this oplet, {@link Credit#UNLIMITED} if there are none.
+     * </P>
+     * @return Credit for this oplet's outputs.
+     */
+    Credit getOutputCredit();
+
     /**
      * Get the job hosting this oplet. 
      * @return {@link JobContext} hosting this oplet invocation.
@@ -47,8 +47,15 @@ public abstract class PeriodicSource<T> extends Source<T> implements Runnable, P
 
     protected abstract void fetchTuples() throws Exception;
 
+    /**
+     * Fetch tuples unless the downstream processing has no
+     * {@link quarks.oplet.Credit credit}, in which case this period
+     * is skipped rather than blocking the scheduler's thread.
+     */
     @Override
     public void run() {
+        if (getCredit().available() == 0)
+            return;
         try {
             fetchTuples();
         } catch (Exception e) {
@@ -11,7 +11,12 @@ public abstract class ProcessSource<T> extends Source<T>implements Runnable {
     @Override
     public void start() {
         Thread t = getOpletContext().getService(ThreadFactory.class).newThread(this);
-        t.setDaemon(false);
+        try {
+            t.setDaemon(false);
+        } catch (IllegalArgumentException e) {
+            // Virtual threads are always daemon threads,
+            // the runtime tracks them as keeping the job alive.
+        }
         t.start();
     }
 
@@ -0,0 +1,278 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.core;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import quarks.function.Consumer;
+import quarks.function.Function;
+import quarks.function.Predicate;
+import quarks.function.ToIntFunction;
+import quarks.oplet.OpletContext;
+
+/**
+ * Route each tuple to a set of output ports.
+ * <BR>
+ * The router has a table of routes, each route being a set of
+ * output ports. A tuple is submitted to each output port of its
+ * route in ascending port order, thus a route with multiple ports
+ * multicasts the tuple. A tuple's route is determined either by:
+ * <UL>
+ * <LI>a selector function, called once per tuple, returning the
+ * index of the tuple's route. If the index is negative, or not less
+ * than the number of routes, the tuple is dropped.
+ * {@link #firstMatch(List)} returns a selector evaluating ordered rules
+ * and {@link #lookup(Function, Map, int)} a selector looking up a tuple's
+ * key in a table.</LI>
+ * <LI>a list of rule predicates, each evaluated once per tuple, the
+ * tuple is submitted to the union of the routes of all the rules it
+ * satisfies, each output port at most once. A tuple satisfying no rule is
+ * submitted to the last route.</LI>
+ * </UL>
+ * The output ports are resolved when the oplet is initialized, so
+ * routing a tuple costs its selection and a submission to each of its ports.
+ *
+ * @param <T> Type of the tuple.
+ * @see Split
+ */
+public class Router<T> extends AbstractOplet<T, T> implements Consumer<T> {
+
+    private static final long serialVersionUID = 1L;
+    private final ToIntFunction<T> selector;
+    private final List<Predicate<T>> predicates;
+    private final int[][] routes;
+    /** For each route a bit set of its ports, only for rules. */
+    private final long[][] portMasks;
+    private List<List<Consumer<T>>> targets;
+    private List<? extends Consumer<T>> destinations;
+
+    /**
+     * Create a router submitting each tuple to the route returned by a selector.
+     * @param selector Function returning the index of each tuple's route.
+     * @param routes Output ports of each route, the ports of a route
+     * are distinct.
+     */
+    public Router(ToIntFunction<T> selector, int[][] routes) {
+        this.selector = selector;
+        this.predicates = null;
+        this.routes = sortedRoutes(routes);
+        this.portMasks = null;
+    }
+
+    /**
+     * Create a router submitting each tuple to the routes of all the rules it satisfies.
+     * Route {@code i} is the route of the rule {@code predicates.get(i)}, the last route,
+     * {@code routes[predicates.size()]}, is the route of tuples satisfying no rule.
+     * @param predicates Rule predicates.
+     * @param routes Output ports of each route, the ports of a route
+     * are distinct.
+     */
+    public Router(List<? extends Predicate<T>> predicates, int[][] routes) {
+        if (routes.length != predicates.size() + 1)
+            throw new IllegalArgumentException("routes: " + routes.length);
+        this.selector = null;
+        this.predicates = new ArrayList<>(predicates);
+        this.routes = sortedRoutes(routes);
+
+        int maxPort = -1;
+        for (int[] ports : this.routes) {
+            if (ports.length != 0)
+                maxPort = Math.max(maxPort, ports[ports.length - 1]);
+        }
+        this.portMasks = new long[routes.length][(maxPort >> 6) + 1];
+        for (int r = 0; r < routes.length; r++) {
+            for (int port : this.routes[r]) {
+                if (port >= 0)
+                    portMasks[r][port >> 6] |= 1L << port;
+            }
+        }
+    }
+
+    private static int[][] sortedRoutes(int[][] routes) {
+        int[][] sorted = new int[routes.length][];
+        for (int r = 0; r < routes.length; r++) {
+            int[] ports = routes[r].clone();
+            Arrays.sort(ports);
+            for (int i = 1; i < ports.length; i++) {
+                if (ports[i] == ports[i - 1])
+                    throw new IllegalArgumentException("duplicate port: " + ports[i]);
+            }
+            sorted[r] = ports;
+        }
+        return sorted;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+
+        destinations = context.getOutputs();
+        List<List<Consumer<T>>> resolved = new ArrayList<>(routes.length);
+        for (int[] ports : routes) {
+            List<Consumer<T>> route = new ArrayList<>(ports.length);
+            for (int port : ports) {
+                if (port < 0 || port >= destinations.size())
+                    throw new IllegalArgumentException("port: " + port);
+                route.add(destinations.get(port));
+            }
+            resolved.add(route);
+        }
+        targets = resolved;
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public List<Consumer<T>> getInputs() {
+        return Collections.singletonList(this);
+    }
+
+    @Override
+    public void accept(T tuple) {
+        if (selector == null) {
+            acceptAllMatches(tuple);
+            return;
+        }
+        int r = selector.applyAsInt(tuple);
+        if (r < 0 || r >= targets.size())
+            return;
+        for (Consumer<T> target : targets.get(r))
+            target.accept(tuple);
+    }
+
+    /**
+     * Evaluate every rule once and submit the tuple to the union of
+     * the ports of the satisfied rules. Only when a single rule, or no
+     * rule, is satisfied is its route used directly.
+     */
+    private void acceptAllMatches(T tuple) {
+        int first = -1;
+        boolean[] matched = null;
+        for (int i = 0; i < predicates.size(); i++) {
+            if (!predicates.get(i).test(tuple))
+                continue;
+            if (first == -1) {
+                first = i;
+            } else {
+                if (matched == null)
+                    matched = new boolean[predicates.size()];
+                matched[i] = true;
+            }
+        }
+
+        if (matched == null) {
+            for (Consumer<T> target : targets.get(first == -1 ? predicates.size() : first))
+                target.accept(tuple);
+            return;
+        }
+
+        long[] firstMask = portMasks[first];
+        for (int w = 0; w < firstMask.length; w++) {
+            long ports = firstMask[w];
+            for (int i = first + 1; i < matched.length; i++) {
+                if (matched[i])
+                    ports |= portMasks[i][w];
+            }
+            while (ports != 0) {
+                destinations.get((w << 6) + Long.numberOfTrailingZeros(ports)).accept(tuple);
+                ports &= ports - 1;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeFunction(selector);
+        if (predicates != null) {
+            for (Predicate<T> predicate : predicates)
+                closeFunction(predicate);
+        }
+    }
+
+    /**
+     * Selector evaluating ordered rules, the route of a tuple is the index
+     * of the first predicate it satisfies, {@code predicates.size()}
+     * if it satisfies none.
+     * Predicates after the first satisfied predicate are not evaluated.
+     * @param <T> Type of the tuple.
+     * @param predicates Ordered rule predicates.
+     * @return Selector for a {@code Router}.
+     */
+    public static <T> ToIntFunction<T> firstMatch(List<? extends Predicate<T>> predicates) {
+        return new FirstMatch<T>(predicates);
+    }
+
+    /**
+     * Selector looking up a tuple's key in a table, the route of a tuple is the
+     * value for its key, {@code otherwise} if its key is not in {@code routes}.
+     * @param <T> Type of the tuple.
+     * @param <K> Type of the key.
+     * @param keyFunction Function returning the key of a tuple.
+     * @param routes Table of key to route index.
+     * @param otherwise Route index of tuples whose key is not in the table,
+     * {@code -1} to drop them.
+     * @return Selector for a {@code Router}.
+     */
+    public static <T,K> ToIntFunction<T> lookup(Function<T,K> keyFunction, Map<K, Integer> routes, int otherwise) {
+        return new Lookup<T,K>(keyFunction, routes, otherwise);
+    }
+
+    private static class FirstMatch<T> implements ToIntFunction<T>, AutoCloseable {
+        private static final long serialVersionUID = 1L;
+        private final List<Predicate<T>> predicates;
+
+        FirstMatch(List<? extends Predicate<T>> predicates) {
+            this.predicates = new ArrayList<>(predicates);
+        }
+
+        @Override
+        public int applyAsInt(T tuple) {
+            for (int i = 0; i < predicates.size(); i++) {
+                if (predicates.get(i).test(tuple))
+                    return i;
+            }
+            return predicates.size();
+        }
+
+        @Override
+        public void close() throws Exception {
+            for (Predicate<T> predicate : predicates)
+                closeFunction(predicate);
+        }
+    }
+
+    private static class Lookup<T,K> implements ToIntFunction<T>, AutoCloseable {
+        private static final long serialVersionUID = 1L;
+        private final Function<T,K> keyFunction;
+        private final HashMap<K, Integer> routes;
+        private final int otherwise;
+
+        Lookup(Function<T,K> keyFunction, Map<K, Integer> routes, int otherwise) {
+            this.keyFunction = keyFunction;
+            this.routes = new HashMap<>(routes);
+            this.otherwise = otherwise;
+        }
+
+        @Override
+        public int applyAsInt(T tuple) {
+            Integer r = routes.get(keyFunction.apply(tuple));
+            return r == null ? otherwise : r;
+        }
+
+        @Override
+        public void close() throws Exception {
+            closeFunction(keyFunction);
+        }
+    }
+}
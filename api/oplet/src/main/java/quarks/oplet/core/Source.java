@@ -8,28 +8,50 @@ import java.util.Collections;
 import java.util.List;
 
 import quarks.function.Consumer;
+import quarks.oplet.Credit;
 import quarks.oplet.OpletContext;
 
 public abstract class Source<T> extends AbstractOplet<Void, T> {
 
     private Consumer<T> destination;
+    private Credit credit;
 
     @Override
     public void initialize(OpletContext<Void, T> context) {
         super.initialize(context);
 
         destination = context.getOutputs().get(0);
+        credit = context.getOutputCredit();
     }
 
     protected Consumer<T> getDestination() {
         return destination;
     }
+
+    /**
+     * Get the credit for submitting tuples.
+     * @return Credit for the single output.
+     * @see OpletContext#getOutputCredit()
+     */
+    protected Credit getCredit() {
+        return credit;
+    }
     
     /**
      * Submit a tuple to single output.
+     * If the downstream processing has no {@link Credit credit}
+     * the calling thread waits until it does.
      * @param tuple Tuple to be submitted.
      */
     protected void submit(T tuple) {
+        if (credit.available() == 0) {
+            try {
+                credit.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
         getDestination().accept(tuple);
     }
 
@@ -7,8 +7,9 @@ package quarks.oplet.functional;
 
 import static quarks.function.Functions.closeFunction;
 
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import quarks.function.Consumer;
 import quarks.oplet.core.Source;
@@ -30,27 +31,23 @@ public class Events<T> extends Source<T>implements Consumer<T> {
         this.eventSetup = eventSetup;
     }
 
+    private Future<?> endlessEventSource;
+
     @Override
     public void close() throws Exception {
+        if (endlessEventSource != null)
+            endlessEventSource.cancel(false);
         closeFunction(eventSetup);
     }
 
     @Override
     public void start() {
-        // Allocate a thread so the job containing this oplet
-        // doesn't look "complete" and shutdown.
-        Thread endlessEventSource = getOpletContext()
-                .getService(ThreadFactory.class)
-                .newThread(() -> {
-                    try {
-                        Thread.sleep(Long.MAX_VALUE);
-                    }
-                    catch (InterruptedException e) {
-                        // cancelled; we're done.
-                    }
-                });
-        endlessEventSource.setDaemon(false);
-        endlessEventSource.start();
+        // Schedule a task that never executes so the job containing
+        // this oplet doesn't look "complete" and shutdown, 
+        // without dedicating a thread to the oplet.
+        endlessEventSource = getOpletContext()
+                .getService(ScheduledExecutorService.class)
+                .schedule(() -> { }, Long.MAX_VALUE, TimeUnit.DAYS);
 
         // It's possible for uses to do things like a blocking connect
         // to an external system from eventSetup.accept() so run it as
@@ -0,0 +1,197 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import quarks.function.BiConsumer;
+import quarks.function.BiFunction;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Map tuples asynchronously.
+ * <P>
+ * For each tuple {@code function.accept(tuple, callback)} is called,
+ * the function starts the mapping, for example an asynchronous request
+ * to an external service, and returns without waiting for it to complete.
+ * Once the mapping completes {@code callback.accept(result, null)} is called,
+ * or {@code callback.accept(null, error)} if it failed, by any thread.
+ * Only the first call to {@code callback} for a tuple has any effect.
+ * </P>
+ * <P>
+ * If a mapping fails, or does not complete within the timeout,
+ * the result is {@code failureFunction.apply(tuple, error)}, with a
+ * {@code TimeoutException} for a timeout. Without a failure function
+ * failed tuples are discarded. {@code null} results are not submitted.
+ * </P>
+ * <P>
+ * At most {@code maxInFlight} tuples are being mapped, or for ordered mapping
+ * waiting for earlier tuples to complete. Once reached the upstream
+ * processing is blocked until a tuple's result is submitted.
+ * </P>
+ * <P>
+ * Results are submitted on the thread that completes the mapping,
+ * either the thread calling {@code callback} or the thread processing a timeout.
+ * With ordered mapping results are submitted in the order of their
+ * input tuples, otherwise in the order they complete.
+ * </P>
+ *
+ * @param <T> Type of the input tuple.
+ * @param <U> Type of the output tuple.
+ */
+public class AsyncMap<T,U> extends Pipe<T,U> implements CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    private final BiConsumer<T, BiConsumer<U, Throwable>> function;
+    private final int maxInFlight;
+    private final boolean ordered;
+    private final long timeoutMs;
+    private final BiFunction<T, Throwable, U> failureFunction;
+
+    private ScheduledExecutorService ses;
+    private Semaphore inFlight;
+    private ReorderBuffer<U> reorder;
+    private long nextSequence;
+
+    /**
+     * Map tuples asynchronously.
+     * @param function Function starting the mapping of a tuple.
+     * @param maxInFlight Maximum number of tuples in flight.
+     * @param ordered True to submit results in the order of their input tuples.
+     * @param timeout Time for a mapping to complete, zero for no timeout.
+     * @param unit Unit for {@code timeout}.
+     * @param failureFunction Function returning the result of a failed mapping,
+     * {@code null} to discard failed tuples.
+     */
+    public AsyncMap(BiConsumer<T, BiConsumer<U, Throwable>> function, int maxInFlight, boolean ordered,
+            long timeout, TimeUnit unit, BiFunction<T, Throwable, U> failureFunction) {
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("maxInFlight: " + maxInFlight);
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout: " + timeout);
+        this.function = function;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+        this.timeoutMs = unit.toMillis(timeout);
+        this.failureFunction = failureFunction;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, U> context) {
+        super.initialize(context);
+        ses = context.getService(ScheduledExecutorService.class);
+        inFlight = new Semaphore(maxInFlight);
+        if (ordered)
+            reorder = new ReorderBuffer<>(inFlight, maxInFlight, getDestination());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The credit is the number of tuples that can be accepted
+     * before {@code maxInFlight} is reached.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return inFlight == null ? null : new SemaphoreCredit(inFlight);
+    }
+
+    @Override
+    public void accept(T tuple) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        long sequence = 0;
+        if (ordered) {
+            synchronized (this) {
+                sequence = nextSequence++;
+            }
+        }
+
+        Mapping mapping = new Mapping(sequence, tuple);
+        if (timeoutMs > 0)
+            mapping.timeout = ses.schedule(
+                    () -> mapping.complete(null, new TimeoutException()), timeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            function.accept(tuple, mapping);
+        } catch (RuntimeException e) {
+            // Failure starting the mapping, unless it had completed
+            // in which case the failure is in the downstream processing.
+            if (mapping.completed.get())
+                throw e;
+            mapping.complete(null, e);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeFunction(function);
+        closeFunction(failureFunction);
+    }
+
+    /**
+     * Callback for a tuple's mapping.
+     */
+    @SuppressWarnings("serial")
+    private class Mapping implements BiConsumer<U, Throwable> {
+        private final long sequence;
+        private final T tuple;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        Mapping(long sequence, T tuple) {
+            this.sequence = sequence;
+            this.tuple = tuple;
+        }
+
+        @Override
+        public void accept(U result, Throwable error) {
+            complete(result, error);
+        }
+
+        void complete(U result, Throwable error) {
+            if (!completed.compareAndSet(false, true))
+                return;
+            ScheduledFuture<?> t = timeout;
+            if (t != null)
+                t.cancel(false);
+
+            U mapped = null;
+            try {
+                if (error == null)
+                    mapped = result;
+                else if (failureFunction != null)
+                    mapped = failureFunction.apply(tuple, error);
+            } finally {
+                // A failed failure function has no result, so later results are not held up.
+                submitResult(mapped);
+            }
+        }
+
+        private void submitResult(U result) {
+            if (ordered) {
+                reorder.complete(sequence, result);
+            } else {
+                inFlight.release();
+                if (result != null)
+                    submit(result);
+            }
+        }
+    }
+}
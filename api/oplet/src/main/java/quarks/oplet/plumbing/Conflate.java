@@ -0,0 +1,244 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import quarks.function.Function;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Conflate tuples to the latest tuple per key.
+ * <P>
+ * Each key seen on the input stream has a slot holding its
+ * most recent tuple that has not yet been submitted.
+ * An arriving tuple overwrites its key's slot, so when downstream
+ * processing cannot keep up earlier tuples for the key are discarded.
+ * While a key has a tuple waiting to be submitted overwriting its
+ * slot requires no allocation. A slot is removed once its tuple has been
+ * submitted and no later tuple has arrived for the key, so state is only
+ * held for keys with tuples waiting to be submitted.
+ * </P>
+ * <P>
+ * Tuples are submitted by a single drain task on a thread of the
+ * job's {@code ScheduledExecutorService}, so the upstream processing
+ * is never blocked by downstream processing.
+ * <UL>
+ * <LI>With a period the drain task runs at a fixed rate, submitting
+ * the latest tuple of each key updated since it last ran.</LI>
+ * <LI>Without a period the drain task runs whenever a key has
+ * been updated, and submits as fast as the downstream processing
+ * can consume tuples.</LI>
+ * </UL>
+ * Keys are submitted in the order they were first updated since
+ * they were last submitted.
+ * </P>
+ *
+ * @param <T> Tuple type.
+ * @param <K> Key type.
+ */
+public class Conflate<T,K> extends Pipe<T,T> implements CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    private final Function<T,K> keyFunction;
+    private final long periodMs;
+
+    private ScheduledExecutorService ses;
+    private ScheduledFuture<?> periodic;
+
+    private ConcurrentHashMap<K, Slot<K>> slots;
+    private ConcurrentLinkedQueue<Slot<K>> updated;
+    private AtomicBoolean draining;
+
+    /**
+     * Conflate tuples, submitting the latest tuple
+     * per key as fast as downstream processing allows.
+     * @param keyFunction Key function for tuples.
+     */
+    public Conflate(Function<T,K> keyFunction) {
+        this(keyFunction, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Conflate tuples, submitting the latest tuple
+     * per key every {@code period}.
+     * @param keyFunction Key function for tuples.
+     * @param period Period between submissions, zero to submit
+     * as fast as downstream processing allows.
+     * @param unit Unit for {@code period}.
+     */
+    public Conflate(Function<T,K> keyFunction, long period, TimeUnit unit) {
+        if (period < 0)
+            throw new IllegalArgumentException("period: " + period);
+        this.keyFunction = keyFunction;
+        this.periodMs = unit.toMillis(period);
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+        ses = context.getService(ScheduledExecutorService.class);
+        slots = new ConcurrentHashMap<>();
+        updated = new ConcurrentLinkedQueue<>();
+        draining = new AtomicBoolean();
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        if (periodMs > 0)
+            periodic = ses.scheduleAtFixedRate(() -> drainUpdated(), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * Conflation discards tuples rather than blocking
+     * the upstream processing, so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return Credit.UNLIMITED;
+    }
+
+    @Override
+    public void accept(T tuple) {
+        final K key = keyFunction.apply(tuple);
+        Slot<K> slot;
+        for (;;) {
+            slot = slots.get(key);
+            if (slot == null) {
+                Slot<K> created = new Slot<>(key);
+                slot = slots.putIfAbsent(key, created);
+                if (slot == null)
+                    slot = created;
+            }
+            if (slot.offer(tuple))
+                break;
+            // Slot was removed once drained, replace it.
+            slots.remove(key, slot);
+        }
+
+        if (slot.queued.compareAndSet(false, true))
+            updated.add(slot);
+        if (periodMs == 0 && !draining.get() && draining.compareAndSet(false, true))
+            ses.execute(() -> drainAll());
+    }
+
+    /**
+     * Submit the latest tuple of each key updated
+     * before this periodic run started.
+     */
+    private void drainUpdated() {
+        for (int n = slots.size(); n > 0; n--) {
+            if (!submitNext())
+                return;
+        }
+    }
+
+    /**
+     * Submit the latest tuple of each updated key until
+     * no keys have been updated.
+     */
+    private void drainAll() {
+        for (;;) {
+            try {
+                while (submitNext())
+                    ;
+            } finally {
+                draining.set(false);
+            }
+            // A key may have been updated after the queue was seen
+            // as empty but before draining was cleared.
+            if (updated.isEmpty() || !draining.compareAndSet(false, true))
+                return;
+        }
+    }
+
+    /**
+     * Submit the latest tuple of the oldest updated key.
+     * @return {@code false} if no key has been updated.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean submitNext() {
+        Slot<K> slot = updated.poll();
+        if (slot == null)
+            return false;
+        // Clear queued before taking the tuple so that a tuple
+        // arriving after the take queues the slot again.
+        slot.queued.set(false);
+        Object tuple = slot.take();
+        if (tuple == Slot.DEAD)
+            return true;
+        if (tuple != null)
+            submit((T) tuple);
+        
+        // Remove the slot if no tuple has arrived since the take,
+        // a writer seeing the dead slot replaces it.
+        if (slot.compareAndSet(null, Slot.DEAD))
+            slots.remove(slot.key, slot);
+        return true;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (periodic != null)
+            periodic.cancel(false);
+        closeFunction(keyFunction);
+    }
+
+    /**
+     * Latest tuple for a key, {@code null} once it has been submitted
+     * and {@link #DEAD} once the slot has been removed.
+     */
+    private static class Slot<K> extends AtomicReference<Object> {
+        private static final long serialVersionUID = 1L;
+        private static final Object DEAD = new Object();
+        private final K key;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        
+        Slot(K key) {
+            this.key = key;
+        }
+        
+        /**
+         * Set the latest tuple.
+         * @return {@code false} if the slot is dead.
+         */
+        boolean offer(Object tuple) {
+            for (;;) {
+                Object current = get();
+                if (current == DEAD)
+                    return false;
+                if (compareAndSet(current, tuple))
+                    return true;
+            }
+        }
+        
+        /**
+         * Take the latest tuple, leaving a dead slot dead.
+         * @return Latest tuple, {@code null} or {@link #DEAD}.
+         */
+        Object take() {
+            for (;;) {
+                Object current = get();
+                if (current == DEAD || compareAndSet(current, null))
+                    return current;
+            }
+        }
+    }
+}
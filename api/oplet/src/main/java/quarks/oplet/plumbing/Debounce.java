@@ -0,0 +1,112 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Submit a tuple only once the stream has been quiet for a period,
+ * without blocking the upstream processing.
+ * <P>
+ * Only the most recent tuple is held. When no tuple has arrived
+ * for {@code quiet} since the most recent tuple arrived, that
+ * tuple is submitted on a thread of the job's
+ * {@code ScheduledExecutorService}. A tuple that is followed by
+ * another tuple within {@code quiet} is discarded, so a burst of
+ * tuples results in a single tuple, the last of the burst.
+ * </P>
+ *
+ * @param <T> Type of the tuple.
+ */
+public class Debounce<T> extends Pipe<T,T> implements CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    private final long quietNs;
+
+    private ScheduledExecutorService ses;
+
+    /**
+     * Serializes submission of tuples by scheduler threads.
+     */
+    private final Object submitLock = new Object();
+
+    // Guarded by this
+    private T latest;
+    private long lastArrival;
+    private boolean scheduled;
+
+    /**
+     * Debounce a stream.
+     * @param quiet Time without tuples arriving before the latest tuple is submitted.
+     * @param unit Unit for {@code quiet}.
+     */
+    public Debounce(long quiet, TimeUnit unit) {
+        if (quiet <= 0)
+            throw new IllegalArgumentException("quiet: " + quiet);
+        this.quietNs = unit.toNanos(quiet);
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+        ses = context.getService(ScheduledExecutorService.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * Debouncing discards tuples rather than blocking
+     * the upstream processing, so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return Credit.UNLIMITED;
+    }
+
+    @Override
+    public void accept(T tuple) {
+        synchronized (this) {
+            latest = tuple;
+            lastArrival = System.nanoTime();
+            if (scheduled)
+                return;
+            scheduled = true;
+        }
+        ses.schedule(() -> submitQuiet(), quietNs, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Submit the latest tuple if the stream has been quiet,
+     * otherwise wait for the remainder of the quiet period
+     * after the latest tuple.
+     */
+    private void submitQuiet() {
+        synchronized (submitLock) {
+            T tuple;
+            synchronized (this) {
+                long remaining = lastArrival + quietNs - System.nanoTime();
+                if (remaining > 0) {
+                    ses.schedule(() -> submitQuiet(), remaining, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                tuple = latest;
+                latest = null;
+                scheduled = false;
+            }
+            submit(tuple);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+}
@@ -0,0 +1,146 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Delay each tuple by a fixed time, without blocking
+ * the upstream processing.
+ * <P>
+ * Each tuple is held in a buffer of {@code capacity} tuples and
+ * submitted {@code delay} after it arrived, on a thread of the job's
+ * {@code ScheduledExecutorService}, so the stream is shifted in time
+ * while the spacing between tuples is maintained.
+ * The {@link OverflowPolicy} is applied when a tuple arrives and the
+ * buffer is full, only {@link OverflowPolicy#BLOCK} ever blocks the
+ * upstream processing. {@link OverflowPolicy#CONFLATE} is not supported.
+ * </P>
+ * <P>
+ * Tuple order is maintained.
+ * </P>
+ *
+ * @param <T> Type of the tuple.
+ */
+public class Delay<T> extends Pipe<T,T> implements CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    private final long delayNs;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private ScheduledExecutorService ses;
+    private RingBuffer<Delayed<T>> ring;
+
+    // Guarded by this
+    private boolean scheduled;
+
+    /**
+     * Delay each tuple by {@code delay}.
+     * @param delay Time each tuple is delayed by.
+     * @param unit Unit for {@code delay}.
+     * @param capacity Maximum number of tuples held by the delay.
+     * @param policy Action taken when a tuple arrives and the buffer is full.
+     */
+    public Delay(long delay, TimeUnit unit, int capacity, OverflowPolicy policy) {
+        if (delay < 0)
+            throw new IllegalArgumentException("delay: " + delay);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (policy == OverflowPolicy.CONFLATE)
+            throw new IllegalArgumentException("policy: " + policy);
+        this.delayNs = unit.toNanos(delay);
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+        ses = context.getService(ScheduledExecutorService.class);
+        ring = new RingBuffer<>(capacity, policy, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * With {@link OverflowPolicy#BLOCK} the credit is the buffer's
+     * free capacity, otherwise the delay discards tuples
+     * rather than blocking the upstream processing so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return policy == OverflowPolicy.BLOCK ? ring : Credit.UNLIMITED;
+    }
+
+    @Override
+    public void accept(T tuple) {
+        try {
+            ring.put(new Delayed<>(System.nanoTime() + delayNs, tuple));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        synchronized (this) {
+            if (scheduled)
+                return;
+            scheduled = true;
+        }
+        ses.schedule(() -> submitDue(), delayNs, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Submit the tuples whose delay has expired and schedule
+     * the next submission for when the oldest remaining tuple is due.
+     * As only one submission is scheduled at any time tuples
+     * are submitted one thread at a time.
+     */
+    private void submitDue() {
+        try {
+            for (;;) {
+                Delayed<T> due;
+                synchronized (this) {
+                    final long now = System.nanoTime();
+                    due = ring.pollIf(d -> d.time - now <= 0);
+                    if (due == null) {
+                        Delayed<T> next = ring.peek();
+                        if (next == null)
+                            scheduled = false;
+                        else
+                            ses.schedule(() -> submitDue(), next.time - now, TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                }
+                submit(due.tuple);
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                scheduled = false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+
+    private static class Delayed<T> {
+        private final long time;
+        private final T tuple;
+
+        Delayed(long time, T tuple) {
+            this.time = time;
+            this.tuple = tuple;
+        }
+    }
+}
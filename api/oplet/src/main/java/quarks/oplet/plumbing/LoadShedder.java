@@ -0,0 +1,276 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import quarks.execution.services.ControlService;
+import quarks.function.Function;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+import quarks.oplet.plumbing.mbeans.LoadShedderMXBean;
+
+/**
+ * Isolate upstream processing from downstream processing, shedding
+ * tuples when the downstream processing cannot keep up.
+ * <P>
+ * Input tuples are placed in a queue and a dedicated thread submits
+ * them downstream in order, as with a bounded {@link Isolate}. The time
+ * each tuple spends in the queue, its sojourn time, is measured.
+ * Every control interval the shedding level is raised if the minimum
+ * sojourn time over the interval exceeded the latency target, thus
+ * a standing queue has built up, otherwise it is lowered. So shedding
+ * starts once the target is exceeded and stops automatically once
+ * the downstream processing keeps up. Short bursts that are
+ * absorbed within an interval do not cause shedding.
+ * </P>
+ * <P>
+ * The shedding level is between zero, nothing is shed, and
+ * {@value #MAX_LEVEL}, all tuples are shed. Tuples are shed as they
+ * are taken from the head of the queue, so that while shedding the
+ * queue drains quickly and tuples that have waited longest are shed,
+ * rather than queued tuples adding to the latency of later tuples.
+ * Tuples are shed:
+ * <UL>
+ * <LI>with a priority function, if the tuple's priority, between
+ * zero and {@code MAX_LEVEL - 1}, is less than the shedding level,
+ * so lower priority tuples are shed first.</LI>
+ * <LI>without a priority function, as a sample of the queued tuples
+ * spread evenly over time, the shedding level is the percentage shed.</LI>
+ * </UL>
+ * A tuple arriving when the queue is full is also shed.
+ * </P>
+ * <P>
+ * The counts of shed and submitted tuples, the shedding level and the
+ * measured latency are available through the oplet's {@link LoadShedderMXBean}
+ * control, registered with the {@link ControlService} when one is present.
+ * </P>
+ *
+ * @param <T> Type of the tuple.
+ */
+public class LoadShedder<T> extends Pipe<T,T> implements Runnable, LoadShedderMXBean, CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Shedding level at which all tuples are shed.
+     */
+    public static final int MAX_LEVEL = 100;
+
+    /**
+     * Interval between adjustments of the shedding level in milliseconds.
+     */
+    static final long CONTROL_INTERVAL_MS = 100;
+
+    /**
+     * Change in shedding level per interval, raised faster
+     * than lowered so that the queue drains before recovery.
+     */
+    private static final int RAISE = 10;
+    private static final int LOWER = 5;
+
+    private final int capacity;
+    private final Function<T, Integer> priorityFunction;
+    private volatile long targetMs;
+
+    private Thread thread;
+    private RingBuffer<Queued<T>> ring;
+    private ScheduledFuture<?> controller;
+    private String controlId;
+
+    private volatile int level;
+    private volatile long latencyMs;
+    private final AtomicLong minSojourn = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong submitted = new AtomicLong();
+
+    // Only used by the isolating thread
+    private int sampleDebt;
+
+    /**
+     * Shed a sample of tuples when the queue latency exceeds {@code target}.
+     * @param target Queue latency target.
+     * @param unit Unit for {@code target}.
+     * @param capacity Maximum number of tuples held in the queue.
+     */
+    public LoadShedder(long target, TimeUnit unit, int capacity) {
+        this(target, unit, capacity, null);
+    }
+
+    /**
+     * Shed the lowest priority tuples when the queue latency exceeds {@code target}.
+     * @param target Queue latency target.
+     * @param unit Unit for {@code target}.
+     * @param capacity Maximum number of tuples held in the queue.
+     * @param priorityFunction Function returning the priority of a tuple,
+     * between zero and {@code MAX_LEVEL - 1}, higher priority tuples are shed last.
+     * {@code null} to shed a sample of tuples.
+     */
+    public LoadShedder(long target, TimeUnit unit, int capacity, Function<T, Integer> priorityFunction) {
+        if (target <= 0)
+            throw new IllegalArgumentException("target: " + target);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        this.targetMs = unit.toMillis(target);
+        this.capacity = capacity;
+        this.priorityFunction = priorityFunction;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+        ring = new RingBuffer<>(capacity, OverflowPolicy.DROP_NEWEST, null);
+        thread = context.getService(ThreadFactory.class).newThread(this);
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        ControlService cs = getOpletContext().getService(ControlService.class);
+        if (cs != null)
+            controlId = cs.registerControl("loadShedder", getOpletContext().uniquify(getClass().getSimpleName()),
+                    null, LoadShedderMXBean.class, this);
+        controller = getOpletContext().getService(ScheduledExecutorService.class).scheduleAtFixedRate(
+                () -> adjustLevel(), CONTROL_INTERVAL_MS, CONTROL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        thread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The load shedder discards tuples rather than blocking
+     * the upstream processing, so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return Credit.UNLIMITED;
+    }
+
+    @Override
+    public void accept(T tuple) {
+        try {
+            if (!ring.put(new Queued<>(System.nanoTime(), tuple)))
+                shed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean shouldShed(T tuple, int level) {
+        if (priorityFunction != null) {
+            int priority = priorityFunction.apply(tuple);
+            return Math.max(0, Math.min(MAX_LEVEL - 1, priority)) < level;
+        }
+        // Shed level tuples out of every MAX_LEVEL, spread evenly.
+        sampleDebt += level;
+        if (sampleDebt < MAX_LEVEL)
+            return false;
+        sampleDebt -= MAX_LEVEL;
+        return true;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.interrupted()) {
+            Queued<T> queued;
+            try {
+                queued = ring.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            long sojourn = System.nanoTime() - queued.time;
+            long min = minSojourn.get();
+            if (sojourn < min)
+                minSojourn.compareAndSet(min, sojourn);
+
+            final int l = level;
+            if (l != 0 && shouldShed(queued.tuple, l)) {
+                shed.incrementAndGet();
+                continue;
+            }
+            submitted.incrementAndGet();
+            submit(queued.tuple);
+        }
+    }
+
+    /**
+     * Raise or lower the shedding level from the minimum sojourn time
+     * over the last interval. If no tuples were taken from the queue in
+     * the interval the latency is the age of the oldest queued tuple.
+     */
+    private void adjustLevel() {
+        long latencyNs = minSojourn.getAndSet(Long.MAX_VALUE);
+        if (latencyNs == Long.MAX_VALUE) {
+            Queued<T> oldest = ring.peek();
+            latencyNs = oldest == null ? 0 : System.nanoTime() - oldest.time;
+        }
+        latencyMs = TimeUnit.NANOSECONDS.toMillis(latencyNs);
+
+        if (latencyMs > targetMs)
+            level = Math.min(MAX_LEVEL, level + RAISE);
+        else if (level != 0)
+            level = Math.max(0, level - LOWER);
+    }
+
+    @Override
+    public long getShedCount() {
+        return shed.get();
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    @Override
+    public int getSheddingLevel() {
+        return level;
+    }
+
+    @Override
+    public long getLatency() {
+        return latencyMs;
+    }
+
+    @Override
+    public long getLatencyTarget() {
+        return targetMs;
+    }
+
+    @Override
+    public void setLatencyTarget(long target) {
+        if (target <= 0)
+            throw new IllegalArgumentException();
+        targetMs = target;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (controller != null)
+            controller.cancel(false);
+        if (controlId != null)
+            getOpletContext().getService(ControlService.class).unregister(controlId);
+        closeFunction(priorityFunction);
+    }
+
+    private static class Queued<T> {
+        private final long time;
+        private final T tuple;
+
+        Queued(long time, T tuple) {
+            this.time = time;
+            this.tuple = tuple;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.oplet.plumbing;
+
+/**
+ * Action taken by a bounded {@link Isolate} when a tuple
+ * arrives and its buffer is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Block the upstream thread until downstream processing
+     * has removed a tuple from the buffer.
+     */
+    BLOCK,
+    /**
+     * Discard the arriving tuple.
+     */
+    DROP_NEWEST,
+    /**
+     * Discard the oldest tuple in the buffer to make
+     * room for the arriving tuple.
+     */
+    DROP_OLDEST,
+    /**
+     * Replace any buffered tuple with the same key as the arriving tuple,
+     * keeping the position of the replaced tuple.
+     * Only the most recent tuple per key is held in the buffer.
+     * If no tuple with the same key is buffered and the buffer is
+     * full then the upstream thread blocks as with {@link #BLOCK}.
+     */
+    CONFLATE,
+}
@@ -0,0 +1,153 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import quarks.function.Function;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Map tuples in parallel, maintaining tuple order.
+ * <P>
+ * Each input tuple is mapped by {@code function} on one of
+ * {@code concurrency} dedicated threads, so the function is
+ * called concurrently and must be thread-safe.
+ * Results are held in a reorder buffer and submitted in the
+ * order of their input tuples. As with {@code TStream.map}
+ * a {@code null} result is not submitted.
+ * </P>
+ * <P>
+ * At most {@code maxInFlight} tuples are being mapped or waiting
+ * to be submitted, once reached the upstream processing is
+ * blocked until the oldest in-flight tuple's result is submitted.
+ * Thus the reorder buffer is a fixed size and a slow tuple
+ * delays, but does not block, the mapping of later tuples.
+ * </P>
+ * <P>
+ * Results are submitted by the thread that completes the oldest
+ * outstanding tuple, one thread at a time.
+ * </P>
+ *
+ * @param <T> Type of the input tuple.
+ * @param <U> Type of the output tuple.
+ */
+public class ParallelMap<T,U> extends Pipe<T,U> implements CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    private final int concurrency;
+    private final int maxInFlight;
+    private final Function<T,U> function;
+
+    private List<Thread> workers;
+    private LinkedBlockingQueue<Task<T>> tasks;
+    private Semaphore inFlight;
+    private ReorderBuffer<U> reorder;
+    private long nextSequence;
+
+    /**
+     * Map tuples in parallel, maintaining tuple order.
+     * @param concurrency Number of threads mapping tuples.
+     * @param maxInFlight Maximum number of tuples being mapped or
+     * waiting to be submitted.
+     * @param function Function mapping each tuple.
+     */
+    public ParallelMap(int concurrency, int maxInFlight, Function<T,U> function) {
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("concurrency: " + concurrency);
+        if (maxInFlight < concurrency)
+            throw new IllegalArgumentException("maxInFlight: " + maxInFlight);
+        this.concurrency = concurrency;
+        this.maxInFlight = maxInFlight;
+        this.function = function;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, U> context) {
+        super.initialize(context);
+        tasks = new LinkedBlockingQueue<>();
+        inFlight = new Semaphore(maxInFlight);
+        reorder = new ReorderBuffer<>(inFlight, maxInFlight, getDestination());
+
+        ThreadFactory threads = context.getService(ThreadFactory.class);
+        workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++)
+            workers.add(threads.newThread(() -> work()));
+    }
+
+    @Override
+    public void start() {
+        super.start();
+        for (Thread worker : workers)
+            worker.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The credit is the number of tuples that can be accepted
+     * before {@code maxInFlight} is reached.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return inFlight == null ? null : new SemaphoreCredit(inFlight);
+    }
+
+    @Override
+    public void accept(T tuple) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        synchronized (tasks) {
+            tasks.add(new Task<T>(nextSequence++, tuple));
+        }
+    }
+
+    private void work() {
+        while (!Thread.interrupted()) {
+            Task<T> task;
+            try {
+                task = tasks.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            U result = null;
+            try {
+                result = function.apply(task.tuple);
+            } finally {
+                // A failed tuple has no result, so later results are not held up.
+                reorder.complete(task.sequence, result);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeFunction(function);
+    }
+
+    private static class Task<T> {
+        private final long sequence;
+        private final T tuple;
+
+        Task(long sequence, T tuple) {
+            this.sequence = sequence;
+            this.tuple = tuple;
+        }
+    }
+}
@@ -11,10 +11,11 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import quarks.function.BiConsumer;
 import quarks.function.Function;
 import quarks.function.Functions;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
 import quarks.oplet.OpletContext;
 import quarks.oplet.core.Pipe;
 import quarks.window.Partition;
-import quarks.window.PartitionedState;
 import quarks.window.Policies;
 import quarks.window.Window;
 import quarks.window.Windows;
@@ -29,8 +30,10 @@ import quarks.window.Windows;
  * this oplet maintains a defined window of the most recent
  * tuples and discards any earlier tuples using arrival order.
  * <P>
- * A window partition is maintained for each key seen
- * on the input stream. Any tuple arriving on the input
+ * A window partition is maintained for each key
+ * with tuples waiting to be submitted, once a partition has been
+ * drained it is expired so that keys that are no longer seen
+ * do not hold on to a partition. Any tuple arriving on the input
  * stream is inserted into the window. Asynchronously
  * tuples are taken from the window using FIFO and
  * submitted downstream. The submission of tuples maintains
@@ -61,11 +64,11 @@ import quarks.window.Windows;
  * @param <T> Tuple type.
  * @param <K> Key type.
  */
-public class PressureReliever<T, K> extends Pipe<T, T> {
+public class PressureReliever<T, K> extends Pipe<T, T> implements CreditProvider {
     private static final long serialVersionUID = 1L;
 
     private ScheduledExecutorService executor;
-    private final Window<T, K, LinkedList<T>> window;
+    private final Window<T, K, LatchedList<T>> window;
 
     /**
      * Pressure reliever that maintains up to {@code count} most recent tuples per key.
@@ -80,7 +83,7 @@ public class PressureReliever<T, K> extends Pipe<T, T> {
                 Policies.evictOldest(),
                 new FirstSubmitter(),
                 keyFunction,
-                () -> new LinkedList<T>());
+                () -> new LatchedList<T>());
 
         // No processing of the window takes place
         window.registerPartitionProcessor((tuples, k) -> { });
@@ -92,6 +95,18 @@ public class PressureReliever<T, K> extends Pipe<T, T> {
         executor = context.getService(ScheduledExecutorService.class);
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The pressure reliever discards tuples rather than blocking
+     * the upstream processing, so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return Credit.UNLIMITED;
+    }
+
     @Override
     public void accept(T tuple) {
         window.insert(tuple);
@@ -101,18 +116,23 @@ public class PressureReliever<T, K> extends Pipe<T, T> {
     public void close() throws Exception {
     }
 
-    private class FirstSubmitter extends PartitionedState<K, AtomicBoolean>
-            implements BiConsumer<Partition<T, K, LinkedList<T>>, T> {
+    /**
+     * Partition contents holding the latch indicating
+     * a tuple from the partition is being submitted,
+     * so that the latch is discarded with its partition.
+     */
+    private static class LatchedList<T> extends LinkedList<T> {
+        private static final long serialVersionUID = 1L;
+        private final AtomicBoolean latch = new AtomicBoolean();
+    }
+
+    private class FirstSubmitter implements BiConsumer<Partition<T, K, LatchedList<T>>, T> {
 
         /**
          * 
          */
         private static final long serialVersionUID = 1L;
 
-        FirstSubmitter() {
-            super(() -> new AtomicBoolean());
-        }
-
         /**
          * Process the window (to consume the oldest tuple in the partition)
          * only if a tuple from this partition is not already being consumed.
@@ -122,13 +142,12 @@ public class PressureReliever<T, K> extends Pipe<T, T> {
          * @return
          */
         @Override
-        public void accept(Partition<T, K, LinkedList<T>> partition, T tuple) {
+        public void accept(Partition<T, K, LatchedList<T>> partition, T tuple) {
             submitNextTuple(partition);
         }
 
-        private void submitNextTuple(Partition<T, K, LinkedList<T>> partition) {
-            final K key = partition.getKey();
-            final AtomicBoolean latch = getState(key);
+        private void submitNextTuple(Partition<T, K, LatchedList<T>> partition) {
+            final AtomicBoolean latch = partition.getContents().latch;
             if (!latch.compareAndSet(false, true))
                 return;
             
@@ -136,6 +155,9 @@ public class PressureReliever<T, K> extends Pipe<T, T> {
             synchronized (partition) {
                 final LinkedList<T> contents = partition.getContents();
                 if (contents.isEmpty()) {
+                    // Expired while holding the partition's lock so that
+                    // any tuple being inserted creates a new partition.
+                    window.expirePartition(partition);
                     latch.set(false);
                     return;
                 }
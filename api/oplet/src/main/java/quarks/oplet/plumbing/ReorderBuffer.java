@@ -0,0 +1,88 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import java.util.concurrent.Semaphore;
+
+import quarks.function.Consumer;
+
+/**
+ * Fixed size buffer that submits results in sequence order
+ * as they complete, possibly out of order, on multiple threads.
+ * <P>
+ * Each tuple takes a permit from {@code inFlight} before being
+ * assigned the next sequence number, and the permit is released
+ * once its result has been submitted. So with as many permits as
+ * buffer slots a sequence's slot is never still in use by an earlier sequence.
+ * </P>
+ * <P>
+ * Results are submitted by the thread completing the next result
+ * to be submitted, one thread at a time.
+ * {@code null} results are not submitted.
+ * </P>
+ *
+ * @param <U> Type of the results.
+ */
+class ReorderBuffer<U> {
+
+    private final Object[] results;
+    private final boolean[] completed;
+    private final Semaphore inFlight;
+    private final Consumer<U> destination;
+    private long nextSubmit;
+    private boolean submitting;
+
+    ReorderBuffer(Semaphore inFlight, int capacity, Consumer<U> destination) {
+        this.results = new Object[capacity];
+        this.completed = new boolean[capacity];
+        this.inFlight = inFlight;
+        this.destination = destination;
+    }
+
+    /**
+     * Place a result in the buffer and then, unless
+     * another thread is already doing so, submit results in order
+     * until the next result is not yet available.
+     * @param sequence Sequence number of the result's tuple.
+     * @param result Result, {@code null} if there is none.
+     */
+    void complete(long sequence, U result) {
+        synchronized (this) {
+            int slot = (int) (sequence % results.length);
+            results[slot] = result;
+            completed[slot] = true;
+            if (submitting)
+                return;
+            submitting = true;
+        }
+
+        try {
+            for (;;) {
+                U next;
+                synchronized (this) {
+                    int slot = (int) (nextSubmit % results.length);
+                    if (!completed[slot]) {
+                        submitting = false;
+                        return;
+                    }
+                    @SuppressWarnings("unchecked")
+                    U r = (U) results[slot];
+                    next = r;
+                    results[slot] = null;
+                    completed[slot] = false;
+                    nextSubmit++;
+                }
+                inFlight.release();
+                if (next != null)
+                    destination.accept(next);
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                submitting = false;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.oplet.plumbing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import quarks.function.Function;
+import quarks.function.Predicate;
+import quarks.oplet.Credit;
+
+/**
+ * Fixed capacity FIFO buffer of tuples backed by a preallocated array
+ * that applies an {@link OverflowPolicy} when full.
+ * <P>
+ * Safe for any number of producer threads and a single consumer thread.
+ * </P>
+ * <P>
+ * The buffer's free capacity is its {@link Credit credit}.
+ * </P>
+ *
+ * @param <T> Tuple type.
+ */
+final class RingBuffer<T> implements Credit {
+
+    private final Object[] items;
+    private final OverflowPolicy policy;
+    private final Function<T, ?> keyFunction;
+    
+    /**
+     * Keys of the buffered tuples and key to slot index,
+     * only maintained for {@link OverflowPolicy#CONFLATE}.
+     */
+    private final Object[] keys;
+    private final Map<Object, Integer> slots;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    /**
+     * Producers blocked in {@code put}, one is signalled for each tuple removed.
+     */
+    private final Condition notFull = lock.newCondition();
+    /**
+     * Credit waiters, all are signalled when a tuple is removed from a full buffer.
+     */
+    private final Condition hasCredit = lock.newCondition();
+
+    private int head;
+    private int count;
+
+    RingBuffer(int capacity, OverflowPolicy policy, Function<T, ?> keyFunction) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        this.items = new Object[capacity];
+        this.policy = policy;
+        this.keyFunction = keyFunction;
+        if (policy == OverflowPolicy.CONFLATE) {
+            keys = new Object[capacity];
+            slots = new HashMap<>();
+        } else {
+            keys = null;
+            slots = null;
+        }
+    }
+
+    /**
+     * Insert a tuple at the tail of the buffer applying
+     * the overflow policy if the buffer is full.
+     * @param tuple Tuple to insert.
+     * @return {@code true} if the tuple was inserted or replaced a
+     * buffered tuple, {@code false} if it was discarded.
+     * @throws InterruptedException If interrupted while blocked.
+     */
+    boolean put(T tuple) throws InterruptedException {
+        final Object key = slots == null ? null : keyFunction.apply(tuple);
+        lock.lockInterruptibly();
+        try {
+            boolean waited = false;
+            for (;;) {
+                // Conflate with a buffered tuple for the key, which may
+                // have been inserted while this producer was blocked.
+                if (slots != null) {
+                    Integer slot = slots.get(key);
+                    if (slot != null) {
+                        items[slot] = tuple;
+                        // Pass on a wake up this producer did not use.
+                        if (waited && count < items.length)
+                            notFull.signal();
+                        return true;
+                    }
+                }
+                if (count < items.length)
+                    break;
+                switch (policy) {
+                case DROP_NEWEST:
+                    return false;
+                case DROP_OLDEST:
+                    removeHead();
+                    break;
+                default:
+                    notFull.await();
+                    waited = true;
+                    break;
+                }
+            }
+            int tail = index(head + count);
+            items[tail] = tuple;
+            if (slots != null) {
+                keys[tail] = key;
+                slots.put(key, tail);
+            }
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the tuple at the head of the buffer,
+     * waiting for one to be inserted if the buffer is empty.
+     * @return Oldest tuple in the buffer.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0)
+                notEmpty.await();
+            final boolean wasFull = count == items.length;
+            T tuple = removeHead();
+            removed(1, wasFull);
+            return tuple;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove up to {@code max} tuples from the head of the buffer
+     * without waiting.
+     * @param batch Collection the removed tuples are added to in order.
+     * @param max Maximum number of tuples to remove.
+     * @return Number of tuples removed.
+     */
+    int drainTo(Collection<? super T> batch, int max) {
+        lock.lock();
+        try {
+            final boolean wasFull = count == items.length;
+            int n = Math.min(count, max);
+            for (int i = 0; i < n; i++)
+                batch.add(removeHead());
+            removed(n, wasFull);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the tuple at the head of the buffer without waiting.
+     * @return Oldest tuple in the buffer or {@code null} if the buffer is empty.
+     */
+    T poll() {
+        return pollIf(null);
+    }
+
+    /**
+     * Remove the tuple at the head of the buffer if it satisfies
+     * {@code condition}, without waiting.
+     * @param condition Condition the oldest tuple must satisfy,
+     * {@code null} to remove any oldest tuple.
+     * @return Removed tuple or {@code null} if the buffer is empty
+     * or the oldest tuple does not satisfy {@code condition}.
+     */
+    T pollIf(Predicate<T> condition) {
+        lock.lock();
+        try {
+            if (count == 0)
+                return null;
+            if (condition != null) {
+                @SuppressWarnings("unchecked")
+                T oldest = (T) items[head];
+                if (!condition.test(oldest))
+                    return null;
+            }
+            final boolean wasFull = count == items.length;
+            T tuple = removeHead();
+            removed(1, wasFull);
+            return tuple;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signal waiters after {@code n} tuples were removed.
+     * A blocked producer is woken for each free slot, credit waiters
+     * only wait while the buffer is full so they are woken once
+     * it is no longer full.
+     */
+    private void removed(int n, boolean wasFull) {
+        if (n == 0)
+            return;
+        if (wasFull)
+            hasCredit.signalAll();
+        for (; n > 0 && lock.hasWaiters(notFull); n--)
+            notFull.signal();
+    }
+
+    /**
+     * Return the tuple at the head of the buffer without removing it.
+     * @return Oldest tuple in the buffer or {@code null} if the buffer is empty.
+     */
+    T peek() {
+        lock.lock();
+        try {
+            @SuppressWarnings("unchecked")
+            T tuple = count == 0 ? null : (T) items[head];
+            return tuple;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of tuples currently in the buffer.
+     * @return Number of tuples currently in the buffer.
+     */
+    int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int available() {
+        lock.lock();
+        try {
+            return items.length - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == items.length)
+                hasCredit.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private T removeHead() {
+        @SuppressWarnings("unchecked")
+        T tuple = (T) items[head];
+        items[head] = null;
+        if (slots != null) {
+            slots.remove(keys[head]);
+            keys[head] = null;
+        }
+        head = index(head + 1);
+        count--;
+        return tuple;
+    }
+
+    private int index(int i) {
+        return i >= items.length ? i - items.length : i;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import java.util.concurrent.Semaphore;
+
+import quarks.oplet.Credit;
+
+/**
+ * Credit of an oplet that limits the number of tuples
+ * in flight with a semaphore, its available permits.
+ */
+class SemaphoreCredit implements Credit {
+
+    private final Semaphore permits;
+
+    SemaphoreCredit(Semaphore permits) {
+        this.permits = permits;
+    }
+
+    @Override
+    public int available() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        permits.acquire();
+        permits.release();
+    }
+}
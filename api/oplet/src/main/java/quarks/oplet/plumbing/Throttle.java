@@ -0,0 +1,190 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.plumbing;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import quarks.function.Functions;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Limit the rate of tuples using a token bucket, without
+ * blocking the upstream processing.
+ * <P>
+ * The bucket holds up to {@code burst} tokens and is refilled
+ * at {@code permits} tokens per {@code period}. Submitting a tuple
+ * takes a token, so after a quiet period up to {@code burst}
+ * tuples are submitted without delay, and over a longer
+ * period the rate does not exceed {@code permits} per {@code period}.
+ * The bucket is initially full.
+ * </P>
+ * <P>
+ * A tuple that arrives while no token is available is held in a buffer
+ * of {@code capacity} tuples and submitted once a token is available,
+ * on a thread of the job's {@code ScheduledExecutorService}. The
+ * {@link OverflowPolicy} is applied when a tuple arrives and the buffer
+ * is full, only {@link OverflowPolicy#BLOCK} ever blocks the upstream processing.
+ * For {@link OverflowPolicy#CONFLATE} the tuple itself is its key.
+ * </P>
+ * <P>
+ * Tuple order is maintained. Tuples are submitted by either the thread
+ * processing an arriving tuple, when a token is immediately available,
+ * or a scheduler thread, one thread at a time.
+ * </P>
+ *
+ * @param <T> Type of the tuple.
+ */
+public class Throttle<T> extends Pipe<T,T> implements CreditProvider {
+    private static final long serialVersionUID = 1L;
+
+    private final int burst;
+    private final long tokenIntervalNs;
+    private final int capacity;
+    private final OverflowPolicy policy;
+
+    private ScheduledExecutorService ses;
+    private RingBuffer<T> ring;
+
+    // Guarded by this
+    private long tokens;
+    private long lastRefill;
+    private boolean submitting;
+    private boolean scheduled;
+
+    /**
+     * Limit the rate of tuples to {@code permits} per {@code period}.
+     * @param permits Number of tuples allowed per period.
+     * @param period Period the rate is defined over.
+     * @param unit Unit for {@code period}.
+     * @param burst Maximum number of tuples submitted without delay.
+     * @param capacity Maximum number of tuples held waiting for a token.
+     * @param policy Action taken when a tuple arrives and the buffer is full.
+     */
+    public Throttle(int permits, long period, TimeUnit unit, int burst, int capacity, OverflowPolicy policy) {
+        if (permits <= 0)
+            throw new IllegalArgumentException("permits: " + permits);
+        if (period <= 0)
+            throw new IllegalArgumentException("period: " + period);
+        if (burst <= 0)
+            throw new IllegalArgumentException("burst: " + burst);
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity: " + capacity);
+        this.burst = burst;
+        this.tokenIntervalNs = Math.max(1, unit.toNanos(period) / permits);
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+        ses = context.getService(ScheduledExecutorService.class);
+        ring = new RingBuffer<>(capacity, policy, Functions.identity());
+        tokens = burst;
+        lastRefill = System.nanoTime();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * With {@link OverflowPolicy#BLOCK} the credit is the buffer's
+     * free capacity, otherwise the throttle discards tuples
+     * rather than blocking the upstream processing so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return policy == OverflowPolicy.BLOCK ? ring : Credit.UNLIMITED;
+    }
+
+    @Override
+    public void accept(T tuple) {
+        try {
+            ring.put(tuple);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        synchronized (this) {
+            if (submitting)
+                return;
+            submitting = true;
+        }
+        submitAvailable();
+    }
+
+    /**
+     * Submit buffered tuples while tokens are available.
+     * If tuples remain schedule the submission of the next
+     * tuple for when the next token is available.
+     * Only called by the thread that set {@code submitting}.
+     */
+    private void submitAvailable() {
+        try {
+            for (;;) {
+                T tuple;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    if (tokens == 0) {
+                        submitting = false;
+                        if (!scheduled && ring.size() != 0) {
+                            scheduled = true;
+                            ses.schedule(() -> scheduledSubmit(),
+                                    lastRefill + tokenIntervalNs - now, TimeUnit.NANOSECONDS);
+                        }
+                        return;
+                    }
+                    tuple = ring.poll();
+                    if (tuple == null) {
+                        submitting = false;
+                        return;
+                    }
+                    tokens--;
+                }
+                submit(tuple);
+            }
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                submitting = false;
+            }
+            throw e;
+        }
+    }
+
+    private void scheduledSubmit() {
+        synchronized (this) {
+            scheduled = false;
+            if (submitting)
+                return;
+            submitting = true;
+        }
+        submitAvailable();
+    }
+
+    /**
+     * Add the tokens accumulated since the last refill, up to {@code burst}.
+     */
+    private void refill(long now) {
+        long added = (now - lastRefill) / tokenIntervalNs;
+        if (added == 0)
+            return;
+        tokens += added;
+        if (tokens >= burst) {
+            tokens = burst;
+            lastRefill = now;
+        } else {
+            lastRefill += added * tokenIntervalNs;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+}
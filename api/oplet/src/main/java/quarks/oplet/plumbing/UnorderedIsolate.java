@@ -7,6 +7,8 @@ package quarks.oplet.plumbing;
 import java.util.concurrent.ScheduledExecutorService;
 
 import quarks.function.Functions;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
 import quarks.oplet.OpletContext;
 import quarks.oplet.core.Pipe;
 
@@ -19,7 +21,7 @@ import quarks.oplet.core.Pipe;
  *
  * @param <T> Type of the tuple.
  */
-public class UnorderedIsolate<T> extends Pipe<T,T> {
+public class UnorderedIsolate<T> extends Pipe<T,T> implements CreditProvider {
     private static final long serialVersionUID = 1L;
     
     private ScheduledExecutorService executor;
@@ -30,6 +32,18 @@ public class UnorderedIsolate<T> extends Pipe<T,T> {
         executor = context.getService(ScheduledExecutorService.class);
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     * An unordered isolate never blocks the upstream processing,
+     * so it stops the flow of credit.
+     * </P>
+     */
+    @Override
+    public Credit getInputCredit() {
+        return Credit.UNLIMITED;
+    }
+
     @Override
     public void accept(T tuple) {
         executor.execute(Functions.delayedConsume(getDestination(), tuple));      
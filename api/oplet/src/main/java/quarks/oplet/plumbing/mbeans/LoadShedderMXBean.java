@@ -0,0 +1,51 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.oplet.plumbing.mbeans;
+
+/**
+ * Control interface for a load shedding oplet.
+ * 
+ * @see quarks.oplet.plumbing.LoadShedder
+ *
+ */
+public interface LoadShedderMXBean {
+
+    /**
+     * Get the number of tuples shed since the oplet started.
+     * @return number of tuples shed
+     */
+    public long getShedCount();
+
+    /**
+     * Get the number of tuples submitted since the oplet started.
+     * @return number of tuples submitted
+     */
+    public long getSubmittedCount();
+
+    /**
+     * Get the current shedding level, from zero when no tuples
+     * are shed to 100 when all tuples are shed.
+     * @return shedding level
+     */
+    public int getSheddingLevel();
+
+    /**
+     * Get the most recently measured queue latency in milliseconds.
+     * @return queue latency
+     */
+    public long getLatency();
+
+    /**
+     * Get the queue latency target in milliseconds.
+     * @return queue latency target
+     */
+    public long getLatencyTarget();
+
+    /**
+     * Set the queue latency target in milliseconds.
+     * @param target queue latency target
+     */
+    public void setLatencyTarget(long target);
+}
@@ -0,0 +1,8 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+/**
+ * Management beans for plumbing oplets.
+ */
+package quarks.oplet.plumbing.mbeans;
@@ -9,10 +9,12 @@ import static quarks.function.Functions.closeFunction;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 
+import quarks.execution.services.ControlService;
 import quarks.function.BiConsumer;
 import quarks.function.BiFunction;
 import quarks.oplet.OpletContext;
 import quarks.oplet.core.Pipe;
+import quarks.oplet.window.mbeans.WindowMXBean;
 import quarks.window.Window;
 
 /**
@@ -28,13 +30,14 @@ import quarks.window.Window;
  * @param <U> Type of the output tuples.
  * @param <K> Type of the partition key.
  */
-public class Aggregate<T,U,K> extends Pipe<T, U> {
+public class Aggregate<T,U,K> extends Pipe<T, U> implements WindowMXBean {
     private static final long serialVersionUID = 1L;
     private final Window<T,K, ? extends List<T>> window;
     /**
      * The aggregator provided by the user.
      */
     private final BiFunction<List<T>,K, U> aggregator;
+    private String controlId;
     
     public Aggregate(Window<T,K, ? extends List<T>> window, BiFunction<List<T>,K, U> aggregator){
         this.aggregator = aggregator;
@@ -54,6 +57,19 @@ public class Aggregate<T,U,K> extends Pipe<T, U> {
         window.registerScheduledExecutorService(this.getOpletContext().getService(ScheduledExecutorService.class));
     }
     
+    @Override
+    public void start() {
+        super.start();
+        ControlService cs = getOpletContext().getService(ControlService.class);
+        if (cs != null)
+            controlId = cs.registerControl("window", getOpletContext().uniquify(getClass().getSimpleName()), null, WindowMXBean.class, this);
+    }
+    
+    @Override
+    public int getPartitionCount() {
+        return window.getPartitionCount();
+    }
+    
     @Override
     public void accept(T tuple) {
         window.insert(tuple);   
@@ -61,6 +77,8 @@ public class Aggregate<T,U,K> extends Pipe<T, U> {
 
     @Override
     public void close() throws Exception {
+        if (controlId != null)
+            getOpletContext().getService(ControlService.class).unregister(controlId);
         closeFunction(aggregator);
     }
 
@@ -0,0 +1,310 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.window;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.ToDoubleFunction;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+import quarks.window.DoubleRing;
+
+/**
+ * Aggregate a window of {@code double} values.
+ * Each tuple's value is obtained using a {@link ToDoubleFunction}
+ * and held in a {@link DoubleRing} for its partition, rather than
+ * holding the tuple itself.
+ * <P>
+ * Each time a partition changes, through a value being inserted
+ * or values being evicted, the aggregator function is called
+ * passing the partition's ring and the partition key. The returned value
+ * is submitted to the sole output port if it is not {@code null}.
+ * The ring must not be modified or retained by the aggregator.
+ * Calls to the aggregator are serialized for each partition.
+ * </P>
+ * <P>
+ * As with a {@link quarks.window.Window}, partitions may be expired
+ * when idle or to limit their number, see
+ * {@link #setPartitionExpiry(long, TimeUnit)} and {@link #setMaxPartitions(int)}.
+ * </P>
+ *
+ * @param <T> Type of the input tuples.
+ * @param <U> Type of the output tuples.
+ * @param <K> Type of the partition key.
+ */
+public class DoubleAggregate<T,U,K> extends Pipe<T, U> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Initial capacity of a ring for a time-based window.
+     */
+    private static final int TIME_CAPACITY = 16;
+
+    private final ToDoubleFunction<T> valueFunction;
+    private final Function<T,K> keyFunction;
+    private final BiFunction<DoubleRing,K,U> aggregator;
+    private final int count;
+    private final long timeMs;
+
+    private final ConcurrentMap<K, Partition> partitions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ses;
+
+    private long idleTimeNs;
+    private int maxPartitions;
+    
+    /**
+     * Held while expiring partitions so that only
+     * a single thread sweeps the partitions.
+     */
+    private final ReentrantLock expiryLock = new ReentrantLock();
+    private ScheduledFuture<?> idleSweep;
+
+    /**
+     * A partition's ring, all access is synchronized on the partition.
+     */
+    private static final class Partition {
+        final DoubleRing ring;
+        
+        /**
+         * Set once the partition has been removed from the map.
+         */
+        boolean expired;
+        
+        /**
+         * Time of the last insert, only maintained when partitions expire.
+         */
+        volatile long lastInsertTime;
+        
+        Partition(DoubleRing ring) {
+            this.ring = ring;
+            this.lastInsertTime = System.nanoTime();
+        }
+    }
+
+    /**
+     * Aggregate the last {@code count} values of each partition.
+     * @param count Number of values to retain in each partition.
+     * @param valueFunction Function that returns the value for a tuple.
+     * @param keyFunction Function that returns the partition key for a tuple.
+     * @param aggregator Logic to aggregate a partition.
+     */
+    public DoubleAggregate(int count, ToDoubleFunction<T> valueFunction,
+            Function<T,K> keyFunction, BiFunction<DoubleRing,K,U> aggregator) {
+        if (count < 1)
+            throw new IllegalArgumentException("count");
+        this.count = count;
+        this.timeMs = -1;
+        this.valueFunction = valueFunction;
+        this.keyFunction = keyFunction;
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Aggregate the values of each partition inserted in the last {@code time}.
+     * A partition is discarded once all its values have been evicted.
+     * @param time Time to retain a value in a partition.
+     * @param unit Unit for {@code time}.
+     * @param valueFunction Function that returns the value for a tuple.
+     * @param keyFunction Function that returns the partition key for a tuple.
+     * @param aggregator Logic to aggregate a partition.
+     */
+    public DoubleAggregate(long time, TimeUnit unit, ToDoubleFunction<T> valueFunction,
+            Function<T,K> keyFunction, BiFunction<DoubleRing,K,U> aggregator) {
+        if (time <= 0)
+            throw new IllegalArgumentException("time");
+        this.count = -1;
+        this.timeMs = TimeUnit.MILLISECONDS.convert(time, unit);
+        this.valueFunction = valueFunction;
+        this.keyFunction = keyFunction;
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Expire partitions that have not had a value inserted
+     * within {@code idleTime}, an expired partition is discarded
+     * along with its values. Idle partitions are swept for
+     * every half {@code idleTime}.
+     * Must be called before the oplet is initialized.
+     * By default partitions never expire.
+     * 
+     * @param idleTime Time a partition may be idle before it expires,
+     * zero to never expire idle partitions.
+     * @param unit Unit for {@code idleTime}.
+     */
+    public void setPartitionExpiry(long idleTime, TimeUnit unit) {
+        if (idleTime < 0)
+            throw new IllegalArgumentException("idleTime");
+        idleTimeNs = TimeUnit.NANOSECONDS.convert(idleTime, unit);
+    }
+
+    /**
+     * Limit the number of partitions. If inserting a value
+     * with a new key would exceed {@code maxPartitions} then
+     * the least recently inserted into partitions are expired
+     * down to {@code maxPartitions - maxPartitions/16}.
+     * Must be called before the oplet is initialized.
+     * By default the number of partitions is unlimited.
+     * 
+     * @param maxPartitions Maximum number of partitions, zero for unlimited.
+     */
+    public void setMaxPartitions(int maxPartitions) {
+        if (maxPartitions < 0)
+            throw new IllegalArgumentException("maxPartitions");
+        this.maxPartitions = maxPartitions;
+    }
+
+    @Override
+    public void initialize(OpletContext<T,U> context) {
+        super.initialize(context);
+        ses = context.getService(ScheduledExecutorService.class);
+        if (idleTimeNs != 0)
+            idleSweep = ses.scheduleWithFixedDelay(() -> expireIdle(),
+                    idleTimeNs / 2, idleTimeNs / 2, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void accept(T tuple) {
+        K key = keyFunction.apply(tuple);
+        double value = valueFunction.applyAsDouble(tuple);
+
+        for (;;) {
+            Partition partition = partitions.get(key);
+            if (partition == null) {
+                Partition created = new Partition(
+                        timeMs < 0 ? new DoubleRing(count) : new DoubleRing(TIME_CAPACITY, true));
+                partition = partitions.putIfAbsent(key, created);
+                if (partition == null) {
+                    partition = created;
+                    if (maxPartitions != 0 && partitions.size() > maxPartitions)
+                        expireLeastRecent();
+                }
+            }
+
+            synchronized (partition) {
+                // An expired partition has already been removed
+                // from the map, so a retry creates a new partition.
+                if (partition.expired)
+                    continue;
+                if (idleTimeNs != 0 || maxPartitions != 0)
+                    partition.lastInsertTime = System.nanoTime();
+                DoubleRing ring = partition.ring;
+                if (timeMs >= 0 && ring.isEmpty())
+                    scheduleEvict(partition, key, timeMs);
+                ring.add(value);
+                process(ring, key);
+                return;
+            }
+        }
+    }
+
+    private void scheduleEvict(Partition partition, K key, long delay) {
+        ses.schedule(() -> evict(partition, key), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evict values older than the window's time and
+     * process the partition if any were evicted. If any values
+     * remain then schedule their eviction, otherwise discard the partition.
+     */
+    private void evict(Partition partition, K key) {
+        synchronized (partition) {
+            if (partition.expired)
+                return;
+            DoubleRing ring = partition.ring;
+            long now = System.currentTimeMillis();
+            if (ring.evictOlderThan(now - timeMs) != 0)
+                process(ring, key);
+            if (!ring.isEmpty()) {
+                scheduleEvict(partition, key, Math.max(0, ring.getTime(0) + timeMs - now));
+                return;
+            }
+            expire(partition, key);
+        }
+    }
+
+    /**
+     * Expire idle partitions, called periodically from the
+     * scheduled executor so that partitions expire without new values.
+     */
+    private void expireIdle() {
+        if (!expiryLock.tryLock())
+            return;
+        try {
+            long now = System.nanoTime();
+            for (Map.Entry<K, Partition> entry : partitions.entrySet()) {
+                Partition partition = entry.getValue();
+                synchronized (partition) {
+                    if (now - partition.lastInsertTime >= idleTimeNs)
+                        expire(partition, entry.getKey());
+                }
+            }
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+
+    /**
+     * Expire the least recently inserted into partitions
+     * down to a low water mark below {@code maxPartitions},
+     * so that the sweep is amortized over subsequent new partitions.
+     */
+    private void expireLeastRecent() {
+        expiryLock.lock();
+        try {
+            int max = maxPartitions;
+            int size = partitions.size();
+            if (size <= max)
+                return;
+            List<Map.Entry<K, Partition>> lru = new ArrayList<>(partitions.entrySet());
+            Collections.sort(lru, (a, b) -> Long.compare(a.getValue().lastInsertTime, b.getValue().lastInsertTime));
+            int expire = size - (max - max / 16);
+            for (int i = 0; i < expire && i < lru.size(); i++) {
+                Partition partition = lru.get(i).getValue();
+                synchronized (partition) {
+                    expire(partition, lru.get(i).getKey());
+                }
+            }
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+
+    /**
+     * Mark a partition as expired and remove it from the map,
+     * must be called while synchronized on the partition.
+     */
+    private void expire(Partition partition, K key) {
+        if (partition.expired)
+            return;
+        partition.expired = true;
+        partitions.remove(key, partition);
+    }
+
+    private void process(DoubleRing ring, K key) {
+        U aggregateTuple = aggregator.apply(ring, key);
+        if (aggregateTuple != null)
+            submit(aggregateTuple);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (idleSweep != null)
+            idleSweep.cancel(false);
+        closeFunction(aggregator);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.window;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.ToLongFunction;
+import quarks.oplet.core.Pipe;
+
+/**
+ * Aggregate tumbling event time windows.
+ * <P>
+ * Each partition's tuples are grouped into windows of a fixed
+ * length of event time, aligned to multiples of the length.
+ * When a window closes {@code aggregator.apply(tuples, key)} is called
+ * once with the window's tuples and the returned value
+ * is submitted to the sole output port if it is not {@code null}.
+ * The partition's window is then discarded.
+ * </P>
+ * <P>
+ * Input tuples must be in event time order, for example
+ * the ordered output of {@link EventTimeReorder}. Thus the event time
+ * of each tuple is the watermark for all partitions, and any window ending
+ * at or before it is closed. As windows are opened in event time order
+ * open windows are held in a single queue ordered by their end,
+ * so no timer is required per partition.
+ * </P>
+ *
+ * @param <T> Type of the input tuples.
+ * @param <U> Type of the output tuples.
+ * @param <K> Type of the partition key.
+ */
+public class EventTimeAggregate<T,U,K> extends Pipe<T, U> {
+    private static final long serialVersionUID = 1L;
+    
+    private final long size;
+    private final ToLongFunction<T> timestampFunction;
+    private final Function<T,K> keyFunction;
+    private final BiFunction<List<T>,K,U> aggregator;
+    
+    private final Map<K, Pane<T,K>> partitions = new HashMap<>();
+    private final ArrayDeque<Pane<T,K>> open = new ArrayDeque<>();
+    
+    /**
+     * Aggregate tumbling event time windows.
+     * @param size Length of each window in event time units.
+     * @param timestampFunction Function that returns the event time of a tuple.
+     * @param keyFunction Function that returns the partition key for a tuple.
+     * @param aggregator Logic to aggregate a window.
+     */
+    public EventTimeAggregate(long size, ToLongFunction<T> timestampFunction,
+            Function<T,K> keyFunction, BiFunction<List<T>,K,U> aggregator) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size");
+        this.size = size;
+        this.timestampFunction = timestampFunction;
+        this.keyFunction = keyFunction;
+        this.aggregator = aggregator;
+    }
+
+    @Override
+    public synchronized void accept(T tuple) {
+        long timestamp = timestampFunction.applyAsLong(tuple);
+        
+        // The watermark has advanced to this tuple's event time.
+        while (!open.isEmpty() && open.peek().end <= timestamp) {
+            Pane<T,K> pane = open.poll();
+            partitions.remove(pane.key);
+            U aggregateTuple = aggregator.apply(Collections.unmodifiableList(pane.tuples), pane.key);
+            if (aggregateTuple != null)
+                submit(aggregateTuple);
+        }
+        
+        K key = keyFunction.apply(tuple);
+        Pane<T,K> pane = partitions.get(key);
+        if (pane == null) {
+            long offset = timestamp % size;
+            if (offset < 0)
+                offset += size;
+            pane = new Pane<T,K>(key, timestamp - offset + size);
+            partitions.put(key, pane);
+            open.add(pane);
+        }
+        pane.tuples.add(tuple);
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeFunction(aggregator);
+    }
+    
+    private static class Pane<T,K> {
+        private final K key;
+        private final long end;
+        private final List<T> tuples = new ArrayList<>();
+        
+        Pane(K key, long end) {
+            this.key = key;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.oplet.window;
+
+import static quarks.function.Functions.closeFunction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import quarks.function.Consumer;
+import quarks.function.ToLongFunction;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.AbstractOplet;
+
+/**
+ * Order tuples by event time.
+ * Each tuple's event time is obtained using a timestamp function,
+ * tuples may arrive out of order by up to a maximum delay.
+ * <P>
+ * Tuples are held in a reorder buffer until the watermark,
+ * the latest event time seen less the maximum delay, passes them,
+ * and are then submitted to output port 0 in event time order.
+ * Thus event time on port 0 never decreases.
+ * <BR>
+ * A tuple arriving with an event time earlier than the
+ * watermark is late and is submitted to output port 1.
+ * </P>
+ * <P>
+ * The reorder buffer is bounded, if it is full then the earliest
+ * tuple is submitted early, advancing the watermark to its event time.
+ * </P>
+ * <P>
+ * Event time only advances with the arrival of tuples,
+ * so tuples are held while no later tuples arrive.
+ * </P>
+ *
+ * @param <T> Type of the tuple.
+ */
+public class EventTimeReorder<T> extends AbstractOplet<T, T> implements Consumer<T> {
+
+    private static final long serialVersionUID = 1L;
+    private final ToLongFunction<T> timestampFunction;
+    private final long maxDelay;
+    private final int capacity;
+    
+    private final PriorityQueue<Timestamped<T>> buffer = new PriorityQueue<>();
+    private long watermark = Long.MIN_VALUE;
+    private long sequence;
+    
+    private Consumer<T> ordered;
+    private Consumer<T> late;
+    
+    /**
+     * Order tuples by event time.
+     * @param timestampFunction Function that returns the event time of a tuple.
+     * @param maxDelay Maximum delay in event time units of a tuple that is not late.
+     * @param capacity Maximum number of tuples held in the reorder buffer.
+     */
+    public EventTimeReorder(ToLongFunction<T> timestampFunction, long maxDelay, int capacity) {
+        if (maxDelay < 0)
+            throw new IllegalArgumentException("maxDelay");
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity");
+        this.timestampFunction = timestampFunction;
+        this.maxDelay = maxDelay;
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void initialize(OpletContext<T, T> context) {
+        super.initialize(context);
+
+        List<? extends Consumer<T>> outputs = context.getOutputs();
+        ordered = outputs.get(0);
+        late = outputs.get(1);
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public List<Consumer<T>> getInputs() {
+        return Collections.singletonList(this);
+    }
+
+    @Override
+    public synchronized void accept(T tuple) {
+        long timestamp = timestampFunction.applyAsLong(tuple);
+        if (timestamp < watermark) {
+            late.accept(tuple);
+            return;
+        }
+        
+        buffer.add(new Timestamped<T>(timestamp, sequence++, tuple));
+        
+        if (timestamp - maxDelay > watermark)
+            watermark = timestamp - maxDelay;
+        if (buffer.size() > capacity)
+            watermark = Math.max(watermark, buffer.peek().timestamp);
+        
+        while (!buffer.isEmpty() && buffer.peek().timestamp <= watermark)
+            ordered.accept(buffer.poll().tuple);
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeFunction(timestampFunction);
+    }
+    
+    private static class Timestamped<T> implements Comparable<Timestamped<T>> {
+        private final long timestamp;
+        private final long sequence;
+        private final T tuple;
+        
+        Timestamped(long timestamp, long sequence, T tuple) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.tuple = tuple;
+        }
+
+        @Override
+        public int compareTo(Timestamped<T> o) {
+            int c = Long.compare(timestamp, o.timestamp);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+}
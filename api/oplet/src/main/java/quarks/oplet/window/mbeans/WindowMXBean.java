@@ -0,0 +1,20 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.oplet.window.mbeans;
+
+/**
+ * Control interface for a window oplet.
+ * 
+ * @see quarks.oplet.window.Aggregate
+ *
+ */
+public interface WindowMXBean {
+    
+    /**
+     * Get the number of live partitions in the window.
+     * @return number of partitions
+     */
+    public int getPartitionCount();
+}
@@ -0,0 +1,8 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+/**
+ * Management beans for window oplets.
+ */
+package quarks.oplet.window.mbeans;
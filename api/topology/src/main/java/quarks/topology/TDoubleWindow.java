@@ -0,0 +1,85 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.topology;
+
+import java.util.concurrent.TimeUnit;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.ToDoubleFunction;
+import quarks.window.DoubleRing;
+
+/**
+ * Partitioned window of {@code double} values.
+ * A specialization of {@link TWindow} for the common case
+ * where the aggregation of a window only requires a single
+ * {@code double} value from each tuple, such as a sensor reading.
+ * <P>
+ * Each partition holds the values obtained from its tuples
+ * by the window's value function in a {@link DoubleRing},
+ * rather than holding the tuples themselves.
+ * </P>
+ * <P>
+ * Calls to the aggregator are serialized for each partition, but calls
+ * for different partitions may be made concurrently.
+ * </P>
+ *
+ * @param <T> Tuple type
+ * @param <K> Partition key type
+ * 
+ * @see TStream#lastDoubles(int, ToDoubleFunction, Function) Count based window
+ * @see TStream#lastDoubles(long, java.util.concurrent.TimeUnit, ToDoubleFunction, Function) Time based window
+ */
+public interface TDoubleWindow<T, K> extends TopologyElement {
+    /**
+     * Declares a stream that is a continuous aggregation of
+     * partitions in this window. Each time the contents of a partition is updated by a new
+     * value being added to it, or values being evicted
+     * {@code aggregator.apply(values, key)} is called, where {@code values} is a
+     * {@link DoubleRing} containing all the values in the partition.
+     * The ring is stable during the method call and must not be modified or
+     * retained by the aggregator.
+     * <BR>
+     * For example the mean of each partition is declared by
+     * {@code window.aggregate((values, key) -> values.mean())}.
+     * 
+     * @param aggregator
+     *            Logic to aggregation a partition.
+     * @return A stream that contains the latest aggregations of partitions in this window.
+     */
+    <U> TStream<U> aggregate(BiFunction<DoubleRing, K, U> aggregator);
+    
+    /**
+     * Expire idle partitions and limit the number of partitions
+     * in windows declared by subsequent calls to
+     * {@link #aggregate(BiFunction) aggregate},
+     * as with {@link TWindow#expirePartitions(long, TimeUnit, int)}.
+     * 
+     * @param idleTime Time a partition may be idle before it expires,
+     * zero to never expire idle partitions.
+     * @param unit Unit for {@code idleTime}.
+     * @param maxPartitions Maximum number of partitions, zero for unlimited.
+     * @return This window.
+     */
+    TDoubleWindow<T, K> expirePartitions(long idleTime, TimeUnit unit, int maxPartitions);
+    
+    /**
+     * Returns the value function used to obtain a value from each tuple.
+     * @return Value function used to obtain a value from each tuple.
+     */
+    ToDoubleFunction<T> getValueFunction();
+    
+    /**
+     * Returns the key function used to map tuples to partitions.
+     * @return Key function used to map tuples to partitions.
+     */
+    Function<T, K> getKeyFunction();
+    
+    /**
+     * Get the stream that feeds this window.
+     * @return stream that feeds this window.
+     */
+    TStream<T> feeder();
+}
@@ -0,0 +1,78 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.topology;
+
+import java.util.List;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.ToLongFunction;
+
+/**
+ * Partitioned tumbling window of tuples by event time.
+ * Each tuple carries its own event time, obtained using the
+ * window's timestamp function, which determines the window
+ * it belongs to regardless of when it arrives.
+ * <P>
+ * Tuples may arrive out of order by up to the window's maximum delay,
+ * they are held in a bounded reorder buffer until the watermark, the latest
+ * event time seen less the maximum delay, passes them. Tuples that
+ * arrive after the watermark has passed them are late and are
+ * not included in any window, they are available from {@link #late()}.
+ * </P>
+ * <P>
+ * Event time only advances with the arrival of tuples, thus a window
+ * is not closed until a tuple with a sufficiently later event time arrives.
+ * Windows still open when the stream ends, including tuples held in
+ * the reorder buffer, are never emitted.
+ * </P>
+ *
+ * @param <T> Tuple type
+ * @param <K> Partition key type
+ * 
+ * @see TStream#eventTimeWindow(long, long, ToLongFunction, Function)
+ * @see TStream#eventTimeWindow(long, long, int, ToLongFunction, Function)
+ */
+public interface TEventTimeWindow<T, K> extends TopologyElement {
+    
+    /**
+     * Declares a stream that represents a batched aggregation of
+     * event time windows of partitions in this window. Each time a window
+     * of a partition closes, {@code batcher.apply(tuples, key)} is called,
+     * where {@code tuples} is a {@code List} containing all the tuples
+     * in the window, in event time order.
+     * Each tuple is contained in a single window.
+     * 
+     * @param batcher
+     *            Logic to aggregation a window.
+     * @return A stream that contains the aggregations of windows of partitions.
+     */
+    <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher);
+    
+    /**
+     * Returns a stream containing tuples that arrived too late
+     * to be included in their window.
+     * @return Stream of late tuples.
+     */
+    TStream<T> late();
+    
+    /**
+     * Returns the timestamp function used to obtain the event time of a tuple.
+     * @return Timestamp function used to obtain the event time of a tuple.
+     */
+    ToLongFunction<T> getTimestampFunction();
+    
+    /**
+     * Returns the key function used to map tuples to partitions.
+     * @return Key function used to map tuples to partitions.
+     */
+    Function<T, K> getKeyFunction();
+    
+    /**
+     * Get the stream that feeds this window.
+     * @return stream that feeds this window.
+     */
+    TStream<T> feeder();
+}
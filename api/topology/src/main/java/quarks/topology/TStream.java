@@ -4,14 +4,18 @@
 */
 package quarks.topology;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import quarks.function.Consumer;
 import quarks.function.Function;
 import quarks.function.Predicate;
+import quarks.function.ToDoubleFunction;
 import quarks.function.ToIntFunction;
+import quarks.function.ToLongFunction;
 import quarks.function.UnaryOperator;
 import quarks.oplet.core.Pipe;
 import quarks.oplet.core.Sink;
@@ -196,6 +200,155 @@ public interface TStream<T> extends TopologyElement {
      */
     List<TStream<T>> split(int n, ToIntFunction<T> splitter);
 
+    /**
+     * Route a stream's tuples to {@code n} streams using ordered rules.
+     *
+     * <P>
+     * Each rule is a predicate and the set of streams, identified by their
+     * position in the returned list, that tuples satisfying the predicate are
+     * routed to. For each tuple the predicates are evaluated in order until one
+     * is satisfied, the tuple is then routed to every stream in that rule's set,
+     * thus a tuple can be multicast to several streams.
+     * A tuple satisfying no predicate is routed to the streams in {@code otherwise}.
+     * A tuple routed to no streams is discarded.
+     * </P>
+     * <P>
+     * Unlike declaring {@code n} {@code filter()} invocations, each tuple is
+     * analyzed only once, and unlike {@code split()} a tuple is not restricted
+     * to a single stream. For example routing alerts to an archive stream and
+     * a notification stream, and all other readings only to the archive stream:
+     *
+     * <pre>
+     * <code>
+     * TStream&lt;Reading> readings = ...
+     * List&lt;TStream&lt;Reading>> routes = readings.route(2,
+     *     Arrays.asList(r -> r.isAlert()),
+     *     Arrays.asList(Arrays.asList(0, 1)),
+     *     Arrays.asList(0));
+     * routes.get(0). ... // archive processing pipeline
+     * routes.get(1). ... // notification processing pipeline
+     * </code>
+     * </pre>
+     * </P>
+     *
+     * @param n
+     *            the number of output streams
+     * @param predicates
+     *            rule predicates, in evaluation order
+     * @param ports
+     *            for each rule the positions of the streams it routes to
+     * @param otherwise
+     *            positions of the streams tuples satisfying no predicate are routed to
+     * @return List of {@code n} streams
+     *
+     * @throws IllegalArgumentException
+     *             if {@code n <= 0}, the number of port sets does not match
+     *             the number of predicates or a position is not
+     *             between {@code 0} and {@code n - 1}
+     * @see #routeAll(int, List, List, Collection)
+     */
+    List<TStream<T>> route(int n, List<? extends Predicate<T>> predicates,
+            List<? extends Collection<Integer>> ports, Collection<Integer> otherwise);
+
+    /**
+     * Route a stream's tuples to {@code n} streams using rules, routing
+     * each tuple by every rule it satisfies.
+     *
+     * <P>
+     * Each rule is a predicate and the set of streams, identified by their
+     * position in the returned list, that tuples satisfying the predicate are
+     * routed to. For each tuple every predicate is evaluated once and the tuple
+     * is routed to the union of the sets of the rules it satisfies, each stream
+     * receiving the tuple at most once.
+     * A tuple satisfying no predicate is routed to the streams in {@code otherwise}.
+     * A tuple routed to no streams is discarded.
+     * </P>
+     * <P>
+     * This is logically equivalent to a {@code filter()} per rule
+     * for each stream, with each predicate evaluated once per tuple
+     * rather than once per stream it applies to. For example these are
+     * logically equivalent:
+     *
+     * <pre>
+     * <code>
+     * List&lt;TStream&lt;Reading>> routes = readings.routeAll(2,
+     *     Arrays.asList(r -> r.isAlert(), r -> r.isCalibration()),
+     *     Arrays.asList(Arrays.asList(0), Arrays.asList(1)),
+     *     Collections.emptyList());
+     *
+     * TStream&lt;Reading> alerts = readings.filter(r -> r.isAlert());
+     * TStream&lt;Reading> calibrations = readings.filter(r -> r.isCalibration());
+     * </code>
+     * </pre>
+     * </P>
+     *
+     * @param n
+     *            the number of output streams
+     * @param predicates
+     *            rule predicates
+     * @param ports
+     *            for each rule the positions of the streams it routes to
+     * @param otherwise
+     *            positions of the streams tuples satisfying no predicate are routed to
+     * @return List of {@code n} streams
+     *
+     * @throws IllegalArgumentException
+     *             if {@code n <= 0}, the number of port sets does not match
+     *             the number of predicates or a position is not
+     *             between {@code 0} and {@code n - 1}
+     * @see #route(int, List, List, Collection)
+     */
+    List<TStream<T>> routeAll(int n, List<? extends Predicate<T>> predicates,
+            List<? extends Collection<Integer>> ports, Collection<Integer> otherwise);
+
+    /**
+     * Route a stream's tuples to {@code n} streams using a routing table.
+     *
+     * <P>
+     * For each tuple {@code keyFunction.apply(tuple)} is called and the
+     * resulting key looked up in {@code table}. The tuple is routed to every
+     * stream in the key's set of streams, identified by their
+     * position in the returned list. A tuple whose key is not in the table is
+     * routed to the streams in {@code otherwise}.
+     * A tuple routed to no streams is discarded.
+     * </P>
+     * <P>
+     * Routing a tuple takes a single hash lookup regardless of the size of the
+     * table, so this is preferred over ordered rules when a tuple's
+     * route is determined by equality of a key. For example routing
+     * sensor readings by their sensor identifier:
+     *
+     * <pre>
+     * <code>
+     * TStream&lt;Reading> readings = ...
+     * Map&lt;String, List&lt;Integer>> table = new HashMap&lt;>();
+     * table.put("temp", Arrays.asList(0));
+     * table.put("pressure", Arrays.asList(0, 1));
+     * List&lt;TStream&lt;Reading>> routes = readings.route(2,
+     *     r -> r.getSensorId(), table, Collections.emptyList());
+     * </code>
+     * </pre>
+     * </P>
+     *
+     * @param <K> Type of the key.
+     * @param n
+     *            the number of output streams
+     * @param keyFunction
+     *            function returning the key of a tuple
+     * @param table
+     *            for each key the positions of the streams it routes to
+     * @param otherwise
+     *            positions of the streams tuples whose key is not in {@code table}
+     *            are routed to
+     * @return List of {@code n} streams
+     *
+     * @throws IllegalArgumentException
+     *             if {@code n <= 0} or a position is not
+     *             between {@code 0} and {@code n - 1}
+     */
+    <K> List<TStream<T>> route(int n, Function<T, K> keyFunction,
+            Map<K, ? extends Collection<Integer>> table, Collection<Integer> otherwise);
+
     /**
      * Declare a stream that contains the same contents as this stream while
      * peeking at each element using {@code peeker}. <BR>
@@ -368,7 +521,162 @@ public interface TStream<T> extends TopologyElement {
      * @param keyFunction Function that defines the key for each tuple.
      * @return Partitioned window on this stream representing the last {@code count} tuple.
      */
-    <K> TWindow<T, K> last(long time, TimeUnit unit, Function<T, K> keyFunction);
+    <K> TTimeWindow<T, K> last(long time, TimeUnit unit, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window that continually represents the
+     * current session of tuples on this stream for each partition.
+     * A partition's session starts with the first tuple for its key
+     * and closes once no tuple has been seen for the key within {@code gap},
+     * for example a machine run or a vehicle trip.
+     * <BR>
+     * A session is emitted once when it closes by {@link TWindow#batch(quarks.function.BiFunction) batch},
+     * while {@link TWindow#aggregate(quarks.function.BiFunction) aggregate} continuously
+     * aggregates the session so far.
+     * Once a session closes its partition is discarded,
+     * so memory is only held for keys with an open session.
+     * <BR>
+     * Partitioning is the same as for {@link #last(long, TimeUnit, Function)}.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param gap Time without a tuple for a key that closes its session.
+     * @param unit Unit for {@code gap}.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Partitioned window on this stream representing the current session for each partition.
+     */
+    <K> TWindow<T, K> session(long gap, TimeUnit unit, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window of tumbling windows aligned to wall-clock time.
+     * Each partition's window closes at every multiple of {@code time}
+     * since the epoch, for example {@code tumbling(1, MINUTES, key)} closes
+     * windows at the start of every minute, regardless of when
+     * their first tuple arrived.
+     * <BR>
+     * A partition's window is emitted once when it closes by
+     * {@link TWindow#batch(quarks.function.BiFunction) batch}, if it is not empty,
+     * while {@link TWindow#aggregate(quarks.function.BiFunction) aggregate} continuously
+     * aggregates the current window.
+     * <BR>
+     * Partitioning is the same as for {@link #last(long, TimeUnit, Function)}.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param time Length of each window, windows close at each multiple of {@code time}.
+     * @param unit Unit for {@code time}.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Partitioned window on this stream representing the current window for each partition.
+     */
+    <K> TWindow<T, K> tumbling(long time, TimeUnit unit, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window of tumbling windows closed by
+     * count or time, whichever is first.
+     * Each partition's window closes once it contains {@code count} tuples,
+     * or {@code time} after its first tuple was inserted.
+     * Thus batches of a partition contain at most {@code count} tuples and a tuple
+     * is held for at most {@code time}, for example to feed a bulk sink
+     * with batches of a steady size and bounded latency.
+     * <BR>
+     * A partition's window is emitted once when it closes by
+     * {@link TWindow#batch(quarks.function.BiFunction) batch},
+     * while {@link TWindow#aggregate(quarks.function.BiFunction) aggregate} continuously
+     * aggregates the current window.
+     * <BR>
+     * Partitioning is the same as for {@link #last(long, TimeUnit, Function)}.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param count Number of tuples that closes a window.
+     * @param time Time after a window's first tuple that closes the window.
+     * @param unit Unit for {@code time}.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Partitioned window on this stream representing the current window for each partition.
+     */
+    <K> TWindow<T, K> tumbling(int count, long time, TimeUnit unit, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window of tumbling event time windows.
+     * Each tuple's event time is obtained by {@code timestampFunction}
+     * and places the tuple in the window of length {@code size}
+     * containing its event time, windows being aligned to multiples of {@code size}.
+     * <BR>
+     * Tuples may arrive out of event time order by up to {@code maxDelay},
+     * later tuples are late and are not included in any window.
+     * At most 10,000 tuples are held waiting for the watermark to pass them,
+     * if exceeded the event time watermark is advanced.
+     * <BR>
+     * Partitioning is the same as for {@link #last(long, TimeUnit, Function)}.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param size Length of event time covered by each window,
+     * in the unit of the event times returned by {@code timestampFunction}.
+     * @param maxDelay Maximum delay of a tuple's arrival that is not late,
+     * in the unit of the event times returned by {@code timestampFunction}.
+     * @param timestampFunction Function that defines the event time for each tuple.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Partitioned event time window on this stream.
+     */
+    <K> TEventTimeWindow<T, K> eventTimeWindow(long size, long maxDelay,
+            ToLongFunction<T> timestampFunction, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window of tumbling event time windows,
+     * holding at most {@code capacity} tuples waiting for the watermark.
+     * Behaves as {@link #eventTimeWindow(long, long, ToLongFunction, Function)}
+     * except that when more than {@code capacity} tuples are held waiting
+     * for the watermark to pass them the event time watermark is advanced.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param size Length of event time covered by each window,
+     * in the unit of the event times returned by {@code timestampFunction}.
+     * @param maxDelay Maximum delay of a tuple's arrival that is not late,
+     * in the unit of the event times returned by {@code timestampFunction}.
+     * @param capacity Maximum number of tuples held waiting for the watermark.
+     * @param timestampFunction Function that defines the event time for each tuple.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Partitioned event time window on this stream.
+     */
+    <K> TEventTimeWindow<T, K> eventTimeWindow(long size, long maxDelay, int capacity,
+            ToLongFunction<T> timestampFunction, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window of {@code double} values that continually
+     * represents the last {@code count} values seen on this stream for each partition.
+     * Each tuple's value is obtained by {@code valueFunction} and
+     * is held without boxing, the tuple itself is not retained.
+     * <BR>
+     * Partitioning is the same as for {@link #last(int, Function)}.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param count Number of values to maintain in each partition.
+     * @param valueFunction Function that defines the value for each tuple.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Window on this stream representing the last {@code count} values for each partition.
+     */
+    <K> TDoubleWindow<T, K> lastDoubles(int count, ToDoubleFunction<T> valueFunction, Function<T, K> keyFunction);
+    
+    /**
+     * Declare a partitioned window of {@code double} values that continually
+     * represents the values seen on this stream in the last {@code time} for each partition.
+     * Each tuple's value is obtained by {@code valueFunction} and
+     * is held without boxing, the tuple itself is not retained.
+     * <BR>
+     * Partitioning is the same as for {@link #last(long, TimeUnit, Function)}.
+     * 
+     * @param <K> Key type.
+     * 
+     * @param time Time to retain a value in a partition.
+     * @param unit Unit for {@code time}.
+     * @param valueFunction Function that defines the value for each tuple.
+     * @param keyFunction Function that defines the key for each tuple.
+     * @return Window on this stream representing the last {@code time} of values for each partition.
+     */
+    <K> TDoubleWindow<T, K> lastDoubles(long time, TimeUnit unit, ToDoubleFunction<T> valueFunction, Function<T, K> keyFunction);
     
     /**
      * Declare a stream that will contain all tuples from this stream and
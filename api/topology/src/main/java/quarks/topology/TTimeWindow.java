@@ -0,0 +1,104 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.topology;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+
+/**
+ * Partitioned window of tuples retained for a period of time.
+ * In addition to the aggregations of any {@link TWindow} a time
+ * window supports hopping aggregations, emitted periodically
+ * and computed from pre-aggregated panes of the window's time.
+ *
+ * @param <T> Tuple type
+ * @param <K> Partition key type
+ *
+ * @see TStream#last(long, TimeUnit, Function) Time based window
+ */
+public interface TTimeWindow<T, K> extends TWindow<T, K> {
+
+    /**
+     * Declares a stream that is a hopping aggregation of partitions
+     * in this window. Every {@code hop} the aggregation of each
+     * partition over the window's time is submitted to the returned stream.
+     * For example {@code s.last(10, MINUTES, key).aggregate(30, SECONDS, ...)}
+     * declares an aggregation of the last ten minutes of each partition
+     * emitted every thirty seconds.
+     * <P>
+     * Each partition's time is divided into panes, the length of a pane being
+     * {@code hop}, which must divide the window's time. At most 10,000 panes may
+     * cover the window's time, bounding the pane results retained for a partition.
+     * When a pane closes {@code paneAggregator.apply(tuples, key)} is called once
+     * with the tuples inserted during the pane, and the tuples are discarded.
+     * Every {@code hop} {@code combiner.apply(paneResults, key)} is called
+     * with the results of the panes within the window, oldest first,
+     * and its result is submitted if not {@code null}.
+     * Empty panes are not aggregated and their results are not
+     * passed to the combiner.
+     * </P>
+     * <P>
+     * Thus each tuple is aggregated once, rather than once
+     * for every emission that includes it.
+     * Panes start at the first insertion into a partition and continue
+     * while the partition's window contains tuples.
+     * </P>
+     *
+     * @param hop Time between aggregations of a partition.
+     * @param unit Unit for {@code hop}.
+     * @param paneAggregator Logic to aggregate the tuples of a pane.
+     * @param combiner Logic to combine the pane results of a partition.
+     * @return A stream that contains the hopping aggregations of partitions in this window.
+     * @throws IllegalArgumentException If {@code hop} is not positive or does not divide the window's time,
+     * or if more than 10,000 panes would cover the window's time.
+     */
+    <A, U> TStream<U> aggregate(long hop, TimeUnit unit,
+            BiFunction<List<T>, K, A> paneAggregator, BiFunction<List<A>, K, U> combiner);
+
+    /**
+     * Declares a stream that is a hopping aggregation of partitions
+     * in this window at multiple resolutions.
+     * Every {@code hop} the aggregation of each partition over each
+     * of the {@code resolutions} is submitted to the returned stream as a single list,
+     * in the order of {@code resolutions}.
+     * For example {@code s.last(15, MINUTES, key).aggregate(1, MINUTES, new long[] {1, 5, 15}, ...)}
+     * declares aggregations of the last one, five and fifteen minutes of each
+     * partition emitted every minute.
+     * <P>
+     * Pane results are as described for {@link #aggregate(long, TimeUnit, BiFunction, BiFunction)}
+     * except that the length of a pane is the greatest common divisor of
+     * {@code hop} and each of the {@code resolutions}, each of which must
+     * divide the window's time.
+     * The pane results of a partition are retained once for the window's time
+     * and shared by all the resolutions, every {@code hop}
+     * {@code combiner.apply(paneResults, key)} is called for each resolution
+     * with the results of the panes within it.
+     * A resolution with no tuples has a {@code null} element in the list.
+     * </P>
+     * <P>
+     * Thus each tuple is held once and aggregated once, regardless of
+     * the number of resolutions.
+     * </P>
+     *
+     * @param hop Time between aggregations of a partition.
+     * @param unit Unit for {@code hop} and {@code resolutions}.
+     * @param resolutions Times covered by each aggregation, each
+     * dividing the window's time.
+     * @param paneAggregator Logic to aggregate the tuples of a pane.
+     * @param combiner Logic to combine the pane results of a partition for a resolution.
+     * @return A stream that contains the hopping aggregations of partitions in this window.
+     * @throws IllegalArgumentException If {@code hop} is not positive or does not divide the window's time,
+     * if {@code resolutions} is empty or contains a time that is not positive or does not divide the window's time,
+     * or if more than 10,000 panes would cover the window's time.
+     */
+    <A, U> TStream<List<U>> aggregate(long hop, TimeUnit unit, long[] resolutions,
+            BiFunction<List<T>, K, A> paneAggregator, BiFunction<List<A>, K, U> combiner);
+
+    @Override
+    TTimeWindow<T, K> expirePartitions(long idleTime, TimeUnit unit, int maxPartitions);
+}
@@ -5,9 +5,12 @@
 package quarks.topology;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import quarks.function.BiFunction;
 import quarks.function.Function;
+import quarks.function.Supplier;
+import quarks.window.Accumulator;
 
 /**
  * Partitioned window of tuples. Logically a window
@@ -22,12 +25,22 @@ import quarks.function.Function;
  * then each key has its own window containing the last
  * three tuples with the same key obtained from the tuple's identity using {@code getId()}.
  * </P>
+ * <P>
+ * Calls to the functions passed to a window's aggregation methods
+ * are serialized for each partition, but calls for different partitions
+ * may be made concurrently when the window is fed by multiple threads.
+ * A function that shares state across partitions must synchronize access to it.
+ * </P>
  *
  * @param <T> Tuple type
  * @param <K> Partition key type
  * 
  * @see TStream#last(int, Function) Count based window
  * @see TStream#last(long, java.util.concurrent.TimeUnit, Function) Time based window
+ * @see TTimeWindow
+ * @see TStream#session(long, java.util.concurrent.TimeUnit, Function) Session window
+ * @see TStream#tumbling(long, java.util.concurrent.TimeUnit, Function) Wall-clock aligned tumbling window
+ * @see TStream#tumbling(int, long, java.util.concurrent.TimeUnit, Function) Count or time tumbling window
  */
 public interface TWindow<T, K> extends TopologyElement {
     /**
@@ -48,6 +61,25 @@ public interface TWindow<T, K> extends TopologyElement {
      */
     <U> TStream<U> aggregate(BiFunction<List<T>, K, U> aggregator);
     
+    /**
+     * Declares a stream that is a continuous, incremental aggregation of
+     * partitions in this window. Each partition has its own
+     * {@link Accumulator} obtained from {@code accumulator.get()}.
+     * As a tuple is added to a partition {@code add(tuple)} is called
+     * and as a tuple is evicted {@code remove(tuple)} is called.
+     * Each time the contents of a partition is updated
+     * {@code result()} is submitted to the returned stream if it is not {@code null}.
+     * <BR>
+     * Thus the returned stream is equivalent to
+     * {@link #aggregate(BiFunction)} but the cost of each
+     * aggregation is independent of the number of tuples in the partition.
+     * 
+     * @param accumulator
+     *            Supplier of an accumulator for each partition.
+     * @return A stream that contains the latest aggregations of partitions in this window.
+     */
+    <U> TStream<U> aggregate(Supplier<? extends Accumulator<T, U>> accumulator);
+    
     /**
      * Declares a stream that represents a batched aggregation of
      * partitions in this window. Each time the contents of a partition equals 
@@ -67,6 +99,27 @@ public interface TWindow<T, K> extends TopologyElement {
      * @return A stream that contains the latest aggregations of partitions in this window.
      */
     <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher);
+    /**
+     * Expire idle partitions and limit the number of partitions
+     * in windows declared by subsequent calls to
+     * {@link #aggregate(BiFunction) aggregate} or {@link #batch(BiFunction) batch}.
+     * <BR>
+     * A partition that has not had a tuple inserted within {@code idleTime}
+     * is expired, and when a tuple with a new key would exceed
+     * {@code maxPartitions} the least recently inserted into partition is expired.
+     * An expired partition is discarded with its contents, a later tuple with
+     * the same key starts a new empty partition.
+     * This bounds the memory used by a window partitioned by
+     * a key with unbounded cardinality, such as a device or transaction identifier.
+     * 
+     * @param idleTime Time a partition may be idle before it expires,
+     * zero to never expire idle partitions.
+     * @param unit Unit for {@code idleTime}.
+     * @param maxPartitions Maximum number of partitions, zero for unlimited.
+     * @return This window.
+     */
+    TWindow<T, K> expirePartitions(long idleTime, TimeUnit unit, int maxPartitions);
+    
     /**
      * Returns the key function used to map tuples to partitions.
      * @return Key function used to map tuples to partitions.
@@ -4,11 +4,25 @@
 */
 package quarks.topology.plumbing;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
+import quarks.function.BiConsumer;
+import quarks.function.BiFunction;
 import quarks.function.Function;
+import quarks.oplet.plumbing.AsyncMap;
+import quarks.oplet.plumbing.Conflate;
+import quarks.oplet.plumbing.Debounce;
+import quarks.oplet.plumbing.Delay;
 import quarks.oplet.plumbing.Isolate;
+import quarks.oplet.plumbing.LoadShedder;
+import quarks.oplet.plumbing.OverflowPolicy;
+import quarks.oplet.plumbing.ParallelMap;
 import quarks.oplet.plumbing.PressureReliever;
+import quarks.oplet.plumbing.Throttle;
 import quarks.oplet.plumbing.UnorderedIsolate;
 import quarks.topology.TStream;
 
@@ -19,6 +33,11 @@ import quarks.topology.TStream;
  */
 public class PlumbingStreams {
     
+    /**
+     * Number of tuples buffered for each channel of a parallel region.
+     */
+    private static final int CHANNEL_CAPACITY = 1024;
+    
     /**
      * Insert a blocking delay between tuples.
      * Returned stream is the input stream delayed by {@code delay}.
@@ -37,7 +56,9 @@ public class PlumbingStreams {
      * receives t2 80ms after it forwarded t1 and it will delay another
      * 100ms before forwarding t2.  Hence the overall delay between forwarding
      * t1 and t2 is 180ms.
-     * See {@link #blockingThrottle(long, TimeUnit) blockingThrottle}.
+     * See {@link #blockingThrottle(long, TimeUnit) blockingThrottle}
+     * and {@link #delay(TStream, long, TimeUnit, int, OverflowPolicy) delay}
+     * for a non-blocking delay.
      * 
      * @param stream Stream t
      * @param delay Amount of time to delay a tuple.
@@ -82,6 +103,11 @@ public class PlumbingStreams {
      * receives t2 80ms after it forwarded t1 and it will only delay another
      * 20ms (100ms - 80ms) before forwarding t2.  
      * Hence the overall delay between forwarding t1 and t2 remains 100ms.
+     * <p>
+     * The upstream processing, including any other processing of
+     * {@code stream}, is blocked while a tuple is delayed.
+     * See {@link #throttle(TStream, int, long, TimeUnit, int, int, OverflowPolicy) throttle}
+     * for a non-blocking rate limit.
      * 
      * @param <T> tuple type
      * @param stream the stream to throttle
@@ -152,6 +178,113 @@ public class PlumbingStreams {
             return t;
             };
     }
+
+    /**
+     * Limit the rate of a stream using a token bucket, without blocking
+     * the upstream processing.
+     * <P>
+     * Up to {@code burst} tuples are forwarded without delay, and over
+     * a longer period the rate of the returned stream does not exceed
+     * {@code permits} tuples per {@code period}. Tuples arriving faster
+     * are held in a buffer of {@code capacity} tuples and forwarded
+     * on a scheduler thread as the rate allows.
+     * When the buffer is full {@code policy} is applied, only
+     * {@link OverflowPolicy#BLOCK} ever blocks the upstream processing,
+     * thus with the other policies throttling the returned stream does not
+     * slow down any other processing of {@code stream}.
+     * </P>
+     * <P>
+     * Tuple order is maintained.
+     * </P>
+     * <P>
+     * Sample use:
+     * <pre>{@code
+     * TStream<Reading> readings = ...
+     * // At most 10 readings a second, allowing bursts of 5
+     * // and discarding the oldest readings when more than 100 are waiting.
+     * TStream<Reading> throttled = throttle(readings, 10, 1, TimeUnit.SECONDS,
+     *      5, 100, OverflowPolicy.DROP_OLDEST);
+     * }</pre>
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param stream Stream to throttle.
+     * @param permits Number of tuples allowed per {@code period}.
+     * @param period Period the rate is defined over.
+     * @param unit Time unit for {@code period}.
+     * @param burst Maximum number of tuples forwarded without delay.
+     * @param capacity Maximum number of tuples held waiting to be forwarded.
+     * @param policy Action taken when a tuple arrives and the buffer is full.
+     * @return Throttled stream.
+     *
+     * @see Throttle
+     */
+    public static <T> TStream<T> throttle(TStream<T> stream, int permits, long period, TimeUnit unit,
+            int burst, int capacity, OverflowPolicy policy) {
+        return stream.pipe(new Throttle<>(permits, period, unit, burst, capacity, policy));
+    }
+
+    /**
+     * Delay each tuple by a fixed time, without blocking
+     * the upstream processing.
+     * <P>
+     * Each tuple is forwarded {@code delay} after it arrived,
+     * on a scheduler thread, so unlike {@link #blockingDelay(TStream, long, TimeUnit)}
+     * the spacing between tuples is maintained and downstream processing
+     * delays do not accumulate.
+     * Up to {@code capacity} tuples are held, when the buffer is full
+     * {@code policy} is applied, only {@link OverflowPolicy#BLOCK}
+     * ever blocks the upstream processing.
+     * {@link OverflowPolicy#CONFLATE} is not supported.
+     * </P>
+     * <P>
+     * Tuple order is maintained.
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param stream Stream to delay.
+     * @param delay Amount of time to delay each tuple.
+     * @param unit Time unit for {@code delay}.
+     * @param capacity Maximum number of tuples held by the delay.
+     * @param policy Action taken when a tuple arrives and the buffer is full.
+     * @return Delayed stream.
+     *
+     * @see Delay
+     */
+    public static <T> TStream<T> delay(TStream<T> stream, long delay, TimeUnit unit,
+            int capacity, OverflowPolicy policy) {
+        return stream.pipe(new Delay<>(delay, unit, capacity, policy));
+    }
+
+    /**
+     * Forward a tuple only once {@code stream} has been quiet for a period.
+     * <P>
+     * When no tuple has arrived on {@code stream} for {@code quiet}
+     * the most recent tuple is forwarded, on a scheduler thread.
+     * Any tuple followed by another tuple within {@code quiet} is discarded,
+     * so a burst of tuples results in a single tuple, the last of the burst.
+     * The upstream processing is never blocked.
+     * </P>
+     * <P>
+     * Sample use:
+     * <pre>{@code
+     * TStream<Boolean> contact = ...
+     * // Only report the state of a bouncing switch once it has settled for 50ms.
+     * TStream<Boolean> settled = debounce(contact, 50, TimeUnit.MILLISECONDS);
+     * }</pre>
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param stream Stream to debounce.
+     * @param quiet Time without tuples before the latest tuple is forwarded.
+     * @param unit Time unit for {@code quiet}.
+     * @return Debounced stream.
+     *
+     * @see Debounce
+     */
+    public static <T> TStream<T> debounce(TStream<T> stream, long quiet, TimeUnit unit) {
+        return stream.pipe(new Debounce<>(quiet, unit));
+    }
     
     /**
      * Relieve pressure on upstream processing by discarding tuples.
@@ -182,15 +315,148 @@ public class PlumbingStreams {
      * @param <K> Key type.
      */
     public static <T,K> TStream<T> pressureReliever(TStream<T> stream, Function<T,K> keyFunction, int count) {
+        // Only the latest tuple per key, conflation has no per-tuple overhead.
+        if (count == 1)
+            return conflate(stream, keyFunction);
         return stream.pipe(new PressureReliever<>(count, keyFunction));
     }
+
+    /**
+     * Conflate a stream to the latest tuple per key, forwarding
+     * tuples as fast as downstream processing allows.
+     * <P>
+     * Any downstream processing of the returned stream is isolated
+     * from {@code stream}. When the downstream processing cannot
+     * keep up with the rate of {@code stream} only the most recent
+     * tuple per key is maintained, an earlier tuple for the key that
+     * has not been forwarded is discarded.
+     * Tuple order is maintained within a key but not across keys.
+     * </P>
+     * <P>
+     * State for a key is released once its tuple has been forwarded,
+     * so an unbounded set of keys may be conflated.
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param <K> Key type.
+     * @param stream Stream to conflate.
+     * @param keyFunction Function defining the key of each tuple.
+     * @return Conflated stream.
+     *
+     * @see Conflate
+     */
+    public static <T,K> TStream<T> conflate(TStream<T> stream, Function<T,K> keyFunction) {
+        return stream.pipe(new Conflate<>(keyFunction));
+    }
+
+    /**
+     * Conflate a stream to the latest tuple per key, forwarding
+     * tuples at a fixed rate.
+     * <P>
+     * Every {@code period} the most recent tuple of each key
+     * that has arrived on {@code stream} since the previous period is
+     * forwarded, any earlier tuples for the key are discarded.
+     * This is typically used to reduce a high rate telemetry stream
+     * to the current value of each sensor at a steady rate.
+     * Any downstream processing of the returned stream is isolated
+     * from {@code stream}.
+     * </P>
+     * <P>
+     * Sample use:
+     * <pre>{@code
+     * TStream<SensorReading> readings = ...
+     * // The latest reading of each sensor, at most once a second.
+     * TStream<SensorReading> latest = conflate(readings, r -> r.getSensorId(), 1, TimeUnit.SECONDS);
+     * }</pre>
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param <K> Key type.
+     * @param stream Stream to conflate.
+     * @param keyFunction Function defining the key of each tuple.
+     * @param period Period between forwarding tuples.
+     * @param unit Time unit for {@code period}.
+     * @return Conflated stream.
+     *
+     * @see Conflate
+     */
+    public static <T,K> TStream<T> conflate(TStream<T> stream, Function<T,K> keyFunction,
+            long period, TimeUnit unit) {
+        if (period <= 0)
+            throw new IllegalArgumentException("period: " + period);
+        return stream.pipe(new Conflate<>(keyFunction, period, unit));
+    }
     
+    /**
+     * Isolate upstream processing from downstream processing, shedding
+     * a sample of tuples when the downstream processing cannot keep up.
+     * <P>
+     * Tuples from {@code stream} are queued and submitted to the returned
+     * stream in order by a dedicated thread. Once the time tuples spend in
+     * the queue consistently exceeds {@code target} an increasing percentage
+     * of arriving tuples, spread evenly, is discarded until the latency
+     * is back under {@code target}, after which shedding gradually stops.
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param stream Stream to be isolated from downstream processing.
+     * @param target Queue latency target.
+     * @param unit Time unit for {@code target}.
+     * @param capacity Maximum number of tuples held in the queue.
+     * @return Stream that is isolated from {@code stream}.
+     *
+     * @see LoadShedder
+     */
+    public static <T> TStream<T> loadShedder(TStream<T> stream, long target, TimeUnit unit, int capacity) {
+        return stream.pipe(new LoadShedder<>(target, unit, capacity));
+    }
+
+    /**
+     * Isolate upstream processing from downstream processing, shedding
+     * the lowest priority tuples when the downstream processing cannot keep up.
+     * <P>
+     * Tuples from {@code stream} are queued and submitted to the returned
+     * stream in order by a dedicated thread. Once the time tuples spend in
+     * the queue consistently exceeds {@code target} arriving tuples are
+     * discarded in order of increasing priority until the latency
+     * is back under {@code target}, after which shedding gradually stops.
+     * Priorities are between zero and {@code LoadShedder.MAX_LEVEL - 1}.
+     * </P>
+     * <P>
+     * Sample use:
+     * <pre>{@code
+     * TStream<Reading> readings = ...
+     * // Keep queuing within 50ms, shedding routine readings before alarms.
+     * TStream<Reading> shed = loadShedder(readings, 50, TimeUnit.MILLISECONDS, 1000,
+     *      r -> r.isAlarm() ? 99 : 0);
+     * }</pre>
+     * </P>
+     *
+     * @param <T> Tuple type.
+     * @param stream Stream to be isolated from downstream processing.
+     * @param target Queue latency target.
+     * @param unit Time unit for {@code target}.
+     * @param capacity Maximum number of tuples held in the queue.
+     * @param priorityFunction Function returning the priority of each tuple.
+     * @return Stream that is isolated from {@code stream}.
+     *
+     * @see LoadShedder
+     */
+    public static <T> TStream<T> loadShedder(TStream<T> stream, long target, TimeUnit unit, int capacity,
+            Function<T, Integer> priorityFunction) {
+        return stream.pipe(new LoadShedder<>(target, unit, capacity, priorityFunction));
+    }
+
     /**
      * Isolate upstream processing from downstream processing.
      * <BR>
      * Implementations may throw {@code OutOfMemoryExceptions} 
      * if the processing against returned stream cannot keep up
      * with the arrival rate of tuples on {@code stream}.
+     * <BR>
+     * When order is maintained the thread processing the returned stream
+     * takes all the queued tuples, up to a limit, at a time, reducing
+     * the per tuple cost of passing tuples between threads.
      *  
      * @param stream Stream to be isolated from downstream processing.
      * @param ordered {@code true} to maintain arrival order on the returned stream,
@@ -202,4 +468,242 @@ public class PlumbingStreams {
                 ordered ? new Isolate<T>() : new UnorderedIsolate<T>());
     }
 
+    /**
+     * Isolate upstream processing from downstream processing
+     * using a bounded buffer, maintaining arrival order.
+     * <BR>
+     * At most {@code capacity} tuples are held between {@code stream}
+     * and the returned stream, when a tuple arrives and the buffer is
+     * full {@code policy} determines which tuple is discarded or
+     * if the upstream processing is blocked.
+     * With {@link OverflowPolicy#CONFLATE} tuples are conflated
+     * when they are {@link Object#equals(Object) equal}.
+     * 
+     * @param stream Stream to be isolated from downstream processing.
+     * @param capacity Maximum number of tuples held.
+     * @param policy Action taken when the buffer is full.
+     * @return Stream that is isolated from {@code stream}.
+     * 
+     * @param <T> Tuple type.
+     */
+    public static <T> TStream<T> isolate(TStream<T> stream, int capacity, OverflowPolicy policy) {
+        return stream.pipe(new Isolate<T>(capacity, policy));
+    }
+
+    /**
+     * Isolate upstream processing from downstream processing
+     * using a bounded buffer, maintaining arrival order.
+     * <BR>
+     * At most {@code capacity} tuples are held between {@code stream}
+     * and the returned stream, when a tuple arrives and the buffer is
+     * full {@code policy} determines which tuple is discarded or
+     * if the upstream processing is blocked.
+     * With {@link OverflowPolicy#CONFLATE} an arriving tuple
+     * replaces any held tuple with the same key.
+     * 
+     * @param stream Stream to be isolated from downstream processing.
+     * @param capacity Maximum number of tuples held.
+     * @param policy Action taken when the buffer is full.
+     * @param keyFunction Function defining the key of each tuple
+     * for {@link OverflowPolicy#CONFLATE}.
+     * @return Stream that is isolated from {@code stream}.
+     * 
+     * @param <T> Tuple type.
+     * @param <K> Key type.
+     */
+    public static <T,K> TStream<T> isolate(TStream<T> stream, int capacity, OverflowPolicy policy,
+            Function<T,K> keyFunction) {
+        return stream.pipe(new Isolate<T>(capacity, policy, keyFunction));
+    }
+
+    /**
+     * Isolate upstream processing from downstream processing
+     * using a bounded buffer, maintaining arrival order and
+     * submitting tuples downstream in batches.
+     * <BR>
+     * The thread processing the returned stream takes up
+     * to {@code batchSize} tuples from the buffer at a time,
+     * reducing the per tuple cost of passing tuples between threads.
+     * Otherwise as {@link #isolate(TStream, int, OverflowPolicy, Function)}.
+     * 
+     * @param stream Stream to be isolated from downstream processing.
+     * @param capacity Maximum number of tuples held.
+     * @param policy Action taken when the buffer is full.
+     * @param keyFunction Function defining the key of each tuple
+     * for {@link OverflowPolicy#CONFLATE}.
+     * @param batchSize Maximum number of tuples taken from the buffer at a time.
+     * @return Stream that is isolated from {@code stream}.
+     * 
+     * @param <T> Tuple type.
+     * @param <K> Key type.
+     */
+    public static <T,K> TStream<T> isolate(TStream<T> stream, int capacity, OverflowPolicy policy,
+            Function<T,K> keyFunction, int batchSize) {
+        return stream.pipe(new Isolate<T>(capacity, policy, keyFunction, batchSize));
+    }
+
+    /**
+     * Process a stream in parallel, partitioned by key.
+     * <P>
+     * Tuples from {@code stream} are routed to one of {@code width}
+     * channels by the hash of their key, obtained by {@code keyFunction}, so
+     * that all tuples with the same key are processed by the same channel.
+     * Each channel is isolated from {@code stream} and from the other channels,
+     * and runs its own copy of the processing declared by
+     * {@code pipeline.apply(channelStream, channel)}, where {@code channel}
+     * is the channel's index from {@code 0} to {@code width-1}.
+     * The returned stream is the union of the streams returned by {@code pipeline}.
+     * </P>
+     * <P>
+     * Tuple order is maintained within a key but not across keys.
+     * Each channel buffers a bounded number of tuples, once a
+     * channel's buffer is full {@code stream} is blocked until
+     * the channel has processed a tuple.
+     * </P>
+     * <P>
+     * Sample use, computing per-device statistics using four threads:
+     * <pre>{@code
+     * TStream<Reading> readings = ...
+     * TStream<JsonObject> stats = PlumbingStreams.parallel(readings, 4, r -> r.getDeviceId(),
+     *     (channel, index) -> channel.last(1, TimeUnit.MINUTES, r -> r.getDeviceId())
+     *                                .aggregate((list, id) -> summarize(list, id)));
+     * }</pre>
+     * </P>
+     * 
+     * @param stream Stream to be processed in parallel.
+     * @param width Number of channels.
+     * @param keyFunction Function defining the key of each tuple.
+     * @param pipeline Function that declares the processing of each channel.
+     * @return Union of the streams returned by {@code pipeline}.
+     * 
+     * @param <T> Tuple type.
+     * @param <K> Key type.
+     * @param <R> Result tuple type.
+     * 
+     * @throws IllegalArgumentException if {@code width <= 0}
+     */
+    public static <T,K,R> TStream<R> parallel(TStream<T> stream, int width, Function<T,K> keyFunction,
+            BiFunction<TStream<T>, Integer, TStream<R>> pipeline) {
+        if (width <= 0)
+            throw new IllegalArgumentException("width: " + width);
+        
+        List<TStream<T>> channels = stream.split(width,
+                tuple -> Objects.hashCode(keyFunction.apply(tuple)) & Integer.MAX_VALUE);
+        
+        List<TStream<R>> results = new ArrayList<>(width);
+        for (int i = 0; i < width; i++) {
+            TStream<T> channel = isolate(channels.get(i), CHANNEL_CAPACITY, OverflowPolicy.BLOCK);
+            results.add(pipeline.apply(channel, i));
+        }
+        
+        if (width == 1)
+            return results.get(0);
+        return results.get(0).union(new HashSet<>(results.subList(1, width)));
+    }
+
+    /**
+     * Map tuples in parallel, maintaining tuple order.
+     * At most {@code concurrency * 4} tuples are in flight.
+     * 
+     * @param stream Stream to be mapped.
+     * @param concurrency Number of threads mapping tuples.
+     * @param mapper Function mapping each tuple, called concurrently.
+     * @return Stream containing the mapped tuples in the order of {@code stream}.
+     * 
+     * @param <T> Tuple type.
+     * @param <U> Mapped tuple type.
+     * 
+     * @see #parallelMap(TStream, int, int, Function)
+     */
+    public static <T,U> TStream<U> parallelMap(TStream<T> stream, int concurrency, Function<T,U> mapper) {
+        return parallelMap(stream, concurrency, concurrency * 4, mapper);
+    }
+
+    /**
+     * Map tuples in parallel, maintaining tuple order.
+     * <P>
+     * Each tuple is mapped by {@code mapper} on one of {@code concurrency}
+     * threads, so {@code mapper} is called concurrently and must be thread-safe.
+     * The returned stream contains the mapped tuples in the same order
+     * as their tuples on {@code stream}, as with {@link TStream#map(Function)}
+     * a {@code null} result is discarded.
+     * </P>
+     * <P>
+     * At most {@code maxInFlight} tuples are being mapped or held waiting for
+     * an earlier tuple's mapping to complete, once reached the processing
+     * of {@code stream} is blocked until the earliest tuple's result is submitted.
+     * Thus memory use is bounded regardless of the variation
+     * in the time taken to map each tuple.
+     * </P>
+     * 
+     * @param stream Stream to be mapped.
+     * @param concurrency Number of threads mapping tuples.
+     * @param maxInFlight Maximum number of tuples in flight,
+     * at least {@code concurrency}.
+     * @param mapper Function mapping each tuple, called concurrently.
+     * @return Stream containing the mapped tuples in the order of {@code stream}.
+     * 
+     * @param <T> Tuple type.
+     * @param <U> Mapped tuple type.
+     * 
+     * @throws IllegalArgumentException if {@code concurrency <= 0}
+     * or {@code maxInFlight < concurrency}
+     */
+    public static <T,U> TStream<U> parallelMap(TStream<T> stream, int concurrency, int maxInFlight,
+            Function<T,U> mapper) {
+        return stream.pipe(new ParallelMap<T,U>(concurrency, maxInFlight, mapper));
+    }
+
+    /**
+     * Map tuples asynchronously, for example using requests to
+     * an external service, with a bounded number of outstanding mappings.
+     * <P>
+     * For each tuple {@code mapper.accept(tuple, callback)} is called,
+     * {@code mapper} starts the mapping and returns without waiting
+     * for it to complete. When the mapping completes, on any thread,
+     * {@code callback.accept(result, null)} is called with the mapped tuple,
+     * or {@code callback.accept(null, error)} if it failed.
+     * Thus a single thread can have many mappings outstanding and
+     * throughput is not limited by the time taken by each mapping.
+     * </P>
+     * <P>
+     * At most {@code maxInFlight} tuples are outstanding, once reached
+     * the processing of {@code stream} is blocked until a tuple's result is submitted.
+     * A mapping that fails or does not complete within {@code timeout}
+     * results in {@code failureFunction.apply(tuple, error)}, with a
+     * {@code java.util.concurrent.TimeoutException} for a timeout.
+     * As with {@link TStream#map(Function)} a {@code null} result is discarded.
+     * </P>
+     * <P>
+     * Sample use with an asynchronous HTTP client:
+     * <pre>{@code
+     * TStream<Reading> readings = ...
+     * TStream<Enriched> enriched = PlumbingStreams.mapAsync(readings,
+     *     (reading, callback) -> client.lookup(reading.getId(),
+     *                             (info, error) -> callback.accept(info == null ? null : enrich(reading, info), error)),
+     *     64, true, 5, TimeUnit.SECONDS, (reading, error) -> null);
+     * }</pre>
+     * </P>
+     * 
+     * @param stream Stream to be mapped.
+     * @param mapper Function starting the mapping of a tuple.
+     * @param maxInFlight Maximum number of outstanding tuples.
+     * @param ordered {@code true} to maintain the order of {@code stream},
+     * {@code false} to submit results as they complete.
+     * @param timeout Time for a mapping to complete, zero for no timeout.
+     * @param unit Unit for {@code timeout}.
+     * @param failureFunction Function returning the result of a failed mapping,
+     * {@code null} to discard tuples whose mapping failed.
+     * @return Stream containing the mapped tuples.
+     * 
+     * @param <T> Tuple type.
+     * @param <U> Mapped tuple type.
+     * 
+     * @throws IllegalArgumentException if {@code maxInFlight <= 0} or {@code timeout < 0}
+     */
+    public static <T,U> TStream<U> mapAsync(TStream<T> stream, BiConsumer<T, BiConsumer<U, Throwable>> mapper,
+            int maxInFlight, boolean ordered, long timeout, TimeUnit unit, BiFunction<T, Throwable, U> failureFunction) {
+        return stream.pipe(new AsyncMap<T,U>(mapper, maxInFlight, ordered, timeout, unit, failureFunction));
+    }
+
 }
@@ -8,16 +8,27 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
+import quarks.function.BiConsumer;
+import quarks.function.Function;
 import quarks.function.Functions;
+import quarks.oplet.plumbing.OverflowPolicy;
 import quarks.topology.TStream;
 import quarks.topology.Topology;
 import quarks.topology.plumbing.PlumbingStreams;
@@ -204,4 +215,427 @@ public abstract class PlumbingTest extends TopologyAbstractTest {
         assertTrue(tcCount.valid());
         assertTrue(contents.valid());
     }
+
+    private void testLoadShedder(boolean priority) throws Exception {
+        // Timing variances on shared machines can cause this test to fail
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+
+        Topology topology = newTopology();
+
+        TStream<TimeAndId> raw = topology.poll(() -> new TimeAndId(), 1, TimeUnit.MILLISECONDS);
+        TStream<TimeAndId> shed = priority ?
+                PlumbingStreams.loadShedder(raw, 20, TimeUnit.MILLISECONDS, 1000, t -> t.id % 2 == 0 ? 99 : 0) :
+                PlumbingStreams.loadShedder(raw, 20, TimeUnit.MILLISECONDS, 1000);
+
+        // insert a blocking delay acting as downstream operator that cannot keep up
+        TStream<TimeAndId> slow = PlumbingStreams.blockingDelay(shed, 10, TimeUnit.MILLISECONDS);
+        TStream<TimeAndId> delays = slow.map(v -> new TimeAndId(v));
+
+        Condition<Long> tc = topology.getTester().atLeastTupleCount(delays, 200);
+        Condition<List<TimeAndId>> tcRaw = topology.getTester().streamContents(raw);
+        Condition<List<TimeAndId>> tcDelays = topology.getTester().streamContents(delays);
+        complete(topology, tc);
+        assertTrue(tc.valid());
+
+        List<TimeAndId> result = new ArrayList<>(tcDelays.getResult());
+        assertTrue(tcRaw.getResult().size() > result.size());
+
+        // Without shedding the queue would build up to over a second
+        // of processing, once shedding the latency is held near the target.
+        TimeAndId last = result.get(result.size() - 1);
+        assertTrue(last.toString(), last.ms < 500);
+
+        if (priority) {
+            int high = 0;
+            for (TimeAndId t : result)
+                if (t.id % 2 == 0)
+                    high++;
+            assertTrue(high + "/" + result.size(), high > result.size() - high);
+        }
+    }
+
+    @Test
+    public void testLoadShedderSampling() throws Exception {
+        testLoadShedder(false);
+    }
+
+    @Test
+    public void testLoadShedderPriority() throws Exception {
+        testLoadShedder(true);
+    }
+
+    /**
+     * Pause upstream processing before forwarding {@code value} so
+     * that the isolate's thread has taken all earlier tuples.
+     */
+    private static <T> Function<T,T> pauseBefore(T value) {
+        return t -> {
+            if (value.equals(t)) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            return t;
+        };
+    }
+
+    private void testBoundedIsolate(OverflowPolicy policy, String... expected) throws Exception {
+        Topology topology = newTopology();
+
+        TStream<String> raw = topology.strings("A", "B", "C", "D", "E", "F", "G", "H").map(pauseBefore("B"));
+        TStream<String> isolated = PlumbingStreams.isolate(raw, 3, policy);
+        TStream<String> slow = PlumbingStreams.blockingOneShotDelay(isolated, 1, TimeUnit.SECONDS);
+
+        completeAndValidate(policy.name(), topology, slow, 10, expected);
+    }
+
+    @Test
+    public void testBoundedIsolateBlock() throws Exception {
+        testBoundedIsolate(OverflowPolicy.BLOCK, "A", "B", "C", "D", "E", "F", "G", "H");
+    }
+
+    @Test
+    public void testBoundedIsolateDropNewest() throws Exception {
+        testBoundedIsolate(OverflowPolicy.DROP_NEWEST, "A", "B", "C", "D");
+    }
+
+    @Test
+    public void testBoundedIsolateDropOldest() throws Exception {
+        testBoundedIsolate(OverflowPolicy.DROP_OLDEST, "A", "F", "G", "H");
+    }
+
+    @Test
+    public void testBoundedIsolateConflate() throws Exception {
+        Topology topology = newTopology();
+
+        TStream<String> raw = topology.strings("x", "a1", "b1", "a2", "b2", "a3").map(pauseBefore("a1"));
+        TStream<String> isolated = PlumbingStreams.isolate(raw, 2, OverflowPolicy.CONFLATE, t -> t.charAt(0));
+        TStream<String> slow = PlumbingStreams.blockingOneShotDelay(isolated, 1, TimeUnit.SECONDS);
+
+        completeAndValidate("conflate", topology, slow, 10, "x", "a3", "b2");
+    }
+
+    @Test
+    public void testConflate() throws Exception {
+        Topology topology = newTopology();
+
+        TStream<String> raw = topology.strings("x", "a1", "b1", "a2", "b2", "a3").map(pauseBefore("a1"));
+        TStream<String> conflated = PlumbingStreams.conflate(raw, t -> t.charAt(0));
+        TStream<String> slow = PlumbingStreams.blockingOneShotDelay(conflated, 1, TimeUnit.SECONDS);
+
+        completeAndValidate("conflate", topology, slow, 10, "x", "a3", "b2");
+    }
+
+    @Test
+    public void testConflateRemovedSlot() throws Exception {
+        Topology topology = newTopology();
+
+        // a1 and b1 are forwarded and their slots removed before a2 arrives.
+        TStream<String> raw = topology.strings("a1", "b1", "a2").map(pauseBefore("a2"));
+        TStream<String> conflated = PlumbingStreams.conflate(raw, t -> t.charAt(0));
+
+        completeAndValidate("conflate", topology, conflated, 10, "a1", "b1", "a2");
+    }
+
+    @Test
+    public void testConflatePeriodic() throws Exception {
+        Topology topology = newTopology();
+
+        AtomicInteger counter = new AtomicInteger();
+        TStream<Integer> raw = topology.poll(() -> counter.getAndIncrement(), 5, TimeUnit.MILLISECONDS);
+        TStream<Integer> conflated = PlumbingStreams.conflate(raw, v -> v % 2, 100, TimeUnit.MILLISECONDS);
+
+        Condition<Long> tc = topology.getTester().atLeastTupleCount(conflated, 10);
+        Condition<List<Integer>> rawContents = topology.getTester().streamContents(raw);
+        Condition<List<Integer>> contents = topology.getTester().streamContents(conflated);
+        complete(topology, tc);
+        assertTrue(tc.valid());
+
+        // Values only move forward for each key and most are conflated away.
+        List<Integer> result = new ArrayList<>(contents.getResult());
+        int[] last = { -1, -1 };
+        for (int v : result) {
+            assertTrue(result.toString(), v > last[v % 2]);
+            last[v % 2] = v;
+        }
+        assertTrue(rawContents.getResult().size() > result.size());
+    }
+
+    @Test
+    public void testCredit() throws Exception {
+        // Timing variances on shared machines can cause this test to fail
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+
+        Topology topology = newTopology();
+
+        AtomicInteger generated = new AtomicInteger();
+        TStream<Integer> raw = topology.poll(() -> generated.getAndIncrement(), 1, TimeUnit.MILLISECONDS);
+
+        // The source is held back by the credit of the lossless isolate
+        // in front of the slow processing, rather than filling it.
+        TStream<Integer> isolated = PlumbingStreams.isolate(raw.map(v -> v), 4, OverflowPolicy.BLOCK);
+        TStream<Integer> slow = PlumbingStreams.blockingDelay(isolated, 20, TimeUnit.MILLISECONDS);
+
+        Condition<Long> tc = topology.getTester().atLeastTupleCount(slow, 20);
+        Condition<List<Integer>> contents = topology.getTester().streamContents(slow);
+        complete(topology, tc);
+        assertTrue(tc.valid());
+
+        // No tuples were discarded and the source only generated
+        // tuples for which the isolate had room.
+        List<Integer> result = new ArrayList<>(contents.getResult());
+        for (int i = 0; i < result.size(); i++)
+            assertEquals(Integer.valueOf(i), result.get(i));
+        assertTrue(generated.get() + " " + result.size(), generated.get() - result.size() <= 4 + 2);
+    }
+
+    @Test
+    public void testCreditBarrier() throws Exception {
+        Topology topology = newTopology();
+
+        AtomicInteger generated = new AtomicInteger();
+        TStream<Integer> raw = topology.poll(() -> generated.incrementAndGet(), 1, TimeUnit.MILLISECONDS);
+
+        // The lossy isolate stops the flow of credit, so the full
+        // lossless isolate beyond it does not hold back the source.
+        TStream<Integer> lossy = PlumbingStreams.isolate(raw, 4, OverflowPolicy.DROP_OLDEST);
+        TStream<Integer> blocked = PlumbingStreams.isolate(lossy, 2, OverflowPolicy.BLOCK);
+        PlumbingStreams.blockingDelay(blocked, 1, TimeUnit.MINUTES);
+
+        Condition<Long> tc = topology.getTester().atLeastTupleCount(raw, 200);
+        complete(topology, tc, 10, TimeUnit.SECONDS);
+        assertTrue(generated.get() + " tuples generated", tc.valid());
+    }
+
+    @Test
+    public void testBoundedIsolateBatched() throws Exception {
+        Topology topology = newTopology();
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            values.add(i);
+
+        TStream<Integer> raw = topology.collection(values);
+        TStream<Integer> isolated = PlumbingStreams.isolate(raw, 16, OverflowPolicy.BLOCK, Functions.identity(), 8);
+
+        Condition<Long> tc = topology.getTester().tupleCount(isolated, values.size());
+        Condition<List<Integer>> contents = topology.getTester().streamContents(isolated,
+                values.toArray(new Integer[values.size()]));
+        complete(topology, tc);
+
+        assertTrue(tc.valid());
+        assertTrue(contents.valid());
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        Topology topology = newTopology();
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            values.add(i);
+
+        // Each result is channel:value
+        TStream<Integer> raw = topology.collection(values);
+        TStream<String> results = PlumbingStreams.parallel(raw, 4, v -> v % 10,
+                (channel, index) -> channel.map(v -> index + ":" + v));
+
+        Condition<Long> tc = topology.getTester().tupleCount(results, values.size());
+        Condition<List<String>> contents = topology.getTester().streamContents(results, new String[values.size()]);
+        complete(topology, tc);
+        assertTrue(tc.valid());
+
+        Set<Integer> seen = new HashSet<>();
+        Map<Integer, Integer> keyChannels = new HashMap<>();
+        Map<Integer, Integer> lastValues = new HashMap<>();
+        for (String result : contents.getResult()) {
+            int channel = Integer.valueOf(result.substring(0, result.indexOf(':')));
+            int value = Integer.valueOf(result.substring(result.indexOf(':') + 1));
+            assertTrue(seen.add(value));
+            int key = value % 10;
+
+            // All tuples for a key are processed by one channel, in order.
+            Integer keyChannel = keyChannels.put(key, channel);
+            assertTrue(keyChannel == null || keyChannel == channel);
+            Integer lastValue = lastValues.put(key, value);
+            assertTrue(lastValue == null || lastValue < value);
+        }
+        assertEquals(values.size(), seen.size());
+    }
+
+    @Test
+    public void testParallelMap() throws Exception {
+        Topology topology = newTopology();
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            values.add(i);
+        List<Integer> expected = new ArrayList<>();
+        for (Integer value : values)
+            if (value % 7 != 0)
+                expected.add(value * 2);
+
+        // Varying mapping times cause mappings to complete out of order.
+        TStream<Integer> raw = topology.collection(values);
+        TStream<Integer> mapped = PlumbingStreams.parallelMap(raw, 4, 8, v -> {
+            try {
+                Thread.sleep(v % 3);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return v % 7 == 0 ? null : v * 2;
+        });
+
+        Condition<Long> tc = topology.getTester().tupleCount(mapped, expected.size());
+        Condition<List<Integer>> contents = topology.getTester().streamContents(mapped,
+                expected.toArray(new Integer[expected.size()]));
+        complete(topology, tc);
+
+        assertTrue(tc.valid());
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testParallelMapInFlight() throws Exception {
+        Topology topology = newTopology();
+        PlumbingStreams.parallelMap(topology.strings("a"), 4, 2, v -> v);
+    }
+
+    private void testMapAsync(boolean ordered) throws Exception {
+        Topology topology = newTopology();
+        ScheduledExecutorService service = Executors.newScheduledThreadPool(2);
+
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            values.add(i);
+        // Failed and timed out mappings result in the negated value.
+        List<Integer> expected = new ArrayList<>();
+        for (Integer value : values)
+            expected.add(value % 10 == 3 || value % 10 == 7 ? -value : value * 2);
+
+        // Mappings complete after varying delays, ending in 3 fail
+        // and ending in 7 never complete.
+        TStream<Integer> raw = topology.collection(values);
+        TStream<Integer> mapped = PlumbingStreams.mapAsync(raw,
+                (Integer v, BiConsumer<Integer, Throwable> callback) -> {
+                    if (v % 10 == 7)
+                        return;
+                    service.schedule(() -> {
+                        if (v % 10 == 3)
+                            callback.accept(null, new IOException());
+                        else
+                            callback.accept(v * 2, null);
+                    }, v % 5, TimeUnit.MILLISECONDS);
+                },
+                16, ordered, 200, TimeUnit.MILLISECONDS,
+                (v, error) -> {
+                    assertTrue(error.toString(), v % 10 == 3 ? error instanceof IOException : error instanceof TimeoutException);
+                    return -v;
+                });
+
+        Condition<Long> tc = topology.getTester().tupleCount(mapped, expected.size());
+        Condition<List<Integer>> contents = ordered ?
+                topology.getTester().streamContents(mapped, expected.toArray(new Integer[expected.size()])) :
+                topology.getTester().contentsUnordered(mapped, expected.toArray(new Integer[expected.size()]));
+        try {
+            complete(topology, tc);
+        } finally {
+            service.shutdownNow();
+        }
+
+        assertTrue(tc.valid());
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
+
+    @Test
+    public void testMapAsyncOrdered() throws Exception {
+        testMapAsync(true);
+    }
+
+    @Test
+    public void testMapAsyncUnordered() throws Exception {
+        testMapAsync(false);
+    }
+
+    @Test
+    public void testThrottle() throws Exception {
+        // Timing variances on shared machines can cause this test to fail
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+
+        Topology topology = newTopology();
+
+        TStream<Integer> values = topology.collection(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+
+        // One tuple every 100ms with a burst of two tuples
+        TStream<Integer> throttled = PlumbingStreams.throttle(values, 5, 500, TimeUnit.MILLISECONDS,
+                2, 100, OverflowPolicy.BLOCK);
+
+        long[] first = { 0 };
+        TStream<Long> elapsed = throttled.map(v -> {
+            long now = System.currentTimeMillis();
+            if (first[0] == 0)
+                first[0] = now;
+            return now - first[0];
+        });
+
+        Condition<Long> tc = topology.getTester().tupleCount(elapsed, 10);
+        Condition<List<Integer>> contents = topology.getTester().streamContents(throttled,
+                0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        Condition<List<Long>> times = topology.getTester().streamContents(elapsed);
+        complete(topology, tc);
+        assertTrue(tc.valid());
+        assertTrue(contents.getResult().toString(), contents.valid());
+
+        // The first two tuples are the burst, the remaining eight
+        // are spaced by the token interval.
+        List<Long> result = times.getResult();
+        assertTrue(result.toString(), result.get(1) < 100);
+        assertTrue(result.toString(), result.get(9) >= 750);
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        // Timing variances on shared machines can cause this test to fail
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+
+        Topology topology = newTopology();
+
+        TStream<String> strings = topology.strings("a", "b", "c", "d");
+
+        // A sibling branch is not held up by the delay.
+        long[] siblingTimes = { 0, 0 };
+        strings.sink(v -> {
+            long now = System.currentTimeMillis();
+            if (siblingTimes[0] == 0)
+                siblingTimes[0] = now;
+            siblingTimes[1] = now;
+        });
+
+        TStream<Long> starts = strings.map(v -> System.currentTimeMillis());
+        starts = PlumbingStreams.delay(starts, 300, TimeUnit.MILLISECONDS, 10, OverflowPolicy.BLOCK);
+        starts = starts.modify(v -> System.currentTimeMillis() - v);
+        starts = starts.filter(v -> v >= 300);
+
+        Condition<Long> tc = topology.getTester().tupleCount(starts, 4);
+        complete(topology, tc);
+        assertTrue("valid:" + tc.getResult(), tc.valid());
+        assertTrue(siblingTimes[1] - siblingTimes[0] < 300);
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        Topology topology = newTopology();
+
+        TStream<String> strings = topology.strings("a", "b", "c", "d");
+        TStream<String> debounced = PlumbingStreams.debounce(strings, 200, TimeUnit.MILLISECONDS);
+
+        Condition<Long> tc = topology.getTester().tupleCount(debounced, 1);
+        Condition<List<String>> contents = topology.getTester().streamContents(debounced, "d");
+        complete(topology, tc);
+        assertTrue(tc.valid());
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
 }
@@ -15,19 +15,23 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
+import quarks.function.Predicate;
 import quarks.topology.TSink;
 import quarks.topology.TStream;
 import quarks.topology.Topology;
@@ -114,7 +118,38 @@ public abstract class TStreamTest extends TopologyAbstractTest {
 
         assertTrue(contents.getResult().toString(), contents.valid());
     }
-    
+
+    @Test
+    public void testLinearChain() throws Exception {
+
+        Topology t = newTopology();
+
+        // Oplets in the chain are fused when their calls are
+        // not forwarded through the executable's SettableForwarder.
+        AtomicInteger forwarders = new AtomicInteger();
+        TStream<Integer> s = t.collection(Arrays.asList(1, 2, 3, 4));
+        for (int i = 0; i < 8; i++) {
+            s = s.filter(tuple -> tuple >= 0);
+            s = s.map(tuple -> tuple + 1);
+        }
+        s = s.peek(tuple -> {
+            for (StackTraceElement frame : Thread.currentThread().getStackTrace()) {
+                if (frame.getClassName().endsWith(".SettableForwarder"))
+                    forwarders.incrementAndGet();
+            }
+        });
+        TStream<Integer> even = s.filter(tuple -> tuple % 2 == 0).map(tuple -> tuple * 10);
+        TStream<Integer> odd = s.filter(tuple -> tuple % 2 != 0);
+        s = even.union(odd);
+
+        Condition<Long> tc = t.getTester().tupleCount(s, 4);
+        Condition<List<Integer>> contents = t.getTester().contentsUnordered(s, 9, 100, 11, 120);
+        complete(t, tc);
+
+        assertTrue(contents.getResult().toString(), contents.valid());
+        assertEquals(0, forwarders.get());
+    }
+
     @Test
     public void testModifyWithDrops() throws Exception {
 
@@ -277,6 +312,108 @@ public abstract class TStreamTest extends TopologyAbstractTest {
         newTopology().strings("a1").split(0, tuple -> 0);
     }
 
+    /**
+     * Test route() with ordered rules, first match wins
+     * and a rule can multicast.
+     */
+    @Test
+    public void testRouteRules() throws Exception {
+
+        Topology t = newTopology();
+
+        TStream<String> s = t.strings("a1", "b1", "a2", "c1", "e1", "c2", "ab", "d1");
+        List<TStream<String>> routes = s.route(3,
+                Arrays.<Predicate<String>>asList(tuple -> tuple.startsWith("a"), tuple -> tuple.contains("b"),
+                        tuple -> tuple.startsWith("c")),
+                Arrays.asList(Arrays.asList(0, 1), Arrays.asList(1), Collections.<Integer>emptyList()),
+                Arrays.asList(2));
+
+        Condition<Long> tc0 = t.getTester().tupleCount(routes.get(0), 3);
+        Condition<Long> tc1 = t.getTester().tupleCount(routes.get(1), 4);
+        Condition<Long> tc2 = t.getTester().tupleCount(routes.get(2), 2);
+        Condition<List<String>> contents0 = t.getTester().streamContents(routes.get(0), "a1", "a2", "ab");
+        Condition<List<String>> contents1 = t.getTester().streamContents(routes.get(1), "a1", "b1", "a2", "ab");
+        Condition<List<String>> contents2 = t.getTester().streamContents(routes.get(2), "e1", "d1");
+
+        complete(t, t.getTester().and(tc0, tc1, tc2));
+
+        assertTrue(contents0.toString(), contents0.valid());
+        assertTrue(contents1.toString(), contents1.valid());
+        assertTrue(contents2.toString(), contents2.valid());
+    }
+
+    /**
+     * Test routeAll() routes to the union of all matching rules.
+     */
+    @Test
+    public void testRouteAll() throws Exception {
+
+        Topology t = newTopology();
+
+        TStream<String> s = t.strings("a1", "b1", "ab", "c1", "abc", "d1");
+        List<TStream<String>> routes = s.routeAll(4,
+                Arrays.<Predicate<String>>asList(tuple -> tuple.contains("a"), tuple -> tuple.contains("b"),
+                        tuple -> tuple.contains("c")),
+                Arrays.asList(Arrays.asList(0), Arrays.asList(0, 1), Arrays.asList(2)),
+                Arrays.asList(3));
+
+        Condition<Long> tc0 = t.getTester().tupleCount(routes.get(0), 4);
+        Condition<Long> tc1 = t.getTester().tupleCount(routes.get(1), 3);
+        Condition<Long> tc2 = t.getTester().tupleCount(routes.get(2), 2);
+        Condition<Long> tc3 = t.getTester().tupleCount(routes.get(3), 1);
+        Condition<List<String>> contents0 = t.getTester().streamContents(routes.get(0), "a1", "b1", "ab", "abc");
+        Condition<List<String>> contents1 = t.getTester().streamContents(routes.get(1), "b1", "ab", "abc");
+        Condition<List<String>> contents2 = t.getTester().streamContents(routes.get(2), "c1", "abc");
+        Condition<List<String>> contents3 = t.getTester().streamContents(routes.get(3), "d1");
+
+        complete(t, t.getTester().and(tc0, tc1, tc2, tc3));
+
+        assertTrue(contents0.toString(), contents0.valid());
+        assertTrue(contents1.toString(), contents1.valid());
+        assertTrue(contents2.toString(), contents2.valid());
+        assertTrue(contents3.toString(), contents3.valid());
+    }
+
+    /**
+     * Test route() with a routing table.
+     */
+    @Test
+    public void testRouteTable() throws Exception {
+
+        Topology t = newTopology();
+
+        Map<Character, List<Integer>> table = new HashMap<>();
+        table.put('a', Arrays.asList(0));
+        table.put('b', Arrays.asList(0, 2));
+        table.put('c', Arrays.asList(2, 0));
+        table.put('d', Collections.<Integer>emptyList());
+
+        TStream<String> s = t.strings("a1", "b1", "a2", "c1", "e1", "d1", "b2", "e2");
+        List<TStream<String>> routes = s.route(3, tuple -> tuple.charAt(0), table, Arrays.asList(1));
+
+        Condition<Long> tc0 = t.getTester().tupleCount(routes.get(0), 5);
+        Condition<Long> tc1 = t.getTester().tupleCount(routes.get(1), 2);
+        Condition<Long> tc2 = t.getTester().tupleCount(routes.get(2), 3);
+        Condition<List<String>> contents0 = t.getTester().streamContents(routes.get(0), "a1", "b1", "a2", "c1", "b2");
+        Condition<List<String>> contents1 = t.getTester().streamContents(routes.get(1), "e1", "e2");
+        Condition<List<String>> contents2 = t.getTester().streamContents(routes.get(2), "b1", "c1", "b2");
+
+        complete(t, t.getTester().and(tc0, tc1, tc2));
+
+        assertTrue(contents0.toString(), contents0.valid());
+        assertTrue(contents1.toString(), contents1.valid());
+        assertTrue(contents2.toString(), contents2.valid());
+    }
+
+    /**
+     * Test route() with a port out of range.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteInvalidPort() throws Exception {
+        newTopology().strings("a1").route(2, tuple -> tuple, Collections.singletonMap("a1", Arrays.asList(2)),
+                Collections.<Integer>emptyList());
+    }
+
     /**
      * Test split() negative outputs
      */
@@ -22,10 +22,14 @@ import java.util.concurrent.TimeUnit;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import quarks.topology.TDoubleWindow;
+import quarks.topology.TEventTimeWindow;
 import quarks.topology.TStream;
+import quarks.topology.TTimeWindow;
 import quarks.topology.TWindow;
 import quarks.topology.Topology;
 import quarks.topology.tester.Condition;
+import quarks.window.Accumulator;
 
 @Ignore
 public abstract class TWindowTest extends TopologyAbstractTest{
@@ -68,6 +72,228 @@ public abstract class TWindowTest extends TopologyAbstractTest{
         }
     }
     
+    @Test
+    public void testHoppingWindow() throws Exception{
+        Topology top = newTopology();
+        TStream<Integer> ints = top.poll(() -> 1, 10, TimeUnit.MILLISECONDS);
+        
+        TTimeWindow<Integer, Integer> window = ints.last(1, TimeUnit.SECONDS, tuple -> 0);
+        TStream<Integer> counts = window.aggregate(200, TimeUnit.MILLISECONDS,
+                (tuples, key) -> tuples.size(),
+                (panes, key) -> {
+                    assertTrue(panes.size() <= 5);
+                    int count = 0;
+                    for (Integer pane : panes)
+                        count += pane;
+                    return count;
+                });
+
+        Condition<List<Integer>> contents = top.getTester().streamContents(counts, new Integer[10]);
+        complete(top, top.getTester().atLeastTupleCount(counts, 10));
+        System.out.println(contents.getResult());
+        int max = 0;
+        for(Integer count : contents.getResult()){
+            assertTrue(count > 0 && count <= 110);
+            max = Math.max(max, count);
+        }
+        // Once the window is full it contains ~100 tuples
+        assertTrue(max >= 80);
+    }
+    
+    @Test
+    public void testMultiResolutionWindow() throws Exception{
+        Topology top = newTopology();
+        TStream<Integer> ints = top.poll(() -> 1, 10, TimeUnit.MILLISECONDS);
+        
+        TTimeWindow<Integer, Integer> window = ints.last(1, TimeUnit.SECONDS, tuple -> 0);
+        TStream<List<Integer>> counts = window.aggregate(200, TimeUnit.MILLISECONDS, new long[] {200, 1000},
+                (tuples, key) -> tuples.size(),
+                (panes, key) -> {
+                    int count = 0;
+                    for (Integer pane : panes)
+                        count += pane;
+                    return count;
+                });
+
+        Condition<List<List<Integer>>> contents = top.getTester().streamContents(counts, new List[10]);
+        complete(top, top.getTester().atLeastTupleCount(counts, 10));
+        int max = 0;
+        for(List<Integer> resolutionCounts : contents.getResult()){
+            assertEquals(2, resolutionCounts.size());
+            int shortCount = resolutionCounts.get(0);
+            int longCount = resolutionCounts.get(1);
+            assertTrue(shortCount > 0 && shortCount <= 25);
+            assertTrue(longCount >= shortCount && longCount <= 110);
+            max = Math.max(max, longCount);
+        }
+        // Once the window is full it contains ~100 tuples
+        assertTrue(max >= 80);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testMultiResolutionWindowTooLong() throws Exception{
+        Topology top = newTopology();
+        TStream<Integer> ints = top.poll(() -> 1, 10, TimeUnit.MILLISECONDS);
+        
+        ints.last(1, TimeUnit.SECONDS, tuple -> 0).aggregate(200, TimeUnit.MILLISECONDS, new long[] {200, 2000},
+                (tuples, key) -> tuples.size(), (panes, key) -> panes.size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testHoppingWindowLongHop() throws Exception{
+        Topology top = newTopology();
+        top.strings("a").last(1, TimeUnit.SECONDS, tuple -> 0)
+            .aggregate(2, TimeUnit.SECONDS, (tuples, key) -> tuples.size(), (panes, key) -> panes.size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testHoppingWindowHopNotDivisor() throws Exception{
+        Topology top = newTopology();
+        top.strings("a").last(1, TimeUnit.SECONDS, tuple -> 0)
+            .aggregate(300, TimeUnit.MILLISECONDS, (tuples, key) -> tuples.size(), (panes, key) -> panes.size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testHoppingWindowTooManyPanes() throws Exception{
+        Topology top = newTopology();
+        top.strings("a").last(1, TimeUnit.HOURS, tuple -> 0)
+            .aggregate(1, TimeUnit.MILLISECONDS, (tuples, key) -> tuples.size(), (panes, key) -> panes.size());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testMultiResolutionWindowTooManyPanes() throws Exception{
+        Topology top = newTopology();
+        // 200 and 201 divide the window but their pane is a millisecond
+        top.strings("a").last(40_200, TimeUnit.MILLISECONDS, tuple -> 0)
+            .aggregate(200, TimeUnit.MILLISECONDS, new long[] {201},
+                (tuples, key) -> tuples.size(), (panes, key) -> panes.size());
+    }
+    
+    @Test
+    public void testSessionBatch() throws Exception{
+        Topology top = newTopology();
+        // Each tuple is key:delay, delay is a pause before the tuple
+        TStream<String> tuples = top.strings("a:0", "a:0", "b:0", "a:400", "b:0", "a:0")
+                .peek(tuple -> {
+                    try {
+                        Thread.sleep(Long.valueOf(tuple.substring(2)));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+        
+        TWindow<String, String> window = tuples.session(200, TimeUnit.MILLISECONDS, tuple -> tuple.substring(0, 1));
+        TStream<String> sessions = window.batch((session, key) -> key + session.size());
+
+        Condition<List<String>> contents = top.getTester().contentsUnordered(sessions, "a2", "b1", "a2", "b1");
+        complete(top, contents);
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
+    
+    @Test
+    public void testTumblingCountOrTime() throws Exception{
+        Topology top = newTopology();
+        // Each tuple is key:delay, delay is a pause before the tuple
+        TStream<String> tuples = top.strings("a:0", "a:0", "a:0", "a:0", "b:0", "a:0", "a:0", "a:400", "a:0")
+                .peek(tuple -> {
+                    try {
+                        Thread.sleep(Long.valueOf(tuple.substring(2)));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+        
+        // Batches close at three tuples, or 200ms after their first tuple.
+        TWindow<String, String> window = tuples.tumbling(3, 200, TimeUnit.MILLISECONDS, tuple -> tuple.substring(0, 1));
+        TStream<String> batches = window.batch((batch, key) -> key + batch.size());
+
+        Condition<List<String>> contents = top.getTester().contentsUnordered(batches, "a3", "a3", "b1", "a2");
+        complete(top, contents);
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
+    
+    @Test
+    public void testTumblingAccumulatedSum() throws Exception{
+        Topology top = newTopology();
+        TStream<Integer> integers = top.collection(Arrays.asList(1,2,3,4,5,6,7));
+        
+        // Each window's sum restarts once it closes at three tuples.
+        TWindow<Integer, Integer> window = integers.tumbling(3, 10, TimeUnit.SECONDS, unpartitioned());
+        TStream<Integer> sums = window.aggregate(() -> new Sum());
+
+        Condition<Long> tc = top.getTester().tupleCount(sums, 7);
+        Condition<List<Integer>> contents = top.getTester().streamContents(sums, 1, 3, 6, 4, 9, 15, 7);
+        complete(top, tc);
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
+    
+    @Test
+    public void testTumblingAligned() throws Exception{
+        // Timing dependent.
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+
+        Topology top = newTopology();
+        TStream<String> tuples = top.strings("a", "b", "a");
+        
+        // Each batch is closed at a multiple of 500ms
+        TWindow<String, String> window = tuples.tumbling(500, TimeUnit.MILLISECONDS, identity());
+        TStream<String> batches = window.batch(
+                (batch, key) -> key + batch.size() + ":" + (System.currentTimeMillis() % 500 < 100));
+
+        Condition<List<String>> contents = top.getTester().contentsUnordered(batches, "a2:true", "b1:true");
+        complete(top, contents);
+        assertTrue(contents.getResult().toString(), contents.valid());
+    }
+    
+    @Test
+    public void testEventTimeWindow() throws Exception{
+        Topology top = newTopology();
+        // Each tuple is key:timestamp, arriving out of timestamp order
+        TStream<String> tuples = top.strings("a:1", "b:3", "a:7", "a:4", "b:12", "a:11", "a:2", "b:25", "a:100");
+        
+        TEventTimeWindow<String, String> window = tuples.eventTimeWindow(10, 5,
+                tuple -> Long.valueOf(tuple.substring(2)), tuple -> tuple.substring(0, 1));
+        assertSame(tuples, window.feeder());
+        
+        TStream<String> batches = window.batch((batch, key) -> {
+            List<String> times = new ArrayList<>();
+            for (String tuple : batch)
+                times.add(tuple.substring(2));
+            return key + times;
+        });
+        
+        Condition<List<String>> contents = top.getTester().streamContents(batches,
+                "a[1, 4, 7]", "b[3]", "a[11]", "b[12]");
+        Condition<List<String>> late = top.getTester().streamContents(window.late(), "a:2");
+        complete(top, top.getTester().and(contents, late));
+        assertTrue(contents.getResult().toString(), contents.valid());
+        assertTrue(late.getResult().toString(), late.valid());
+    }
+    
+    @Test
+    public void testEventTimeWindowCapacity() throws Exception{
+        Topology top = newTopology();
+        // Holding at most one tuple advances the watermark
+        // so that a:2 is late, it would not be with the default capacity.
+        TStream<String> tuples = top.strings("a:1", "a:4", "a:6", "a:2", "a:100", "a:200");
+        
+        TEventTimeWindow<String, String> window = tuples.eventTimeWindow(10, 5, 1,
+                tuple -> Long.valueOf(tuple.substring(2)), tuple -> tuple.substring(0, 1));
+        
+        TStream<String> batches = window.batch((batch, key) -> {
+            List<String> times = new ArrayList<>();
+            for (String tuple : batch)
+                times.add(tuple.substring(2));
+            return key + times;
+        });
+        
+        Condition<List<String>> contents = top.getTester().streamContents(batches, "a[1, 4, 6]");
+        Condition<List<String>> late = top.getTester().streamContents(window.late(), "a:2");
+        complete(top, top.getTester().and(contents, late));
+        assertTrue(contents.getResult().toString(), contents.valid());
+        assertTrue(late.getResult().toString(), late.valid());
+    }
+    
     @Test
     public void testKeyedWindowSum() throws Exception {
         Topology t = newTopology();
@@ -117,6 +343,139 @@ public abstract class TWindowTest extends TopologyAbstractTest{
         assertTrue(contents.valid());
     }
     
+    @Test
+    public void testKeyedWindowAccumulatedSum() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<Integer> integers = t.collection(Arrays.asList(1,2,3,4,5,6,7));
+        TWindow<Integer, Integer> window = integers.last(2, tuple -> tuple % 2);
+        TStream<Integer> sums = window.aggregate(() -> new Sum());
+
+        Condition<Long> tc = t.getTester().tupleCount(sums, 7);
+        Condition<List<Integer>> contents = t.getTester().streamContents(sums, 
+                1, 2, 4, 6, 8, 10, 12);
+        complete(t, tc);
+
+        assertTrue(contents.valid());
+    }
+    
+    @Test
+    public void testExpirePartitions() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<Integer> integers = t.collection(Arrays.asList(1,2,3,4,6));
+        TWindow<Integer, Integer> window = integers.last(10, tuple -> tuple % 2)
+                .expirePartitions(0, TimeUnit.SECONDS, 1);
+        TStream<Integer> sums = window.aggregate(() -> new Sum());
+
+        Condition<Long> tc = t.getTester().tupleCount(sums, 5);
+        Condition<List<Integer>> contents = t.getTester().streamContents(sums, 
+                1, 2, 3, 4, 10);
+        complete(t, tc);
+
+        assertTrue(contents.valid());
+    }
+    
+    @Test
+    public void testTimeWindowAccumulatedCount() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<Integer> ints = t.poll(() -> 1, 10, TimeUnit.MILLISECONDS);
+        TWindow<Integer, Integer> window = ints.last(200, TimeUnit.MILLISECONDS, unpartitioned());
+        TStream<Integer> counts = window.aggregate(() -> new Sum());
+
+        Condition<List<Integer>> contents = t.getTester().streamContents(counts,
+                new Integer[100]);
+        complete(t, t.getTester().atLeastTupleCount(counts, 100));
+
+        // Tuples are evicted so the count does not keep increasing
+        // and each count reflects the tuples currently in the window.
+        for (Integer count : contents.getResult())
+            assertTrue("Count is: " + count, count >= 0 && count <= 30);
+        assertTrue(contents.getResult().size() >= 100);
+    }
+    
+    @Test
+    public void testLastDoubles() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<String> readings = t.strings("a:1", "b:10", "a:2", "b:20", "a:6", "b:30");
+        TDoubleWindow<String, String> window = readings.lastDoubles(2,
+                s -> Double.valueOf(s.substring(2)), s -> s.substring(0, 1));
+        assertSame(readings, window.feeder());
+        TStream<String> stats = window.aggregate((values, key) ->
+            key + ":" + values.min() + "," + values.max() + "," + values.mean());
+
+        Condition<Long> tc = t.getTester().tupleCount(stats, 6);
+        Condition<List<String>> contents = t.getTester().streamContents(stats,
+                "a:1.0,1.0,1.0", "b:10.0,10.0,10.0",
+                "a:1.0,2.0,1.5", "b:10.0,20.0,15.0",
+                "a:2.0,6.0,4.0", "b:20.0,30.0,25.0");
+        complete(t, tc);
+
+        assertTrue(contents.valid());
+    }
+    
+    @Test
+    public void testLastDoublesExpirePartitions() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<String> readings = t.strings("a:1", "b:10", "a:2", "b:20");
+        TDoubleWindow<String, String> window = readings.lastDoubles(2,
+                s -> Double.valueOf(s.substring(2)), s -> s.substring(0, 1))
+                .expirePartitions(0, TimeUnit.SECONDS, 1);
+        TStream<String> sums = window.aggregate((values, key) -> key + ":" + values.sum());
+
+        Condition<Long> tc = t.getTester().tupleCount(sums, 4);
+        Condition<List<String>> contents = t.getTester().streamContents(sums,
+                "a:1.0", "b:10.0", "a:2.0", "b:20.0");
+        complete(t, tc);
+
+        assertTrue(contents.valid());
+    }
+    
+    @Test
+    public void testTimeLastDoubles() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<Integer> ints = t.poll(() -> 1, 10, TimeUnit.MILLISECONDS);
+        TDoubleWindow<Integer, Integer> window = ints.lastDoubles(200, TimeUnit.MILLISECONDS,
+                tuple -> tuple, unpartitioned());
+        TStream<Integer> counts = window.aggregate((values, key) -> (int) values.sum());
+
+        Condition<List<Integer>> contents = t.getTester().streamContents(counts,
+                new Integer[100]);
+        complete(t, t.getTester().atLeastTupleCount(counts, 100));
+
+        for (Integer count : contents.getResult())
+            assertTrue("Count is: " + count, count >= 0 && count <= 30);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimeLastDoublesZero() throws Exception {
+        Topology t = newTopology();
+        
+        TStream<Integer> ints = t.of(1, 2, 3);
+        ints.lastDoubles(0, TimeUnit.MILLISECONDS, tuple -> tuple, unpartitioned())
+            .aggregate((values, key) -> values.sum());
+    }
+    
+    private static class Sum implements Accumulator<Integer, Integer> {
+        private int sum;
+        @Override
+        public void add(Integer tuple) {
+            sum += tuple;
+        }
+        @Override
+        public void remove(Integer tuple) {
+            sum -= tuple;
+        }
+        @Override
+        public Integer result() {
+            return sum;
+        }
+    }
+    
     @Test
     public void testTimeWindowTimeDiff() throws Exception {
 		// Timing variances on shared machines can cause this test to fail
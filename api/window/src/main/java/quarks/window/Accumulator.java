@@ -0,0 +1,49 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.window;
+
+/**
+ * Incremental aggregation of a partition's contents.
+ * <P>
+ * An accumulator is notified of each tuple as it is
+ * inserted into, and evicted from, its partition so that
+ * the aggregation can be maintained without iterating
+ * over the partition's contents.
+ * For example a sum is maintained by adding the value
+ * of each inserted tuple and subtracting the value of
+ * each evicted tuple.
+ * </P>
+ * <P>
+ * An accumulator is only called while holding its
+ * partition's lock, so implementations need not be thread-safe.
+ * </P>
+ *
+ * @param <T> Tuple type.
+ * @param <U> Result type.
+ * 
+ * @see PartitionedAccumulators
+ */
+public interface Accumulator<T, U> {
+    
+    /**
+     * Called when {@code tuple} is inserted into the partition.
+     * @param tuple Tuple inserted.
+     */
+    void add(T tuple);
+    
+    /**
+     * Called when {@code tuple} is evicted from the partition.
+     * Tuples are evicted in order of insertion.
+     * @param tuple Tuple evicted.
+     */
+    void remove(T tuple);
+    
+    /**
+     * Return the current aggregation of the partition.
+     * @return Current aggregation, if {@code null} then
+     * no aggregation is submitted.
+     */
+    U result();
+}
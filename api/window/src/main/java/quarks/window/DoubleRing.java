@@ -0,0 +1,270 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.window;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Window contents for a partition of {@code double} values.
+ * Values are held with their insertion time in a ring of
+ * primitive arrays, so inserting a value requires
+ * no allocation once the ring has reached its working size.
+ * <P>
+ * Values are ordered by insertion, {@code get(0)} is
+ * the oldest value and {@code get(size() - 1)} the newest.
+ * </P>
+ * <P>
+ * A {@code DoubleRing} is not thread-safe, it is
+ * only accessed while holding its partition's lock.
+ * </P>
+ */
+public class DoubleRing {
+
+    private double[] values;
+    private long[] times;
+
+    /**
+     * Index of the oldest value.
+     */
+    private int head;
+    private int size;
+
+    /**
+     * If true then the ring grows when full,
+     * otherwise adding to a full ring evicts the oldest value.
+     */
+    private final boolean grow;
+
+    /**
+     * Create a ring that holds at most {@code capacity} values,
+     * once full adding a value evicts the oldest value.
+     * @param capacity Maximum number of values.
+     */
+    public DoubleRing(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Create a ring.
+     * @param capacity Initial capacity.
+     * @param grow True if the ring grows when full,
+     * false if adding to a full ring evicts the oldest value.
+     */
+    public DoubleRing(int capacity, boolean grow) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity");
+        this.values = new double[capacity];
+        this.times = new long[capacity];
+        this.grow = grow;
+    }
+
+    /**
+     * Add a value with the current time as its insertion time.
+     * @param value Value to add.
+     */
+    public void add(double value) {
+        add(value, System.currentTimeMillis());
+    }
+
+    /**
+     * Add a value.
+     * @param value Value to add.
+     * @param time Insertion time of the value in milliseconds.
+     */
+    public void add(double value, long time) {
+        if (size == values.length) {
+            if (grow)
+                resize(values.length * 2);
+            else
+                evictOldest();
+        }
+        int i = index(size++);
+        values[i] = value;
+        times[i] = time;
+    }
+
+    /**
+     * Evict the oldest value.
+     * @return The evicted value.
+     * @throws NoSuchElementException if the ring is empty.
+     */
+    public double evictOldest() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        double value = values[head];
+        head = index(1);
+        size--;
+        return value;
+    }
+
+    /**
+     * Evict all values inserted at or before {@code evictTime}.
+     * @param evictTime Time in milliseconds.
+     * @return Number of values evicted.
+     */
+    public int evictOlderThan(long evictTime) {
+        // times are ascending so binary search
+        // for the first value to retain.
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[index(mid)] <= evictTime)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        head = index(lo);
+        size -= lo;
+        return lo;
+    }
+
+    /**
+     * Evict all values.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Number of values in the ring.
+     * @return Number of values in the ring.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Is the ring empty.
+     * @return True if the ring contains no values.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get a value.
+     * @param index Index of the value, zero being the oldest.
+     * @return Value at {@code index}.
+     */
+    public double get(int index) {
+        return values[index(checkIndex(index))];
+    }
+
+    /**
+     * Get a value's insertion time.
+     * @param index Index of the value, zero being the oldest.
+     * @return Insertion time in milliseconds of the value at {@code index}.
+     */
+    public long getTime(int index) {
+        return times[index(checkIndex(index))];
+    }
+
+    /**
+     * Return the values in insertion order.
+     * @return A new array containing the values, oldest first.
+     */
+    public double[] toArray() {
+        double[] copy = new double[size];
+        int first = Math.min(size, values.length - head);
+        System.arraycopy(values, head, copy, 0, first);
+        System.arraycopy(values, 0, copy, first, size - first);
+        return copy;
+    }
+
+    /**
+     * Sum of the values.
+     * @return Sum of the values, zero if the ring is empty.
+     */
+    public double sum() {
+        double sum = 0;
+        for (int i = 0; i < size; i++)
+            sum += values[index(i)];
+        return sum;
+    }
+
+    /**
+     * Minimum value.
+     * @return Minimum value, {@code NaN} if the ring is empty.
+     */
+    public double min() {
+        if (size == 0)
+            return Double.NaN;
+        double min = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < size; i++)
+            min = Math.min(min, values[index(i)]);
+        return min;
+    }
+
+    /**
+     * Maximum value.
+     * @return Maximum value, {@code NaN} if the ring is empty.
+     */
+    public double max() {
+        if (size == 0)
+            return Double.NaN;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++)
+            max = Math.max(max, values[index(i)]);
+        return max;
+    }
+
+    /**
+     * Mean of the values.
+     * @return Mean of the values, {@code NaN} if the ring is empty.
+     */
+    public double mean() {
+        if (size == 0)
+            return Double.NaN;
+        return sum() / size;
+    }
+
+    /**
+     * Sample standard deviation of the values.
+     * @return Standard deviation of the values, {@code NaN}
+     * if the ring contains less than two values.
+     */
+    public double stddev() {
+        if (size < 2)
+            return Double.NaN;
+        double mean = mean();
+        double sumSq = 0;
+        for (int i = 0; i < size; i++) {
+            double d = values[index(i)] - mean;
+            sumSq += d * d;
+        }
+        return Math.sqrt(sumSq / (size - 1));
+    }
+
+    private int index(int offset) {
+        int i = head + offset;
+        return i < values.length ? i : i - values.length;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return index;
+    }
+
+    private void resize(int capacity) {
+        double[] nv = new double[capacity];
+        long[] nt = new long[capacity];
+        int first = Math.min(size, values.length - head);
+        System.arraycopy(values, head, nv, 0, first);
+        System.arraycopy(values, 0, nv, first, size - first);
+        System.arraycopy(times, head, nt, 0, first);
+        System.arraycopy(times, 0, nt, first, size - first);
+        values = nv;
+        times = nt;
+        head = 0;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
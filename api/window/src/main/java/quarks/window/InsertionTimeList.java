@@ -1,69 +1,196 @@
 package quarks.window;
 import java.util.AbstractSequentialList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import quarks.function.Consumer;
 
 /**
  * A window contents list that maintains insertion time.
+ * <P>
+ * Tuples and their insertion times are held in a growable ring
+ * of an object array and a {@code long} array, so inserting
+ * a tuple requires no allocation once the list has reached
+ * its working size. As insertion times are ascending
+ * tuples older than a time are found by a binary search.
+ * </P>
  *
  * @param <T> Type of tuples in the list
  */
 public class InsertionTimeList<T> extends AbstractSequentialList<T> {
-    
-    private final LinkedList<T> tuples = new LinkedList<>();
-    private final LinkedList<Long> times = new LinkedList<>();
-    
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private Object[] tuples = new Object[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+
+    /**
+     * Index of the oldest tuple.
+     */
+    private int head;
+    private int size;
+
     void evictOlderThan(long evictTime) {
-        while(!times.isEmpty() && times.getFirst() <= evictTime){
-            remove();
-        }
+        evict(countOlderThan(evictTime));
     }
-    
+
+    int evictOlderThan(long evictTime, Consumer<T> evicted) {
+        int count = countOlderThan(evictTime);
+        for (int i = 0; i < count; i++)
+            evicted.accept(tuple(index(i)));
+        evict(count);
+        return count;
+    }
+
+    long lastInsertTime() {
+        if (size == 0)
+            throw new NoSuchElementException();
+        return times[index(size - 1)];
+    }
+
     long nextEvictDelay(long timeMs) {
-        long firstTupleTime = times.get(0);
+        long firstTupleTime = times[index(checkIndex(0))];
         long nextEvictTime = firstTupleTime + timeMs;
-        
+
         long timeToNextEvict = nextEvictTime - System.currentTimeMillis();
-        
+
         return Math.max(0, timeToNextEvict);
     }
-    
+
+    /**
+     * Number of tuples inserted at or before {@code evictTime}.
+     * Times are ascending so binary search for the first tuple to retain.
+     */
+    private int countOlderThan(long evictTime) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[index(mid)] <= evictTime)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Evict the oldest {@code count} tuples.
+     */
+    private void evict(int count) {
+        if (count == 0)
+            return;
+        clearSlots(head, count);
+        head = index(count);
+        size -= count;
+        modCount++;
+    }
+
     @Override
     public ListIterator<T> listIterator(int index) {
-         return new TimedListIterator<>(tuples.listIterator(index), times.listIterator(index));
+        if (index < 0 || index > size)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return new TimedListIterator(index);
     }
-    
+
     @Override
     public boolean add(T tuple) {
-        tuples.add(tuple);
-        times.add(System.currentTimeMillis());
+        if (size == tuples.length)
+            resize(size * 2);
+        int i = index(size++);
+        tuples[i] = tuple;
+        times[i] = System.currentTimeMillis();
+        modCount++;
         return true;
     }
+
     @Override
-    public void clear() {
-        tuples.clear();
-        times.clear();
+    public T get(int index) {
+        return tuple(index(checkIndex(index)));
     }
-    
-    private void remove() {
-        tuples.remove();
-        times.remove();
+
+    @Override
+    public T remove(int index) {
+        T tuple = tuple(index(checkIndex(index)));
+        if (index == 0) {
+            evict(1);
+            return tuple;
+        }
+
+        // Shift the newer tuples down over the removed tuple.
+        for (int i = index; i < size - 1; i++) {
+            int to = index(i);
+            int from = index(i + 1);
+            tuples[to] = tuples[from];
+            times[to] = times[from];
+        }
+        tuples[index(--size)] = null;
+        modCount++;
+        return tuple;
+    }
+
+    @Override
+    public void clear() {
+        clearSlots(head, size);
+        head = 0;
+        size = 0;
+        modCount++;
     }
 
     @Override
     public int size() {
-         return tuples.size();
-    }
-    
-    private static class TimedListIterator<T> implements ListIterator<T> {
-        
-        private final ListIterator<T> ti;
-        private final ListIterator<Long> iti;
-        
-        TimedListIterator(ListIterator<T> ti, ListIterator<Long> iti) {
-            this.ti = ti;
-            this.iti = iti;
-        }     
+         return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T tuple(int i) {
+        return (T) tuples[i];
+    }
+
+    private int index(int offset) {
+        int i = head + offset;
+        return i < tuples.length ? i : i - tuples.length;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return index;
+    }
+
+    /**
+     * Clear {@code count} slots starting at {@code from}
+     * so that evicted tuples can be garbage collected.
+     */
+    private void clearSlots(int from, int count) {
+        int first = Math.min(count, tuples.length - from);
+        Arrays.fill(tuples, from, from + first, null);
+        Arrays.fill(tuples, 0, count - first, null);
+    }
+
+    private void resize(int capacity) {
+        Object[] nt = new Object[capacity];
+        long[] ntimes = new long[capacity];
+        int first = Math.min(size, tuples.length - head);
+        System.arraycopy(tuples, head, nt, 0, first);
+        System.arraycopy(tuples, 0, nt, first, size - first);
+        System.arraycopy(times, head, ntimes, 0, first);
+        System.arraycopy(times, 0, ntimes, first, size - first);
+        tuples = nt;
+        times = ntimes;
+        head = 0;
+    }
+
+    private class TimedListIterator implements ListIterator<T> {
+
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        TimedListIterator(int index) {
+            this.cursor = index;
+        }
 
         @Override
         public void add(T tuple) {
@@ -72,45 +199,61 @@ public class InsertionTimeList<T> extends AbstractSequentialList<T> {
 
         @Override
         public boolean hasNext() {
-            return ti.hasNext();
+            return cursor < size;
         }
 
         @Override
         public boolean hasPrevious() {
-            return ti.hasPrevious();
+            return cursor > 0;
         }
 
         @Override
         public T next() {
-            iti.next();
-            return ti.next();
+            checkForComodification();
+            if (cursor >= size)
+                throw new NoSuchElementException();
+            lastReturned = cursor++;
+            return tuple(index(lastReturned));
         }
 
         @Override
         public int nextIndex() {
-            return ti.nextIndex();
+            return cursor;
         }
 
         @Override
         public T previous() {
-            iti.previous();
-            return ti.previous();
+            checkForComodification();
+            if (cursor <= 0)
+                throw new NoSuchElementException();
+            lastReturned = --cursor;
+            return tuple(index(lastReturned));
         }
 
         @Override
         public int previousIndex() {
-            return ti.previousIndex();
+            return cursor - 1;
         }
 
         @Override
         public void remove() {
-            ti.remove();
-            iti.remove();            
+            if (lastReturned < 0)
+                throw new IllegalStateException();
+            checkForComodification();
+            InsertionTimeList.this.remove(lastReturned);
+            cursor = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
         }
 
         @Override
         public void set(T arg0) {
             throw new UnsupportedOperationException();
-        }       
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
     }
 }
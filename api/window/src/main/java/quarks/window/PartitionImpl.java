@@ -16,6 +16,17 @@ class PartitionImpl<T, K, L extends List<T>> implements Partition<T, K, L> {
     private final Window<T, K, L> window;
     private final K key;
     
+    /**
+     * Set once the partition is being expired from its window.
+     */
+    private boolean expired;
+    
+    /**
+     * {@code System.nanoTime()} of the last insert,
+     * only maintained when the window expires partitions.
+     */
+    volatile long lastInsertTime = System.nanoTime();
+    
     PartitionImpl(Window<T, K, L> window, L tuples, K key){
         this.window = window;
         this.tuples = tuples;
@@ -24,22 +35,43 @@ class PartitionImpl<T, K, L extends List<T>> implements Partition<T, K, L> {
     }
 
     @Override
-    public synchronized boolean insert(T tuple) {        
+    public boolean insert(T tuple) {
+        Boolean inserted = insertIfLive(tuple, false);
+        if (inserted != null)
+            return inserted;
+        
+        // Partition expired after the window returned it
+        // so insert into the partition that replaces it.
+        return window.insert(tuple);
+    }
+    
+    /**
+     * Insert a tuple if this partition has not expired.
+     * @param tuple Tuple to insert.
+     * @param touch True to record the insert time.
+     * @return Result of the insert or {@code null} if this partition has expired.
+     */
+    synchronized Boolean insertIfLive(T tuple, boolean touch) {
+        if (expired)
+            return null;
+        if (touch)
+            lastInsertTime = System.nanoTime();
         
         if (getWindow().getInsertionPolicy().apply(this, tuple)) {
             getWindow().getContentsPolicy().accept(this, tuple);
             this.tuples.add(tuple);
             // Trigger
             getWindow().getTriggerPolicy().accept(this, tuple);
-            return true;
+            return Boolean.TRUE;
         }
 
-        return true;
+        return Boolean.TRUE;
     }
     
     @Override
     public synchronized void process() {
-        window.getPartitionProcessor().accept(unmodifiableTuples, key);
+        if (!expired)
+            window.getPartitionProcessor().accept(unmodifiableTuples, key);
     }
 
     @Override
@@ -59,7 +91,23 @@ class PartitionImpl<T, K, L extends List<T>> implements Partition<T, K, L> {
 
     @Override
     public synchronized void evict() {
+        if (expired)
+            return;
         Consumer<Partition<T, K, L>> evictDeterminer = window.getEvictDeterminer();
         evictDeterminer.accept(this);
     }
+    
+    /**
+     * Mark this partition as expired, after which it ignores
+     * any evictions and processing, and redirects insertions
+     * to its window.
+     * @return True if this call expired the partition,
+     * false if it had already expired.
+     */
+    synchronized boolean expire() {
+        if (expired)
+            return false;
+        expired = true;
+        return true;
+    }
 }
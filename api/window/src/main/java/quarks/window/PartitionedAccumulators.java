@@ -0,0 +1,67 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.window;
+
+import quarks.function.Supplier;
+
+/**
+ * Maintain an {@link Accumulator} for each keyed partition in a {@link Window}.
+ * 
+ * @param <T> Tuple type.
+ * @param <K> Key type.
+ * @param <U> Result type.
+ * 
+ * @see Policies#accumulateAndProcessOnInsert(PartitionedAccumulators)
+ * @see Policies#evictOldest(PartitionedAccumulators)
+ * @see Policies#evictOlderWithProcess(long, java.util.concurrent.TimeUnit, PartitionedAccumulators)
+ */
+public class PartitionedAccumulators<T, K, U> extends PartitionedState<K, Accumulator<T, U>> {
+
+    /**
+     * Construct with an accumulator supplier.
+     * @param accumulator Function used to create the accumulator for a key.
+     */
+    public PartitionedAccumulators(Supplier<? extends Accumulator<T, U>> accumulator) {
+        super(() -> accumulator.get());
+    }
+    
+    /**
+     * Add {@code tuple} to the accumulator for {@code key}.
+     * @param key Partition key.
+     * @param tuple Tuple inserted into the partition.
+     */
+    public void add(K key, T tuple) {
+        getState(key).add(tuple);
+    }
+    
+    /**
+     * Remove {@code tuple} from the accumulator for {@code key}.
+     * @param key Partition key.
+     * @param tuple Tuple evicted from the partition.
+     */
+    public void remove(K key, T tuple) {
+        getState(key).remove(tuple);
+    }
+    
+    /**
+     * Remove the accumulator for {@code key}, typically
+     * when its partition expires.
+     * @param key Partition key.
+     * 
+     * @see Window#registerPartitionExpiryHandler(quarks.function.Consumer)
+     */
+    public void removeAccumulator(K key) {
+        removeState(key);
+    }
+    
+    /**
+     * Get the current result of the accumulator for {@code key}.
+     * @param key Partition key.
+     * @return Current result for {@code key}.
+     */
+    public U result(K key) {
+        return getState(key).result();
+    }
+}
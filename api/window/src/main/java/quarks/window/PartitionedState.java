@@ -4,8 +4,8 @@
 */
 package quarks.window;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import quarks.function.Supplier;
 
@@ -13,6 +13,12 @@ import quarks.function.Supplier;
  * Maintain partitioned state.
  * Abstract class that can be used to maintain state 
  * for each keyed partition in a {@link Window}.
+ * <P>
+ * State is held in a concurrent map, so that threads
+ * accessing the state of different partitions do not contend.
+ * As with a {@code Window}, keys must not be {@code null},
+ * nor may states.
+ * </P>
  *
  * @param <K> Key type.
  * @param <S> State type.
@@ -20,7 +26,7 @@ import quarks.function.Supplier;
 public abstract class PartitionedState<K, S> {
 
     private final Supplier<S> initialState;
-    private final Map<K, S> states = new HashMap<>();
+    private final ConcurrentMap<K, S> states = new ConcurrentHashMap<>();
 
     /**
      * Construct with an initial state function.
@@ -39,10 +45,14 @@ public abstract class PartitionedState<K, S> {
      * @param key Partition key.
      * @return State for {@code key}.
      */
-    protected synchronized S getState(K key) {
+    protected S getState(K key) {
         S state = states.get(key);
-        if (state == null)
-            states.put(key, state = initialState.get());
+        if (state == null) {
+            S initial = initialState.get();
+            state = states.putIfAbsent(key, initial);
+            if (state == null)
+                state = initial;
+        }
         return state;
     }
     
@@ -52,7 +62,7 @@ public abstract class PartitionedState<K, S> {
      * @param state State for {@code key}
      * @return Previous state for {@code key}, will be null if no state was held.
      */
-    protected synchronized S setState(K key, S state) {
+    protected S setState(K key, S state) {
         return states.put(key, state);
     }
     /**
@@ -60,7 +70,7 @@ public abstract class PartitionedState<K, S> {
      * @param key Partition key.
      * @return Removed state for {@code key}, will be null if no state was held.
      */
-    protected synchronized S removeState(K key) {
+    protected S removeState(K key) {
         return states.remove(key);
     }
 }
@@ -88,6 +88,96 @@ public class Policies {
         };
     }
     
+    /**
+     * An eviction policy which evicts all tuples that are older than a specified time,
+     * removing each evicted tuple from the partition's accumulator.
+     * If any tuples remain in the partition, it schedules their eviction after
+     * an appropriate interval.
+     * @param time The timespan in which tuple are permitted in the partition.
+     * @param unit The units of time.
+     * @param accumulators Accumulators for the window's partitions.
+     * @return The time-based eviction policy.
+     */ 
+    public static <T, K> Consumer<Partition<T, K, InsertionTimeList<T>> > evictOlderWithProcess(long time, TimeUnit unit,
+            PartitionedAccumulators<T, K, ?> accumulators){
+        
+        long timeMs = TimeUnit.MILLISECONDS.convert(time, unit);
+
+        return (partition) -> {
+            ScheduledExecutorService ses = partition.getWindow().getScheduledExecutorService();
+            InsertionTimeList<T> tuples = partition.getContents();
+            long evictTime = System.currentTimeMillis() - timeMs;
+            K key = partition.getKey();
+            
+            if (tuples.evictOlderThan(evictTime, tuple -> accumulators.remove(key, tuple)) != 0)
+                partition.process();
+            
+            if(!tuples.isEmpty()){
+                ses.schedule(() -> partition.evict(), tuples.nextEvictDelay(timeMs), TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+    
+    /**
+     * An eviction policy for session windows which expires the partition
+     * once no tuple has been inserted for {@code gap}.
+     * If a tuple has been inserted within {@code gap} then it schedules
+     * the next eviction for {@code gap} after the last insertion.
+     * <BR>
+     * The partition's eviction must be scheduled when its first
+     * tuple is inserted, for example by using {@link #scheduleEvictIfEmpty(long, TimeUnit)}
+     * as the contents policy.
+     * @param gap The time without an insertion that closes a session.
+     * @param unit The units of time.
+     * @return The session eviction policy.
+     * 
+     * @see Window#expirePartition(Partition)
+     */ 
+    public static <T, K> Consumer<Partition<T, K, InsertionTimeList<T>> > evictInactive(long gap, TimeUnit unit){
+        return evictInactive(gap, unit, false);
+    }
+    
+    /**
+     * An eviction policy for session windows which processes the partition
+     * and then expires it once no tuple has been inserted for {@code gap}.
+     * Thus the partition is processed once with the tuples of the session.
+     * If a tuple has been inserted within {@code gap} then it schedules
+     * the next eviction for {@code gap} after the last insertion.
+     * <BR>
+     * The partition's eviction must be scheduled when its first
+     * tuple is inserted, for example by using {@link #scheduleEvictIfEmpty(long, TimeUnit)}
+     * as the contents policy.
+     * @param gap The time without an insertion that closes a session.
+     * @param unit The units of time.
+     * @return The session eviction policy.
+     * 
+     * @see Window#expirePartition(Partition)
+     */ 
+    public static <T, K> Consumer<Partition<T, K, InsertionTimeList<T>> > evictInactiveWithProcess(long gap, TimeUnit unit){
+        return evictInactive(gap, unit, true);
+    }
+    
+    private static <T, K> Consumer<Partition<T, K, InsertionTimeList<T>> > evictInactive(long gap, TimeUnit unit, boolean process){
+        
+        long gapMs = TimeUnit.MILLISECONDS.convert(gap, unit);
+
+        return (partition) -> {
+            InsertionTimeList<T> tuples = partition.getContents();
+            if (tuples.isEmpty())
+                return;
+            long remaining = tuples.lastInsertTime() + gapMs - System.currentTimeMillis();
+            if (remaining > 0) {
+                ScheduledExecutorService ses = partition.getWindow().getScheduledExecutorService();
+                ses.schedule(() -> partition.evict(), remaining, TimeUnit.MILLISECONDS);
+                return;
+            }
+            
+            if (process)
+                partition.process();
+            partition.getWindow().expirePartition(partition);
+        };
+    }
+    
     /**
      * An eviction policy which processes the window, evicts all tuples, and 
      * schedules the next eviction after the appropriate interval.
@@ -155,6 +245,17 @@ public class Policies {
         return partition -> partition.getContents().remove(0);
     }
     
+    /**
+     * Returns an evict determiner that evicts the oldest tuple,
+     * removing it from the partition's accumulator.
+     * @param accumulators Accumulators for the window's partitions.
+     * @return A evict determiner that evicts the oldest tuple.
+     */
+    public static <T, K, L extends List<T>> Consumer<Partition<T, K, L> > evictOldest(
+            PartitionedAccumulators<T, K, ?> accumulators){
+        return partition -> accumulators.remove(partition.getKey(), partition.getContents().remove(0));
+    }
+    
     /**
      * Returns a trigger policy that triggers
      * processing on every insert.
@@ -164,6 +265,20 @@ public class Policies {
         return (partition, tuple) -> partition.process();
     }
     
+    /**
+     * Returns a trigger policy that adds the inserted tuple
+     * to the partition's accumulator and then triggers processing.
+     * @param accumulators Accumulators for the window's partitions.
+     * @return A trigger policy that accumulates and triggers processing on every insert.
+     */ 
+    public static <T, K, L extends List<T>> BiConsumer<Partition<T, K, L>, T> accumulateAndProcessOnInsert(
+            PartitionedAccumulators<T, K, ?> accumulators){
+        return (partition, tuple) -> {
+            accumulators.add(partition.getKey(), tuple);
+            partition.process();
+        };
+    }
+    
     /**
      * Returns a trigger policy that triggers when the size of a partition
      * equals or exceeds a value, and then evicts its contents.
@@ -0,0 +1,564 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.window;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import quarks.function.Consumer;
+
+/**
+ * A window contents list that maintains insertion time and
+ * pages older tuples out of the heap to memory-mapped files.
+ * <P>
+ * The most recently inserted tuples are held on the heap, once
+ * there are {@code heapCapacity} of them they are serialized using
+ * the list's {@link TupleSerializer} and appended to a segment, a memory-mapped
+ * temporary file. Thus the heap holds at most {@code heapCapacity} tuples
+ * regardless of the size of the window, the operating system
+ * pages segments in and out of memory as required.
+ * </P>
+ * <P>
+ * Tuples are evicted from the oldest segment, and a segment is
+ * released once all its tuples have been evicted. Iterating over the list
+ * streams through the segments, deserializing each tuple as it is returned,
+ * so aggregations should make a single pass through the list
+ * rather than accessing tuples by index.
+ * Only the oldest tuple may be removed, using {@code remove(0)}.
+ * </P>
+ * <P>
+ * A segment's file is deleted as soon as it is mapped, where the operating
+ * system allows, and a segment is unmapped as soon as it is released,
+ * so its memory and disk space are reclaimed without waiting for
+ * garbage collection. Where the Java virtual machine does not support
+ * explicit unmapping the mapping is released when it is garbage collected.
+ * An iterator reading a released segment throws
+ * {@code ConcurrentModificationException}.
+ * </P>
+ * <P>
+ * Created using a {@link quarks.function.Supplier} passed
+ * to {@link Windows#window(quarks.function.BiFunction, quarks.function.BiConsumer, Consumer, quarks.function.BiConsumer, quarks.function.Function, quarks.function.Supplier) Windows.window}.
+ * As a {@link InsertionTimeList} it can be used with count or time-based policies.
+ * </P>
+ *
+ * @param <T> Type of tuples in the list
+ */
+public class SpillingList<T> extends InsertionTimeList<T> {
+
+    /**
+     * Length in bytes of a record's header, the insertion time and the tuple's length.
+     */
+    private static final int HEADER = 12;
+
+    /**
+     * Unmaps a mapped buffer, {@code null} if not supported.
+     */
+    private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+
+    private final int heapCapacity;
+    private final int segmentSize;
+    private final File directory;
+    private final TupleSerializer<T> serializer;
+
+    /**
+     * Segments in insertion order, the last segment being
+     * appended to.
+     */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private int spilled;
+
+    /**
+     * Most recent tuples, held on the heap, starting at {@code recentHead}.
+     */
+    private final ArrayList<T> recent;
+    private final long[] recentTimes;
+    private int recentHead;
+
+    private SerializedTuple buffer;
+    private DataOutputStream bufferOut;
+
+    /**
+     * Create a list that spills tuples to segments in the
+     * default temporary-file directory.
+     * @param heapCapacity Number of tuples held on the heap before they are spilled.
+     * @param segmentSize Size in bytes of each segment.
+     * @param serializer Serializer for spilled tuples.
+     */
+    public SpillingList(int heapCapacity, int segmentSize, TupleSerializer<T> serializer) {
+        this(heapCapacity, segmentSize, null, serializer);
+    }
+
+    /**
+     * Create a list that spills tuples to segments in {@code directory}.
+     * @param heapCapacity Number of tuples held on the heap before they are spilled.
+     * @param segmentSize Size in bytes of each segment.
+     * @param directory Directory for segment files, {@code null} for the
+     * default temporary-file directory.
+     * @param serializer Serializer for spilled tuples.
+     */
+    public SpillingList(int heapCapacity, int segmentSize, File directory, TupleSerializer<T> serializer) {
+        if (heapCapacity < 1)
+            throw new IllegalArgumentException("heapCapacity");
+        if (segmentSize <= HEADER)
+            throw new IllegalArgumentException("segmentSize");
+        this.heapCapacity = heapCapacity;
+        this.segmentSize = segmentSize;
+        this.directory = directory;
+        this.serializer = serializer;
+        this.recent = new ArrayList<>(heapCapacity);
+        this.recentTimes = new long[heapCapacity];
+    }
+
+    @Override
+    public boolean add(T tuple) {
+        return add(tuple, System.currentTimeMillis());
+    }
+
+    private boolean add(T tuple, long time) {
+        if (recent.size() == heapCapacity) {
+            if (recentHead == recent.size())
+                clearRecent();
+            else
+                spill();
+        }
+        recentTimes[recent.size()] = time;
+        recent.add(tuple);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return spilled + recent.size() - recentHead;
+    }
+
+    @Override
+    public void clear() {
+        while (!segments.isEmpty())
+            segments.poll().release();
+        spilled = 0;
+        clearRecent();
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return listIterator(index).next();
+    }
+
+    @Override
+    public T remove(int index) {
+        if (index != 0)
+            throw new UnsupportedOperationException();
+        if (isEmpty())
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        return removeOldest(true);
+    }
+
+    @Override
+    void evictOlderThan(long evictTime) {
+        // Release whole segments without reading their tuples.
+        while (!segments.isEmpty() && segments.peek().lastTime <= evictTime) {
+            Segment segment = segments.poll();
+            spilled -= segment.count;
+            segment.release();
+        }
+        while (!isEmpty() && oldestTime() <= evictTime)
+            removeOldest(false);
+    }
+
+    @Override
+    int evictOlderThan(long evictTime, Consumer<T> evicted) {
+        int count = 0;
+        while (!isEmpty() && oldestTime() <= evictTime) {
+            evicted.accept(removeOldest(true));
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    long lastInsertTime() {
+        if (isEmpty())
+            throw new NoSuchElementException();
+        if (recentHead != recent.size())
+            return recentTimes[recent.size() - 1];
+        return segments.getLast().lastTime;
+    }
+
+    @Override
+    long nextEvictDelay(long timeMs) {
+        long nextEvictTime = oldestTime() + timeMs;
+        return Math.max(0, nextEvictTime - System.currentTimeMillis());
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+        SpillingIterator it = new SpillingIterator();
+        for (int i = 0; i < index; i++)
+            it.skip();
+        return it;
+    }
+
+    private long oldestTime() {
+        if (spilled != 0) {
+            Segment segment = segments.peek();
+            return segment.buffer.getLong(segment.readPosition);
+        }
+        return recentTimes[recentHead];
+    }
+
+    /**
+     * Remove the oldest tuple.
+     * @param read True to return the tuple, false to discard it without reading it.
+     */
+    private T removeOldest(boolean read) {
+        if (spilled != 0) {
+            Segment segment = segments.peek();
+            T tuple = read ? segment.read(segment.readPosition) : null;
+            segment.readPosition = segment.next(segment.readPosition);
+            spilled--;
+            if (--segment.count == 0 && segment.full)
+                segments.poll().release();
+            return tuple;
+        }
+        T tuple = recent.set(recentHead++, null);
+        if (recentHead == recent.size())
+            clearRecent();
+        return tuple;
+    }
+
+    private void clearRecent() {
+        recent.clear();
+        recentHead = 0;
+    }
+
+    /**
+     * Append the tuples held on the heap to the last segment.
+     */
+    private void spill() {
+        if (buffer == null) {
+            buffer = new SerializedTuple();
+            bufferOut = new DataOutputStream(buffer);
+        }
+        try {
+            for (int i = recentHead; i < recent.size(); i++) {
+                buffer.reset();
+                serializer.serialize(recent.get(i), bufferOut);
+                bufferOut.flush();
+
+                Segment segment = segments.peekLast();
+                if (segment == null || !segment.fits(buffer.size())) {
+                    if (segment != null) {
+                        segment.full = true;
+                        if (segment.count == 0)
+                            segments.pollLast().release();
+                    }
+                    segment = new Segment(Math.max(segmentSize, HEADER + buffer.size()));
+                    segments.add(segment);
+                }
+                segment.append(recentTimes[i], buffer);
+                spilled++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        clearRecent();
+    }
+
+    /**
+     * Get the function that unmaps a buffer through reflection,
+     * {@code Unsafe.invokeCleaner(buffer)} or the buffer's cleaner
+     * on Java 8, as explicit unmapping is not part of the Java platform.
+     * 
+     * @return the function, or {@code null} if unmapping is not supported.
+     */
+    private static Consumer<ByteBuffer> unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+        }
+        try {
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invoke(clean, invoke(cleaner, buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", spilled=" + spilled + "]";
+    }
+
+    /**
+     * Buffer for a serialized tuple, reused for each tuple.
+     */
+    private static class SerializedTuple extends ByteArrayOutputStream {
+        void writeTo(ByteBuffer out) {
+            out.put(buf, 0, count);
+        }
+    }
+
+    /**
+     * Input stream reading a tuple from a segment.
+     */
+    private static class SegmentInputStream extends InputStream {
+        private final ByteBuffer in;
+
+        SegmentInputStream(ByteBuffer in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() {
+            return in.hasRemaining() ? in.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!in.hasRemaining())
+                return -1;
+            len = Math.min(len, in.remaining());
+            in.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return in.remaining();
+        }
+    }
+
+    /**
+     * A memory-mapped file holding serialized tuples,
+     * each as a record of its insertion time, length and
+     * serialized form.
+     */
+    private class Segment {
+        private final File file;
+        private boolean deleted;
+        private boolean released;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Position of the oldest remaining record.
+         */
+        int readPosition;
+
+        /**
+         * Number of remaining records.
+         */
+        int count;
+
+        /**
+         * Insertion time of the last record.
+         */
+        long lastTime;
+
+        /**
+         * Set once no more records will be appended.
+         */
+        boolean full;
+
+        Segment(int size) throws IOException {
+            file = File.createTempFile("quarks-window", ".seg", directory);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                file.delete();
+                throw e;
+            }
+            // The mapping remains valid once the file is deleted
+            // on operating systems that allow it.
+            deleted = file.delete();
+        }
+
+        boolean fits(int length) {
+            return buffer.remaining() >= HEADER + length;
+        }
+
+        void append(long time, SerializedTuple tuple) {
+            buffer.putLong(time);
+            buffer.putInt(tuple.size());
+            tuple.writeTo(buffer);
+            lastTime = time;
+            count++;
+        }
+
+        int next(int position) {
+            checkMapped();
+            return position + HEADER + buffer.getInt(position + 8);
+        }
+
+        T read(int position) {
+            checkMapped();
+            ByteBuffer record = buffer.duplicate();
+            record.position(position + HEADER);
+            record.limit(position + HEADER + buffer.getInt(position + 8));
+            try {
+                return serializer.deserialize(new DataInputStream(new SegmentInputStream(record)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void checkMapped() {
+            if (released)
+                throw new ConcurrentModificationException();
+        }
+
+        void release() {
+            count = 0;
+            if (!released) {
+                released = true;
+                if (UNMAPPER != null) {
+                    try {
+                        UNMAPPER.accept(buffer);
+                    } catch (RuntimeException e) {
+                        // Mapping is released when it is garbage collected.
+                    }
+                }
+            }
+            if (!deleted)
+                deleted = file.delete();
+        }
+    }
+
+    /**
+     * Iterator streaming through the segments and then
+     * the tuples held on the heap.
+     */
+    private class SpillingIterator implements ListIterator<T> {
+        private final Iterator<Segment> segmentIterator = segments.iterator();
+        private Segment segment;
+        private int position;
+        private int remaining;
+        private int index;
+        private int recentIndex = recentHead;
+
+        SpillingIterator() {
+            nextSegment();
+        }
+
+        private void nextSegment() {
+            segment = null;
+            while (segmentIterator.hasNext()) {
+                Segment s = segmentIterator.next();
+                if (s.count != 0) {
+                    segment = s;
+                    position = s.readPosition;
+                    remaining = s.count;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < size();
+        }
+
+        /**
+         * Move to the next tuple without reading the current one.
+         */
+        void skip() {
+            next(false);
+        }
+
+        @Override
+        public T next() {
+            return next(true);
+        }
+
+        private T next(boolean read) {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            index++;
+            if (segment != null) {
+                T tuple = read ? segment.read(position) : null;
+                position = segment.next(position);
+                if (--remaining == 0)
+                    nextSegment();
+                return tuple;
+            }
+            return recent.get(recentIndex++);
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return index > 0;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public T previous() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void add(T tuple) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void set(T tuple) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.window;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Serializer of tuples held outside the heap,
+ * for example by a {@link SpillingList}.
+ *
+ * @param <T> Type of the tuples.
+ */
+public interface TupleSerializer<T> extends Serializable {
+
+    /**
+     * Write a tuple.
+     * @param tuple Tuple to write.
+     * @param out Output to write the tuple to.
+     * @throws IOException Error writing the tuple.
+     */
+    void serialize(T tuple, DataOutput out) throws IOException;
+
+    /**
+     * Read a tuple written by {@link #serialize(Object, DataOutput)}.
+     * @param in Input to read the tuple from.
+     * @return Tuple read from {@code in}.
+     * @throws IOException Error reading the tuple.
+     */
+    T deserialize(DataInput in) throws IOException;
+}
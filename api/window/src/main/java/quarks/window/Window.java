@@ -6,6 +6,7 @@ package quarks.window;
 
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import quarks.function.BiConsumer;
 import quarks.function.BiFunction;
@@ -142,5 +143,67 @@ public interface Window<T, K, L extends List<T>>{
      * @return The window's keyFunction.
      */
     Function<T, K> getKeyFunction();
+    
+    /**
+     * Expire partitions that have not had a tuple inserted
+     * within {@code idleTime}. An expired partition is removed
+     * from the window along with its contents, a subsequent
+     * tuple with the same key creates a new empty partition.
+     * <BR>
+     * Idle partitions are swept periodically using the window's
+     * {@link #getScheduledExecutorService() scheduled executor},
+     * or when a tuple is inserted if no executor is registered.
+     * By default partitions never expire.
+     * 
+     * @param idleTime Time a partition may be idle before it expires,
+     * zero to never expire idle partitions.
+     * @param unit Unit for {@code idleTime}.
+     */
+    void setPartitionExpiry(long idleTime, TimeUnit unit);
+    
+    /**
+     * Limit the number of partitions in the window. If inserting a
+     * tuple with a new key would exceed {@code maxPartitions} then
+     * the least recently inserted into partitions are expired.
+     * To amortize the cost of finding them, partitions are expired
+     * down to {@code maxPartitions - maxPartitions/16}.
+     * By default the number of partitions is unlimited.
+     * 
+     * @param maxPartitions Maximum number of partitions, zero for unlimited.
+     */
+    void setMaxPartitions(int maxPartitions);
+    
+    /**
+     * Register a handler called when a partition expires.
+     * The handler is called before any new partition with the same key is created,
+     * so that any state held for the partition's key can be removed.
+     * The handler is called while holding the partition's lock
+     * and must not insert into the window.
+     * 
+     * @param expiryHandler Handler called with each expired partition.
+     * 
+     * @see #setPartitionExpiry(long, TimeUnit)
+     * @see #setMaxPartitions(int)
+     */
+    void registerPartitionExpiryHandler(Consumer<Partition<T, K, L>> expiryHandler);
+    
+    /**
+     * Expire a partition, removing it and its contents from the window.
+     * The expiry handler is called and a subsequent tuple with the
+     * same key creates a new empty partition. 
+     * <BR>
+     * Has no effect if {@code partition} has already expired.
+     * 
+     * @param partition Partition to expire.
+     * 
+     * @see #registerPartitionExpiryHandler(Consumer)
+     */
+    void expirePartition(Partition<T, K, L> partition);
+    
+    /**
+     * Returns the number of partitions currently in the window.
+     * @return Number of partitions.
+     */
+    int getPartitionCount();
 
 }
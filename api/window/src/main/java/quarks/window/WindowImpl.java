@@ -4,10 +4,15 @@
 */
 package quarks.window;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import quarks.function.BiConsumer;
 import quarks.function.BiFunction;
@@ -21,14 +26,31 @@ class WindowImpl<T, K, L extends List<T>> implements Window<T, K, L> {
     private final BiConsumer<Partition<T, K, L>, T> contentsPolicy;
     private final Consumer<Partition<T, K, L> > evictDeterminer;
     private final BiConsumer<Partition<T, K, L>, T> triggerPolicy;
-    private BiConsumer<List<T>, K> partitionProcessor;
+    private volatile BiConsumer<List<T>, K> partitionProcessor;
     
-    private ScheduledExecutorService ses;
+    private volatile ScheduledExecutorService ses;
     
     protected Supplier<L> listSupplier;
     protected Function<T, K> keyFunction;
     
-    protected Map<K, Partition<T, K, L> > partitions = new HashMap<K, Partition<T, K, L> >();
+    protected ConcurrentMap<K, PartitionImpl<T, K, L> > partitions = new ConcurrentHashMap<K, PartitionImpl<T, K, L> >();
+    
+    private volatile long idleTimeNs;
+    private volatile int maxPartitions;
+    private volatile Consumer<Partition<T, K, L>> expiryHandler;
+    
+    /**
+     * Held while expiring partitions so that only
+     * a single thread sweeps the partitions.
+     */
+    private final ReentrantLock expiryLock = new ReentrantLock();
+    private volatile long nextIdleSweep;
+    
+    /**
+     * Periodic sweep of idle partitions, scheduled once both
+     * the idle time and the scheduled executor are known.
+     */
+    private ScheduledFuture<?> idleSweep;
     
     
     WindowImpl(BiFunction<Partition<T, K, L>, T, Boolean> insertionPolicy, BiConsumer<Partition<T, K, L>, T> contentsPolicy,
@@ -45,22 +67,146 @@ class WindowImpl<T, K, L extends List<T>> implements Window<T, K, L> {
     @Override
     public boolean insert(T tuple) {
         K key = keyFunction.apply(tuple);
-        Partition<T, K, L> partition;
         
-        synchronized (partitions) {
-            partition = partitions.get(key);
+        for (;;) {
+            PartitionImpl<T, K, L> partition = partitions.get(key);
             if (partition == null) {
-                partition = new PartitionImpl<T, K, L>(this, listSupplier.get(), key);
-                partitions.put(key, partition);
+                PartitionImpl<T, K, L> created = new PartitionImpl<T, K, L>(this, listSupplier.get(), key);
+                partition = partitions.putIfAbsent(key, created);
+                if (partition == null) {
+                    partition = created;
+                    int max = maxPartitions;
+                    if (max != 0 && partitions.size() > max)
+                        expireLeastRecent(max);
+                }
             }
+            
+            Boolean inserted = partition.insertIfLive(tuple, idleTimeNs != 0 || maxPartitions != 0);
+            if (inserted != null) {
+                if (idleTimeNs != 0 && ses == null)
+                    expireIdle();
+                return inserted;
+            }
+            
+            // Partition is being expired, once it is removed
+            // from the map a new partition will be created.
+            Thread.yield();
         }
-        
-        return partition.insert(tuple);      
+    }
+    
+    /**
+     * Expire idle partitions. Sweeps are amortized by only
+     * sweeping at most twice per idle time, thus a partition may
+     * remain for up to one and a half times the idle time.
+     * <BR>
+     * Once a scheduled executor is registered sweeps are
+     * made by {@link #scheduleIdleSweep()}, so that partitions
+     * expire even when no tuples are inserted. 
+     */
+    private void expireIdle() {
+        long now = System.nanoTime();
+        if (now - nextIdleSweep < 0 || !expiryLock.tryLock())
+            return;
+        try {
+            long idle = idleTimeNs;
+            nextIdleSweep = now + idle / 2;
+            for (PartitionImpl<T, K, L> partition : partitions.values()) {
+                if (now - partition.lastInsertTime >= idle)
+                    expire(partition);
+            }
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+    
+    /**
+     * Expire the least recently inserted into partitions
+     * to bring the number of partitions down to a low water mark
+     * below {@code max}, so that the sweep is amortized over
+     * subsequent new partitions.
+     */
+    private void expireLeastRecent(int max) {
+        expiryLock.lock();
+        try {
+            int size = partitions.size();
+            if (size <= max)
+                return;
+            int count = size - (max - max / 16);
+            List<PartitionImpl<T, K, L>> lru = new ArrayList<>(partitions.values());
+            Collections.sort(lru, (a, b) -> Long.compare(a.lastInsertTime, b.lastInsertTime));
+            for (int i = 0; i < count && i < lru.size(); i++)
+                expire(lru.get(i));
+        } finally {
+            expiryLock.unlock();
+        }
+    }
+    
+    /**
+     * Expire a partition. The partition is marked as expired and
+     * the expiry handler called before it is removed from the window,
+     * so that no new partition can be created for the key until
+     * the expiry handler has completed.
+     */
+    private void expire(PartitionImpl<T, K, L> partition) {
+        synchronized (partition) {
+            if (!partition.expire())
+                return;
+            Consumer<Partition<T, K, L>> handler = expiryHandler;
+            if (handler != null)
+                handler.accept(partition);
+        }
+        partitions.remove(partition.getKey(), partition);
+    }
+    
+    @Override
+    public void expirePartition(Partition<T, K, L> partition) {
+        if (partitions.get(partition.getKey()) == partition)
+            expire((PartitionImpl<T, K, L>) partition);
+    }
+    
+    /**
+     * Schedule the sweep of idle partitions on the
+     * scheduled executor, replacing any existing sweep.
+     */
+    private synchronized void scheduleIdleSweep() {
+        if (idleSweep != null) {
+            idleSweep.cancel(false);
+            idleSweep = null;
+        }
+        long idle = idleTimeNs;
+        if (idle != 0 && ses != null)
+            idleSweep = ses.scheduleWithFixedDelay(() -> expireIdle(),
+                    idle / 2, idle / 2, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    public void setPartitionExpiry(long idleTime, TimeUnit unit) {
+        idleTimeNs = TimeUnit.NANOSECONDS.convert(idleTime, unit);
+        nextIdleSweep = System.nanoTime();
+        scheduleIdleSweep();
+    }
+    
+    @Override
+    public void setMaxPartitions(int maxPartitions) {
+        if (maxPartitions < 0)
+            throw new IllegalArgumentException("maxPartitions");
+        this.maxPartitions = maxPartitions;
+        if (maxPartitions != 0 && partitions.size() > maxPartitions)
+            expireLeastRecent(maxPartitions);
+    }
+    
+    @Override
+    public void registerPartitionExpiryHandler(Consumer<Partition<T, K, L>> expiryHandler) {
+        this.expiryHandler = expiryHandler;
+    }
+    
+    @Override
+    public int getPartitionCount() {
+        return partitions.size();
     }
 
-   
     @Override
-    public synchronized void registerPartitionProcessor(BiConsumer<List<T>, K> partitionProcessor){
+    public void registerPartitionProcessor(BiConsumer<List<T>, K> partitionProcessor){
             this.partitionProcessor = partitionProcessor;
     }
 
@@ -75,7 +221,7 @@ class WindowImpl<T, K, L extends List<T>> implements Window<T, K, L> {
     }
 
     @Override
-    public synchronized BiConsumer<List<T>, K> getPartitionProcessor() {
+    public BiConsumer<List<T>, K> getPartitionProcessor() {
             return partitionProcessor;    
     }
 
@@ -95,13 +241,13 @@ class WindowImpl<T, K, L extends List<T>> implements Window<T, K, L> {
     }
 
     @Override
-    public synchronized void registerScheduledExecutorService(ScheduledExecutorService ses) {
+    public void registerScheduledExecutorService(ScheduledExecutorService ses) {
         this.ses = ses;
-        
+        scheduleIdleSweep();
     }
 
     @Override
-    public synchronized ScheduledExecutorService getScheduledExecutorService() {
+    public ScheduledExecutorService getScheduledExecutorService() {
         return this.ses;
     }
 
@@ -0,0 +1,77 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.test.window;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import quarks.window.DoubleRing;
+
+public class DoubleRingTest {
+    
+    /**
+     * Test a fixed capacity ring evicts the oldest value.
+     */
+    @Test
+    public void countTest() {
+        DoubleRing ring = new DoubleRing(3);
+        assertTrue(ring.isEmpty());
+        assertTrue(Double.isNaN(ring.mean()));
+        
+        for (int i = 1; i <= 5; i++)
+            ring.add(i);
+        
+        assertEquals(3, ring.size());
+        assertArrayEquals(new double[] {3, 4, 5}, ring.toArray(), 0.0);
+        assertEquals(3.0, ring.get(0), 0.0);
+        assertEquals(5.0, ring.get(2), 0.0);
+        assertEquals(3.0, ring.min(), 0.0);
+        assertEquals(5.0, ring.max(), 0.0);
+        assertEquals(12.0, ring.sum(), 0.0);
+        assertEquals(4.0, ring.mean(), 0.0);
+        assertEquals(1.0, ring.stddev(), 1e-12);
+        
+        assertEquals(3.0, ring.evictOldest(), 0.0);
+        assertArrayEquals(new double[] {4, 5}, ring.toArray(), 0.0);
+    }
+    
+    /**
+     * Test a growable ring evicting by time.
+     */
+    @Test
+    public void timeTest() {
+        DoubleRing ring = new DoubleRing(2, true);
+        
+        for (int i = 0; i < 10; i++)
+            ring.add(i, 100 + i);
+        assertEquals(10, ring.size());
+        assertEquals(109, ring.getTime(9));
+        
+        assertEquals(0, ring.evictOlderThan(99));
+        assertEquals(4, ring.evictOlderThan(103));
+        assertEquals(104, ring.getTime(0));
+        assertArrayEquals(new double[] {4, 5, 6, 7, 8, 9}, ring.toArray(), 0.0);
+        
+        // wrap around the end of the ring
+        for (int i = 10; i < 14; i++)
+            ring.add(i, 100 + i);
+        assertArrayEquals(new double[] {4, 5, 6, 7, 8, 9, 10, 11, 12, 13}, ring.toArray(), 0.0);
+        assertEquals(4.0, ring.min(), 0.0);
+        assertEquals(13.0, ring.max(), 0.0);
+        
+        assertEquals(10, ring.evictOlderThan(200));
+        assertTrue(ring.isEmpty());
+    }
+    
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void indexTest() {
+        DoubleRing ring = new DoubleRing(4);
+        ring.add(1.0);
+        ring.get(1);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.test.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import quarks.window.InsertionTimeList;
+
+public class InsertionTimeListTest {
+
+    /**
+     * Test the list against a reference list as it grows and
+     * wraps around its ring.
+     */
+    @Test
+    public void ringTest() {
+        InsertionTimeList<Integer> list = new InsertionTimeList<>();
+        List<Integer> expected = new LinkedList<>();
+        assertTrue(list.isEmpty());
+
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            // Add more than are removed so the list grows
+            // while the oldest tuple moves around the ring.
+            for (int i = 0; i < 7; i++) {
+                list.add(next);
+                expected.add(next++);
+            }
+            for (int i = 0; i < 5; i++)
+                assertEquals(expected.remove(0), list.remove(0));
+
+            assertEquals(expected, list);
+            assertEquals(expected.size(), list.size());
+            for (int i = 0; i < expected.size(); i++)
+                assertEquals(expected.get(i), list.get(i));
+        }
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        list.add(1);
+        assertEquals(Arrays.asList(1), list);
+    }
+
+    /**
+     * Test removal of tuples other than the oldest.
+     */
+    @Test
+    public void removeTest() {
+        InsertionTimeList<Integer> list = new InsertionTimeList<>();
+        for (int i = 0; i < 10; i++)
+            list.add(i);
+        // Wrap the ring
+        for (int i = 0; i < 4; i++)
+            list.remove(0);
+        for (int i = 10; i < 14; i++)
+            list.add(i);
+
+        assertEquals(Integer.valueOf(7), list.remove(3));
+        Iterator<Integer> it = list.iterator();
+        while (it.hasNext()) {
+            if (it.next() % 2 == 0)
+                it.remove();
+        }
+        assertEquals(Arrays.asList(5, 9, 11, 13), list);
+    }
+}
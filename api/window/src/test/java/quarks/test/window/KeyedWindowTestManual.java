@@ -0,0 +1,104 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.test.window;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import quarks.window.Window;
+import quarks.window.Windows;
+
+/**
+ * Measures the insert throughput of a keyed window
+ * fed concurrently by multiple producers.
+ * <P>
+ * Each run starts {@code width} threads that concurrently call
+ * {@link Window#insert(Object)} on a single keyed count window,
+ * each thread inserting tuples with its own distinct keys. 
+ * The window is used directly, rather than through a topology's
+ * aggregation whose function is synchronized, so that the
+ * measurement is of the window's partition lookup and insertion.
+ * In total {@code quarks.test.window.count} tuples (default 4,000,000)
+ * are inserted across {@code quarks.test.window.keys} keys (default 10,000)
+ * and the achieved tuple rate is printed for each width up to
+ * {@code quarks.test.window.producers} (default the number of processors).
+ * </P>
+ */
+public class KeyedWindowTestManual {
+
+    private static final int COUNT = Integer.getInteger("quarks.test.window.count", 4_000_000);
+    private static final int KEYS = Integer.getInteger("quarks.test.window.keys", 10_000);
+    private static final int PRODUCERS = Integer.getInteger("quarks.test.window.producers",
+            Runtime.getRuntime().availableProcessors());
+
+    private void benchmark(final int width) throws Exception {
+        // Pre-box the tuples so the producers only insert,
+        // each producer has its own set of keys.
+        final List<List<Integer>> tuples = new ArrayList<>(width);
+        for (int p = 0; p < width; p++) {
+            List<Integer> producerTuples = new ArrayList<>(COUNT / width);
+            for (int i = 0; i < COUNT / width; i++)
+                producerTuples.add((i % KEYS) * width + p);
+            tuples.add(producerTuples);
+        }
+
+        // warm up then measure
+        for (int run = 0; run < 3; run++) {
+            Window<Integer, Integer, LinkedList<Integer>> window =
+                    Windows.lastNProcessOnInsert(10, tuple -> tuple);
+            final AtomicLong processed = new AtomicLong();
+            window.registerPartitionProcessor((partition, key) -> processed.incrementAndGet());
+
+            final CountDownLatch ready = new CountDownLatch(width);
+            final CountDownLatch go = new CountDownLatch(1);
+            List<Thread> producers = new ArrayList<>(width);
+            for (int p = 0; p < width; p++) {
+                final List<Integer> producerTuples = tuples.get(p);
+                Thread producer = new Thread(() -> {
+                    ready.countDown();
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (Integer tuple : producerTuples)
+                        window.insert(tuple);
+                }, "producer-" + p);
+                producer.start();
+                producers.add(producer);
+            }
+
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            for (Thread producer : producers)
+                producer.join();
+            long elapsed = System.nanoTime() - start;
+
+            long expected = (long) tuples.get(0).size() * width;
+            // Every insertion processes its partition.
+            assertEquals(expected, processed.get());
+            if (run != 0)
+                System.out.println(String.format("producers=%-3d %,12d tuples/sec", width,
+                        expected * TimeUnit.SECONDS.toNanos(1) / elapsed));
+        }
+    }
+
+    @Test
+    public void keyedWindowScaling() throws Exception {
+        for (int width = 1; width <= PRODUCERS; width *= 2)
+            benchmark(width);
+        if (Integer.bitCount(PRODUCERS) != 1)
+            benchmark(PRODUCERS);
+    }
+}
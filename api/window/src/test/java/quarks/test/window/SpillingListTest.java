@@ -0,0 +1,162 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.test.window;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static quarks.function.Functions.unpartitioned;
+import static quarks.window.Policies.alwaysInsert;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import quarks.window.InsertionTimeList;
+import quarks.window.Policies;
+import quarks.window.SpillingList;
+import quarks.window.TupleSerializer;
+import quarks.window.Window;
+import quarks.window.Windows;
+
+public class SpillingListTest {
+
+    @SuppressWarnings("serial")
+    private static class StringSerializer implements TupleSerializer<String> {
+        @Override
+        public void serialize(String tuple, DataOutput out) throws IOException {
+            out.writeUTF(tuple);
+        }
+        @Override
+        public String deserialize(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    }
+
+    private static List<String> expected(int from, int to) {
+        List<String> tuples = new ArrayList<>();
+        for (int i = from; i < to; i++)
+            tuples.add("t" + i);
+        return tuples;
+    }
+
+    /**
+     * Test an iterator does not read a segment
+     * released, and unmapped, after it was created.
+     */
+    @Test(expected=ConcurrentModificationException.class)
+    public void releasedSegmentTest() {
+        SpillingList<String> list = new SpillingList<>(4, 64, new StringSerializer());
+        for (int i = 0; i < 20; i++)
+            list.add("t" + i);
+
+        Iterator<String> it = list.iterator();
+        assertEquals("t0", it.next());
+        for (int i = 0; i < 10; i++)
+            list.remove(0);
+        it.next();
+    }
+
+    /**
+     * Test tuples spilled across multiple segments
+     * are returned in insertion order.
+     */
+    @Test
+    public void spillTest() {
+        // Small segments so that tuples span many segments.
+        SpillingList<String> list = new SpillingList<>(4, 64, new StringSerializer());
+        assertTrue(list.isEmpty());
+
+        for (int i = 0; i < 100; i++)
+            list.add("t" + i);
+
+        assertEquals(100, list.size());
+        assertEquals(expected(0, 100), new ArrayList<>(list));
+        assertEquals("t50", list.get(50));
+        assertEquals("t99", list.get(99));
+
+        for (int i = 0; i < 30; i++)
+            assertEquals("t" + i, list.remove(0));
+        assertEquals(70, list.size());
+        assertEquals(expected(30, 100), new ArrayList<>(list));
+
+        for (int i = 100; i < 110; i++)
+            list.add("t" + i);
+        assertEquals(expected(30, 110), new ArrayList<>(list));
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertTrue(!list.iterator().hasNext());
+
+        list.add("t0");
+        assertEquals(expected(0, 1), new ArrayList<>(list));
+    }
+
+    /**
+     * Test a count-based window using a spilling list.
+     */
+    @Test
+    public void countWindowTest() {
+        Window<String, Integer, SpillingList<String>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        Policies.countContentsPolicy(10),
+                        Policies.evictOldest(),
+                        Policies.processOnInsert(),
+                        unpartitioned(),
+                        () -> new SpillingList<String>(3, 64, new StringSerializer()));
+
+        List<List<String>> states = new ArrayList<>();
+        window.registerPartitionProcessor((tuples, key) -> states.add(new ArrayList<>(tuples)));
+
+        for (int i = 0; i < 100; i++)
+            window.insert("t" + i);
+
+        assertEquals(100, states.size());
+        assertEquals(expected(0, 5), states.get(4));
+        for (int i = 10; i < 100; i++)
+            assertEquals(expected(i - 9, i + 1), states.get(i));
+    }
+
+    /**
+     * Test a time-based window using a spilling list.
+     */
+    @Test
+    public void timeWindowTest() throws InterruptedException {
+        Window<String, Integer, InsertionTimeList<String>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        Policies.scheduleEvictIfEmpty(200, TimeUnit.MILLISECONDS),
+                        Policies.evictOlderWithProcess(200, TimeUnit.MILLISECONDS),
+                        Policies.processOnInsert(),
+                        unpartitioned(),
+                        () -> new SpillingList<String>(3, 64, new StringSerializer()));
+
+        List<Integer> sizes = new ArrayList<>();
+        window.registerPartitionProcessor((tuples, key) -> {
+            synchronized (sizes) {
+                sizes.add(tuples.size());
+            }
+        });
+        window.registerScheduledExecutorService(new ScheduledThreadPoolExecutor(1));
+
+        for (int i = 0; i < 50; i++)
+            window.insert("t" + i);
+
+        // All the tuples are evicted after 200ms.
+        Thread.sleep(600);
+        synchronized (sizes) {
+            assertEquals(Integer.valueOf(50), sizes.get(49));
+            assertEquals(Integer.valueOf(0), sizes.get(sizes.size() - 1));
+        }
+    }
+}
@@ -4,11 +4,13 @@
 */
 package quarks.test.window;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 import static quarks.function.Functions.unpartitioned;
 import static quarks.window.Policies.alwaysInsert;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
@@ -118,6 +120,142 @@ public class WindowTest {
         }    
     }
     
+    /**
+     * Verifies the least recently inserted into partition
+     * is expired when the maximum number of partitions is exceeded.
+     */
+    @Test
+    public void maxPartitionsTest(){
+        Window<Integer, Integer, LinkedList<Integer>> window = Windows.lastNProcessOnInsert(10, tuple->tuple%10);
+        List<Integer> expired = new ArrayList<>();
+        List<List<Integer>> states = new ArrayList<>();
+        window.registerPartitionProcessor((tuples, key) -> states.add(new ArrayList<>(tuples)));
+        window.registerPartitionExpiryHandler(partition -> expired.add(partition.getKey()));
+        window.setMaxPartitions(3);
+        
+        window.insert(0);
+        window.insert(1);
+        window.insert(2);
+        window.insert(10);
+        assertEquals(3, window.getPartitionCount());
+        assertTrue(expired.isEmpty());
+        
+        // partition 1 is the least recently inserted into
+        window.insert(3);
+        assertEquals(3, window.getPartitionCount());
+        assertEquals(Collections.singletonList(1), expired);
+        
+        // partition 1 starts empty
+        window.insert(11);
+        assertEquals(Collections.singletonList(11), states.get(states.size() - 1));
+        assertEquals(3, window.getPartitionCount());
+        assertEquals(2, expired.get(1).intValue());
+        
+        window.setMaxPartitions(1);
+        assertEquals(1, window.getPartitionCount());
+        assertEquals(4, expired.size());
+    }
+    
+    /**
+     * Verifies idle partitions are expired.
+     */
+    @Test
+    public void idlePartitionTest() throws InterruptedException {
+        Window<Integer, Integer, LinkedList<Integer>> window = Windows.lastNProcessOnInsert(10, tuple->tuple%10);
+        List<Integer> expired = Collections.synchronizedList(new ArrayList<>());
+        window.registerPartitionProcessor((tuples, key) -> {});
+        window.registerPartitionExpiryHandler(partition -> expired.add(partition.getKey()));
+        window.setPartitionExpiry(200, TimeUnit.MILLISECONDS);
+        
+        for (int i = 0; i < 10; i++)
+            window.insert(i);
+        assertEquals(10, window.getPartitionCount());
+        
+        Thread.sleep(400);
+        window.insert(5);
+        assertEquals(1, window.getPartitionCount());
+        assertEquals(9, expired.size());
+        assertTrue(!expired.contains(5));
+    }
+    
+    /**
+     * Verifies idle partitions are expired by the scheduled
+     * sweep without any further insertion.
+     */
+    @Test
+    public void idlePartitionScheduledTest() throws InterruptedException {
+        // Timing variances on shared machines can cause this test to fail
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+        
+        Window<Integer, Integer, LinkedList<Integer>> window = Windows.lastNProcessOnInsert(10, tuple->tuple%10);
+        List<Integer> expired = Collections.synchronizedList(new ArrayList<>());
+        window.registerPartitionProcessor((tuples, key) -> {});
+        window.registerPartitionExpiryHandler(partition -> expired.add(partition.getKey()));
+        window.setPartitionExpiry(200, TimeUnit.MILLISECONDS);
+        ScheduledThreadPoolExecutor ses = new ScheduledThreadPoolExecutor(1);
+        window.registerScheduledExecutorService(ses);
+        
+        try {
+            for (int i = 0; i < 10; i++)
+                window.insert(i);
+            assertEquals(10, window.getPartitionCount());
+            
+            Thread.sleep(500);
+            assertEquals(0, window.getPartitionCount());
+            assertEquals(10, expired.size());
+        } finally {
+            ses.shutdownNow();
+        }
+    }
+    
+    /**
+     * Verifies a session partition is processed once
+     * and expired after its inactivity gap.
+     */
+    @Test
+    public void sessionWindowTest() throws InterruptedException {
+        // Timing variances on shared machines can cause this test to fail
+        assumeTrue(!Boolean.getBoolean("quarks.build.ci"));
+        
+        Window<Integer, Integer, InsertionTimeList<Integer>> window = Windows.window(
+                alwaysInsert(),
+                Policies.scheduleEvictIfEmpty(200, TimeUnit.MILLISECONDS),
+                Policies.evictInactiveWithProcess(200, TimeUnit.MILLISECONDS),
+                Policies.doNothing(),
+                tuple -> tuple % 2,
+                Policies.insertionTimeList());
+        List<List<Integer>> sessions = Collections.synchronizedList(new ArrayList<>());
+        window.registerPartitionProcessor((tuples, key) -> sessions.add(new ArrayList<>(tuples)));
+        ScheduledThreadPoolExecutor ses = new ScheduledThreadPoolExecutor(1);
+        window.registerScheduledExecutorService(ses);
+        
+        try {
+            window.insert(1);
+            window.insert(2);
+            Thread.sleep(100);
+            window.insert(3);
+            assertEquals(2, window.getPartitionCount());
+            
+            // partition 0 closes, partition 1 remains open
+            Thread.sleep(160);
+            assertEquals(Collections.singletonList(Collections.singletonList(2)), sessions);
+            assertEquals(1, window.getPartitionCount());
+            
+            Thread.sleep(200);
+            assertEquals(2, sessions.size());
+            assertEquals(Arrays.asList(1, 3), sessions.get(1));
+            assertEquals(0, window.getPartitionCount());
+            
+            // A new session for a closed key
+            window.insert(5);
+            Thread.sleep(400);
+            assertEquals(Collections.singletonList(5), sessions.get(2));
+            assertEquals(0, window.getPartitionCount());
+        } finally {
+            ses.shutdownNow();
+        }
+    }
+    
     @Test
     public void accessPartitionKeyTest(){
         LinkedList<List<Integer> > incrementalWindowStates = new LinkedList<>();
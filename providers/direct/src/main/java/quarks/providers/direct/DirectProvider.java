@@ -5,12 +5,17 @@
 package quarks.providers.direct;
 
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.gson.JsonObject;
 
 import quarks.execution.DirectSubmitter;
 import quarks.execution.Job;
 import quarks.execution.services.ServiceContainer;
+import quarks.runtime.etiao.JobScheduledExecutor;
 import quarks.topology.Topology;
 import quarks.topology.TopologyProvider;
 import quarks.topology.spi.AbstractTopologyProvider;
@@ -32,14 +37,56 @@ import quarks.topology.spi.AbstractTopologyProvider;
  * Hence a job with such sources runs until either it or some other
  * entity terminates it.
  * </P>
+ * <P>
+ * Jobs submitted to a provider share a pool of threads,
+ * provided as the {@code ScheduledExecutorService} service.
+ * The number of threads a job uses concurrently can be limited
+ * with the {@link quarks.execution.Configs#JOB_THREADS} submission
+ * configuration property.
+ * Endless sources such as {@code generate()} execute on threads
+ * dedicated to the job and are not limited, whereas a task which never
+ * completes, such as an {@code events()} setup function that loops forever,
+ * holds one of the job's threads for the lifetime of the job.
+ * </P>
+ * <P>
+ * The shared threads are daemon threads named {@code quarks-direct-<i>p</i>-thread-<i>n</i>},
+ * and terminate when idle for one second. {@link #close()} shuts the
+ * pool down once the provider's jobs are no longer needed.
+ * </P>
  */
 public class DirectProvider extends AbstractTopologyProvider<DirectTopology>
-        implements DirectSubmitter<Topology, Job> {
+        implements DirectSubmitter<Topology, Job>, AutoCloseable {
+
+    private static final AtomicInteger providerNumber = new AtomicInteger();
 
     private final ServiceContainer services;
+    private final ScheduledThreadPoolExecutor sharedScheduler;
     
     public DirectProvider() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Creates a provider whose jobs share up to {@code threads}
+     * threads for executing their tasks.
+     * 
+     * @param threads maximum number of threads shared by the jobs.
+     */
+    public DirectProvider(int threads) {
         this.services = new ServiceContainer();
+        this.sharedScheduler = JobScheduledExecutor.newSharedScheduler(threads,
+                new SharedThreadFactory("quarks-direct-" + providerNumber.incrementAndGet()));
+        services.addService(ScheduledExecutorService.class, sharedScheduler);
+    }
+
+    /**
+     * Shuts down the threads shared by this provider's jobs.
+     * Jobs should be closed before the provider, tasks of a running job
+     * are no longer executed and new tasks are rejected.
+     */
+    @Override
+    public void close() {
+        sharedScheduler.shutdownNow();
     }
 
     /**
@@ -68,4 +115,24 @@ public class DirectProvider extends AbstractTopologyProvider<DirectTopology>
     public Future<Job> submit(Topology topology, JsonObject config) {
         return ((DirectTopology) topology).executeCallable(config);
     }
+
+    /**
+     * Creates named daemon threads so that the shared pool does not keep
+     * the virtual machine alive.
+     */
+    private static class SharedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        SharedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-thread-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
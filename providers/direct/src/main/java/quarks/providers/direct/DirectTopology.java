@@ -93,6 +93,18 @@ public class DirectTopology extends GraphTopology<DirectTester> {
             value = config.get(Configs.JOB_NAME);
         if (value != null && !(value instanceof JsonNull))
             ((EtiaoJob)getJob()).setName(value.getAsString()); 
+
+        value = null;
+        if (config != null) 
+            value = config.get(Configs.JOB_THREADS);
+        if (value != null && !(value instanceof JsonNull))
+            getExecutable().setMaximumConcurrency(value.getAsInt());
+
+        value = null;
+        if (config != null) 
+            value = config.get(Configs.JOB_VIRTUAL_THREADS);
+        if (value != null && !(value instanceof JsonNull))
+            getExecutable().setVirtualThreads(value.getAsBoolean());
         return getExecutable().getScheduler().submit(getCallable());
     }
 
@@ -7,7 +7,9 @@ package quarks.test.providers.direct;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.ExecutionException;
@@ -30,6 +32,7 @@ import quarks.providers.direct.DirectProvider;
 import quarks.test.topology.TopologyAbstractTest;
 import quarks.topology.TStream;
 import quarks.topology.Topology;
+import quarks.topology.plumbing.PlumbingStreams;
 
 public class DirectJobTest extends TopologyAbstractTest implements DirectTestSetup {
     @Test
@@ -237,6 +240,97 @@ public class DirectJobTest extends TopologyAbstractTest implements DirectTestSet
         }
     }
 
+    @Test
+    public void jobThreads() throws Exception {
+        Topology t = newTopology();
+        AtomicInteger executing = new AtomicInteger();
+        AtomicInteger maxExecuting = new AtomicInteger();
+        AtomicInteger n = new AtomicInteger();
+        TStream<Integer> ints = t.collection(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
+        ints = PlumbingStreams.isolate(ints, false);
+        ints.sink(tuple -> {
+            int e = executing.incrementAndGet();
+            maxExecuting.accumulateAndGet(e, Math::max);
+            FailedOplet.sleep(20);
+            executing.decrementAndGet();
+            n.incrementAndGet();
+        });
+
+        JsonObject config = new JsonObject();
+        config.addProperty(Configs.JOB_THREADS, 1);
+        Job job = awaitCompleteExecution(t, config);
+        assertEquals(10, n.get());
+        assertEquals(1, maxExecuting.get());
+        job.stateChange(Job.Action.CLOSE);
+    }
+
+    @Test
+    public void sharedThreads() throws Exception {
+        Topology t = newTopology();
+        AtomicInteger nonDaemon = new AtomicInteger();
+        AtomicInteger unnamed = new AtomicInteger();
+        TStream<Integer> ints = t.collection(Arrays.asList(1, 2, 3, 4, 5));
+        ints = PlumbingStreams.isolate(ints, false);
+        ints.sink(tuple -> {
+            Thread thread = Thread.currentThread();
+            if (!thread.isDaemon())
+                nonDaemon.incrementAndGet();
+            if (!thread.getName().startsWith("quarks-direct-"))
+                unnamed.incrementAndGet();
+        });
+
+        Job job = awaitCompleteExecution(t);
+        assertEquals(0, nonDaemon.get());
+        assertEquals(0, unnamed.get());
+        job.stateChange(Job.Action.CLOSE);
+    }
+
+    @Test
+    public void jobVirtualThreads() throws Exception {
+        Method isVirtual;
+        try {
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException e) {
+            isVirtual = null;
+        }
+        assumeTrue(isVirtual != null);
+
+        Topology t = newTopology();
+        AtomicInteger n = new AtomicInteger();
+        AtomicInteger platform = new AtomicInteger();
+        AtomicInteger unnamed = new AtomicInteger();
+        TStream<Integer> ints = t.collection(Arrays.asList(1, 2, 3, 4, 5));
+        for (int i = 0; i < 10; i++)
+            ints = PlumbingStreams.isolate(ints, true);
+        final Method isVirtualThread = isVirtual;
+        ints.sink(tuple -> {
+            Thread thread = Thread.currentThread();
+            try {
+                if (!(Boolean) isVirtualThread.invoke(thread))
+                    platform.incrementAndGet();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+            if (!thread.getName().startsWith("virtual-thread-"))
+                unnamed.incrementAndGet();
+            n.incrementAndGet();
+        });
+
+        JsonObject config = new JsonObject();
+        config.addProperty(Configs.JOB_VIRTUAL_THREADS, true);
+        Future<Job> fj = ((DirectProvider)getTopologyProvider()).submit(t, config);
+        Job job = fj.get();
+        for (int i = 0; i < 100 && n.get() != 5; i++)
+            Thread.sleep(20);
+        assertEquals(5, n.get());
+        assertEquals(0, platform.get());
+        assertEquals(0, unnamed.get());
+        // Isolate threads never terminate so the job continues to run
+        assertEquals(Job.State.RUNNING, job.getCurrentState());
+        job.stateChange(Job.Action.CLOSE);
+        assertEquals(Job.State.CLOSED, job.getCurrentState());
+    }
+
     private Job awaitCompleteExecution(Topology t) throws InterruptedException, ExecutionException {
         return awaitCompleteExecution(t, null);
     }
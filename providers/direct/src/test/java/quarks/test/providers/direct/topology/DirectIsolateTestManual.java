@@ -0,0 +1,137 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.test.providers.direct.topology;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import quarks.function.Functions;
+import quarks.function.UnaryOperator;
+import quarks.oplet.OpletContext;
+import quarks.oplet.core.Pipe;
+import quarks.oplet.plumbing.OverflowPolicy;
+import quarks.test.providers.direct.DirectTestSetup;
+import quarks.test.topology.TopologyAbstractTest;
+import quarks.topology.TStream;
+import quarks.topology.Topology;
+import quarks.topology.plumbing.PlumbingStreams;
+import quarks.topology.tester.Condition;
+
+/**
+ * Compares the throughput of isolate variants.
+ * <P>
+ * Each test passes {@code quarks.test.isolate.count} tuples
+ * (default 2,000,000) through an isolate and prints the
+ * achieved tuple rate.
+ * </P>
+ * <P>
+ * The unbatched baseline hands off each tuple individually through
+ * an unbounded queue, as the unbounded isolate did before it removed
+ * queued tuples in batches.
+ * </P>
+ */
+public class DirectIsolateTestManual extends TopologyAbstractTest implements DirectTestSetup {
+
+    private static final int COUNT = Integer.getInteger("quarks.test.isolate.count", 2_000_000);
+    private static final int CAPACITY = 1024;
+
+    private void benchmark(String name, UnaryOperator<TStream<String>> isolate) throws Exception {
+        // warm up then measure
+        for (int run = 0; run < 3; run++) {
+            Topology topology = newTopology();
+
+            TStream<String> raw = topology.source(() -> Collections.nCopies(COUNT, "tuple"));
+            TStream<String> isolated = isolate.apply(raw);
+
+            Condition<Long> tc = topology.getTester().tupleCount(isolated, COUNT);
+            long start = System.nanoTime();
+            complete(topology, tc, 60, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            assertTrue(tc.valid());
+            if (run != 0)
+                System.out.println(String.format("%-24s %,12d tuples/sec", name,
+                        COUNT * TimeUnit.SECONDS.toNanos(1) / elapsed));
+        }
+    }
+
+    @Test
+    public void unbatchedIsolate() throws Exception {
+        benchmark("unbatched baseline", s -> s.pipe(new UnbatchedIsolate<String>()));
+    }
+
+    @Test
+    public void unboundedIsolate() throws Exception {
+        benchmark("unbounded", s -> PlumbingStreams.isolate(s, true));
+    }
+
+    @Test
+    public void boundedIsolate() throws Exception {
+        benchmark("bounded", s -> PlumbingStreams.isolate(s, CAPACITY, OverflowPolicy.BLOCK));
+    }
+
+    @Test
+    public void boundedIsolateBatch16() throws Exception {
+        benchmark("bounded batch=16", s -> PlumbingStreams.isolate(s, CAPACITY, OverflowPolicy.BLOCK, Functions.identity(), 16));
+    }
+
+    @Test
+    public void boundedIsolateBatch128() throws Exception {
+        benchmark("bounded batch=128", s -> PlumbingStreams.isolate(s, CAPACITY, OverflowPolicy.BLOCK, Functions.identity(), 128));
+    }
+
+    /**
+     * Unbounded isolate whose thread takes one tuple at a time.
+     */
+    private static class UnbatchedIsolate<T> extends Pipe<T,T> implements Runnable {
+        private static final long serialVersionUID = 1L;
+
+        private Thread thread;
+        private final LinkedBlockingQueue<T> tuples = new LinkedBlockingQueue<>();
+
+        @Override
+        public void initialize(OpletContext<T, T> context) {
+            super.initialize(context);
+            thread = context.getService(ThreadFactory.class).newThread(this);
+        }
+
+        @Override
+        public void start() {
+            super.start();
+            thread.start();
+        }
+
+        @Override
+        public void accept(T tuple) {
+            try {
+                tuples.put(tuple);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.interrupted()) {
+                try {
+                    submit(tuples.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws Exception {
+        }
+    }
+}
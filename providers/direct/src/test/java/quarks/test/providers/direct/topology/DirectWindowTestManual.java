@@ -0,0 +1,87 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.test.providers.direct.topology;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import quarks.test.providers.direct.DirectTestSetup;
+import quarks.test.topology.TopologyAbstractTest;
+import quarks.topology.TStream;
+import quarks.topology.Topology;
+import quarks.topology.tester.Condition;
+
+/**
+ * Measures the throughput of a keyed window aggregate
+ * fed by multiple producers.
+ * <P>
+ * Each test unions {@code width} sources, each running on its
+ * own thread, into a count based window partitioned by key and passes
+ * {@code quarks.test.window.count} tuples (default 2,000,000)
+ * in total through its aggregate, printing the achieved tuple rate.
+ * </P>
+ */
+public class DirectWindowTestManual extends TopologyAbstractTest implements DirectTestSetup {
+
+    private static final int COUNT = Integer.getInteger("quarks.test.window.count", 2_000_000);
+
+    /**
+     * @param sharedKey {@code true} if all producers insert into
+     * the same partition, otherwise each producer has its own partition.
+     */
+    private void benchmark(int width, boolean sharedKey) throws Exception {
+        // warm up then measure
+        for (int run = 0; run < 3; run++) {
+            Topology topology = newTopology();
+
+            List<TStream<Integer>> sources = new ArrayList<>(width);
+            for (int i = 0; i < width; i++) {
+                Integer key = sharedKey ? 0 : i;
+                sources.add(topology.source(() -> Collections.nCopies(COUNT / width, key)));
+            }
+            TStream<Integer> raw = sources.get(0).union(new HashSet<>(sources.subList(1, width)));
+            TStream<Integer> aggregated = raw.last(10, tuple -> tuple).aggregate((tuples, key) -> tuples.size());
+
+            int total = (COUNT / width) * width;
+            Condition<Long> tc = topology.getTester().tupleCount(aggregated, total);
+            long start = System.nanoTime();
+            complete(topology, tc, 60, TimeUnit.SECONDS);
+            long elapsed = System.nanoTime() - start;
+
+            assertTrue(tc.valid());
+            if (run != 0)
+                System.out.println(String.format("width=%d %-12s %,12d tuples/sec", width,
+                        sharedKey ? "shared key" : "own key",
+                        total * TimeUnit.SECONDS.toNanos(1) / elapsed));
+        }
+    }
+
+    @Test
+    public void singleProducer() throws Exception {
+        benchmark(1, false);
+    }
+
+    @Test
+    public void twoProducers() throws Exception {
+        benchmark(2, false);
+    }
+
+    @Test
+    public void fourProducers() throws Exception {
+        benchmark(4, false);
+    }
+
+    @Test
+    public void fourProducersSharedKey() throws Exception {
+        benchmark(4, true);
+    }
+}
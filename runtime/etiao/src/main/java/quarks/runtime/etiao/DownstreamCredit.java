@@ -0,0 +1,41 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.runtime.etiao;
+
+import java.util.List;
+
+import quarks.oplet.Credit;
+
+/**
+ * Combined credit of the credit providers downstream of an invocation,
+ * a tuple can be submitted only when all of them have credit.
+ */
+class DownstreamCredit implements Credit {
+
+    private final Credit[] credits;
+
+    DownstreamCredit(List<Credit> credits) {
+        this.credits = credits.toArray(new Credit[credits.size()]);
+    }
+
+    @Override
+    public int available() {
+        int available = Integer.MAX_VALUE;
+        for (Credit credit : credits)
+            available = Math.min(available, credit.available());
+        return available;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        // Credit is advisory, so waiting for each provider in turn
+        // is sufficient even though an earlier provider's credit
+        // may have been used by the time a later one has credit.
+        for (Credit credit : credits) {
+            while (credit.available() == 0)
+                credit.await();
+        }
+    }
+}
@@ -5,7 +5,11 @@
 package quarks.runtime.etiao;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
@@ -21,6 +25,8 @@ import quarks.execution.services.RuntimeServices;
 import quarks.execution.services.ServiceContainer;
 import quarks.function.BiConsumer;
 import quarks.function.Consumer;
+import quarks.oplet.Credit;
+import quarks.oplet.CreditProvider;
 import quarks.oplet.Oplet;
 
 /**
@@ -34,7 +40,8 @@ public class Executable implements RuntimeServices {
     private final BiConsumer<Object, Throwable> completionHandler;
     private final ThreadFactoryTracker userThreads;
     private final TrackingScheduledExecutor controlScheduler;
-    private final TrackingScheduledExecutor userScheduler;
+    private final JobScheduledExecutor userScheduler;
+    private final HashedWheelScheduler timers;
     private Throwable lastError;
     
     /**
@@ -55,6 +62,11 @@ public class Executable implements RuntimeServices {
     /**
      * Creates a new {@code Executable} for the specified job, which uses the 
      * provided thread factory to create new threads for executing the oplets.
+     * <p>
+     * If the job's container provides a {@code ScheduledExecutorService}
+     * then the oplets' tasks are executed by that scheduler, which is shared
+     * with all the jobs of the container, otherwise the job creates its 
+     * own scheduler.</p>
      * 
      * @param job {@code Job} implementation controlling this {@code Executable}
      * @param threads thread factory for executing the oplets
@@ -92,7 +104,11 @@ public class Executable implements RuntimeServices {
         };
         this.userThreads = new ThreadFactoryTracker(job.getName(), controlThreads, completionHandler);
         this.controlScheduler = TrackingScheduledExecutor.newScheduler(controlThreads, completionHandler);
-        this.userScheduler = TrackingScheduledExecutor.newScheduler(userThreads, completionHandler);
+        ScheduledExecutorService shared = job.getContainerServices().getService(ScheduledExecutorService.class);
+        this.userScheduler = (shared != null) ?
+                JobScheduledExecutor.newScheduler(shared, completionHandler) :
+                JobScheduledExecutor.newScheduler(userThreads, completionHandler);
+        this.timers = new HashedWheelScheduler(userScheduler);
     }
 
     private ThreadFactory getThreads() {
@@ -102,11 +118,36 @@ public class Executable implements RuntimeServices {
     /**
      * Returns the {@code ScheduledExecutorService} used for running 
      * executable graph elements.
+     * <p>
+     * Delayed and periodic tasks are held in a {@link HashedWheelScheduler}
+     * until they are due.</p>
      * 
      * @return the scheduler
      */
     public ScheduledExecutorService getScheduler() {
-        return userScheduler;
+        return timers;
+    }
+
+    /**
+     * Sets the maximum number of tasks of this executable
+     * that are executed concurrently by its scheduler.
+     * 
+     * @param maxConcurrency maximum number of concurrently executing tasks
+     * @see JobScheduledExecutor#setMaximumConcurrency(int)
+     */
+    public void setMaximumConcurrency(int maxConcurrency) {
+        userScheduler.setMaximumConcurrency(maxConcurrency);
+    }
+
+    /**
+     * Sets whether threads created for executing the oplets are virtual threads.
+     * 
+     * @param virtual {@code true} to create virtual threads
+     * @return {@code true} if virtual threads are created
+     * @see ThreadFactoryTracker#setVirtualThreads(boolean)
+     */
+    public boolean setVirtualThreads(boolean virtual) {
+        return userThreads.setVirtualThreads(virtual);
     }
     
     /**
@@ -139,12 +180,139 @@ public class Executable implements RuntimeServices {
     }
 
     /**
-     * Initializes the 
+     * Initializes the invocations.
+     * <p>
+     * Invocations are initialized downstream first, so that linear segments
+     * of the graph are fused. An output connected to an oplet with a single
+     * input is wired directly to that oplet's input consumer, rather than 
+     * through the {@link SettableForwarder} of the downstream invocation. 
+     * A chain of single input oplets is thus executed as nested calls
+     * which can be inlined. Each oplet keeps its own invocation, thus its 
+     * identifier, services and registered controls are unchanged.</p>
+     * <p>
+     * Each invocation is provided with the {@link Credit credit} of the
+     * nearest {@link CreditProvider credit providers} reached by its outputs.</p>
      */
     public void initialize() {
         jobServices.addService(ThreadFactory.class, getThreads());
         jobServices.addService(ScheduledExecutorService.class, getScheduler());
-        invokeAction(invocation -> invocation.initialize(job, this));
+
+        final Map<Consumer<?>, Invocation<?, ?, ?>> owners = new IdentityHashMap<>();
+        for (Invocation<?, ?, ?> invocation : invocations) {
+            for (Consumer<?> input : invocation.getInputs())
+                owners.put(input, invocation);
+        }
+        final Set<Invocation<?, ?, ?>> initialized = 
+                Collections.newSetFromMap(new IdentityHashMap<Invocation<?, ?, ?>, Boolean>());
+        final Map<Invocation<?, ?, ?>, List<Invocation<?, ?, ?>>> targets = targets(owners);
+
+        invokeAction(downstreamFirst(owners), true, invocation -> {
+            invocation.setOutputCredit(outputCredit(invocation, targets));
+            fuseOutputs(invocation, owners, initialized);
+            invocation.initialize(job, this);
+            initialized.add(invocation);
+        });
+    }
+
+    /**
+     * Orders the invocations such that an invocation follows all the 
+     * invocations it is connected to, unless they are part of a cycle.
+     */
+    private List<Invocation<?, ?, ?>> downstreamFirst(Map<Consumer<?>, Invocation<?, ?, ?>> owners) {
+        List<Invocation<?, ?, ?>> ordered = new ArrayList<>(invocations.size());
+        Set<Invocation<?, ?, ?>> visited = 
+                Collections.newSetFromMap(new IdentityHashMap<Invocation<?, ?, ?>, Boolean>());
+        for (Invocation<?, ?, ?> invocation : invocations)
+            visit(invocation, owners, visited, ordered);
+        return ordered;
+    }
+
+    private void visit(Invocation<?, ?, ?> invocation, Map<Consumer<?>, Invocation<?, ?, ?>> owners,
+            Set<Invocation<?, ?, ?>> visited, List<Invocation<?, ?, ?>> ordered) {
+        if (!visited.add(invocation))
+            return;
+        for (Consumer<?> output : invocation.getOutputs()) {
+            Invocation<?, ?, ?> target = owners.get(output);
+            if (target != null)
+                visit(target, owners, visited, ordered);
+        }
+        ordered.add(invocation);
+    }
+
+    /**
+     * Maps each invocation to the invocations its outputs are connected to,
+     * before any outputs are fused.
+     */
+    private Map<Invocation<?, ?, ?>, List<Invocation<?, ?, ?>>> targets(
+            Map<Consumer<?>, Invocation<?, ?, ?>> owners) {
+        Map<Invocation<?, ?, ?>, List<Invocation<?, ?, ?>>> targets = new IdentityHashMap<>();
+        for (Invocation<?, ?, ?> invocation : invocations) {
+            List<Invocation<?, ?, ?>> connected = new ArrayList<>();
+            for (Consumer<?> output : invocation.getOutputs()) {
+                Invocation<?, ?, ?> target = owners.get(output);
+                if (target != null)
+                    connected.add(target);
+            }
+            targets.put(invocation, connected);
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the combined credit of the credit providers reached by the outputs
+     * of the specified invocation, where credit flows through any oplet
+     * that is not a credit provider. Every credit provider stops the flow,
+     * those with unlimited or no credit do not constrain the invocation.
+     */
+    private static Credit outputCredit(Invocation<?, ?, ?> invocation,
+            Map<Invocation<?, ?, ?>, List<Invocation<?, ?, ?>>> targets) {
+        List<Credit> credits = new ArrayList<>();
+        Set<Invocation<?, ?, ?>> visited = 
+                Collections.newSetFromMap(new IdentityHashMap<Invocation<?, ?, ?>, Boolean>());
+        visited.add(invocation);
+        collectCredit(invocation, targets, visited, credits);
+
+        if (credits.isEmpty())
+            return Credit.UNLIMITED;
+        if (credits.size() == 1)
+            return credits.get(0);
+        return new DownstreamCredit(credits);
+    }
+
+    private static void collectCredit(Invocation<?, ?, ?> invocation,
+            Map<Invocation<?, ?, ?>, List<Invocation<?, ?, ?>>> targets,
+            Set<Invocation<?, ?, ?>> visited, List<Credit> credits) {
+        for (Invocation<?, ?, ?> target : targets.get(invocation)) {
+            if (!visited.add(target))
+                continue;
+            Oplet<?, ?> oplet = target.getOplet();
+            if (oplet instanceof CreditProvider) {
+                // An uninitialized provider, only within a cycle, has no credit yet.
+                Credit credit = ((CreditProvider) oplet).getInputCredit();
+                if (credit != null && credit != Credit.UNLIMITED)
+                    credits.add(credit);
+                continue;
+            }
+            collectCredit(target, targets, visited, credits);
+        }
+    }
+
+    /**
+     * Connects the outputs of the specified invocation directly to the 
+     * input consumers of initialized, single input, downstream oplets.
+     */
+    @SuppressWarnings("unchecked")
+    private <O> void fuseOutputs(Invocation<?, ?, O> invocation, 
+            Map<Consumer<?>, Invocation<?, ?, ?>> owners,
+            Set<Invocation<?, ?, ?>> initialized) {
+        List<? extends Consumer<O>> outputs = invocation.getOutputs();
+        for (int port = 0; port < outputs.size(); port++) {
+            Consumer<O> output = outputs.get(port);
+            Invocation<?, ?, ?> target = owners.get(output);
+            if (target == null || target.getInputs().size() != 1 || !initialized.contains(target))
+                continue;
+            invocation.fuse(port, ((SettableForwarder<O>) output).getDestination());
+        }
     }
 
     /**
@@ -159,7 +327,8 @@ public class Executable implements RuntimeServices {
      * invocations, then shutdown the control scheduler.
      */
     public void close() {
-        getScheduler().shutdownNow();
+        timers.shutdownNow();
+        userScheduler.shutdownNow();
         userThreads.shutdownNow();
         
         invokeAction(invocation -> {
@@ -184,45 +353,69 @@ public class Executable implements RuntimeServices {
     }
 
     private void invokeAction(Consumer<Invocation<?, ?, ?>> action) {
+        invokeAction(invocations, false, action);
+    }
+
+    /**
+     * Invokes the action against each invocation, using the control scheduler.
+     * 
+     * @param ordered the invocations
+     * @param sequential if {@code true} the action against an invocation 
+     *      completes before it is invoked against the next one, otherwise
+     *      actions are invoked concurrently.
+     * @param action the action
+     */
+    private void invokeAction(List<Invocation<?, ?, ?>> ordered, boolean sequential,
+            Consumer<Invocation<?, ?, ?>> action) {
         ExecutorCompletionService<Boolean> completer = new ExecutorCompletionService<>(controlScheduler);
-        for (Invocation<?, ?, ?> invocation : invocations) {
+        int remainingTasks = 0;
+        for (Invocation<?, ?, ?> invocation : ordered) {
             completer.submit(() -> {
                 action.accept(invocation);
                 return true;
             });
+            remainingTasks++;
+            if (sequential) {
+                awaitAction(completer);
+                remainingTasks--;
+            }
         }
 
-        int remainingTasks = invocations.size();
         while (remainingTasks > 0) {
-            try {
-                Future<Boolean> completed = completer.poll(10, TimeUnit.SECONDS);
-                if (completed == null) {
-                    // TODO logging
-                    System.err.println("Completer timed out");
-                    throw new RuntimeException(new TimeoutException());
-                }
-                else {
-                    try {
-                        completed.get();
-                    }
-                    catch (ExecutionException | InterruptedException | CancellationException e) {
-                        // TODO logging
-                        e.printStackTrace();
-                    }
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            awaitAction(completer);
             remainingTasks--;
         }
         
         job.onActionComplete();
     }
 
+    private static void awaitAction(ExecutorCompletionService<Boolean> completer) {
+        try {
+            Future<Boolean> completed = completer.poll(10, TimeUnit.SECONDS);
+            if (completed == null) {
+                // TODO logging
+                System.err.println("Completer timed out");
+                throw new RuntimeException(new TimeoutException());
+            }
+            else {
+                try {
+                    completed.get();
+                }
+                catch (ExecutionException | InterruptedException | CancellationException e) {
+                    // TODO logging
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Cleanup after failure.
      */
     private void cleanup() {
+        timers.shutdown();
         userScheduler.shutdown();
         userThreads.shutdown();
     }
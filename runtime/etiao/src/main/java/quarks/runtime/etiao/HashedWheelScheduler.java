@@ -0,0 +1,449 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.runtime.etiao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@code ScheduledExecutorService} which keeps delayed and periodic
+ * tasks in a hashed timing wheel, and executes them using another executor
+ * once they expire.
+ * <P>
+ * The wheel is an array of buckets, each bucket is a doubly linked list
+ * of the timers expiring in a tick of the wheel, modulo the number of buckets.
+ * Scheduling and cancelling a timer are constant time operations,
+ * regardless of the number of pending timers. A single task, the ticker,
+ * is scheduled on the underlying executor for the next tick with
+ * a non-empty bucket, so the underlying executor holds one delayed
+ * task however many timers are pending, and none when no timers are pending.
+ * </P>
+ * <P>
+ * Tasks with no delay, or with a delay or period shorter than a tick,
+ * are passed directly to the underlying executor.
+ * A timer expires up to one tick later than requested.
+ * Delays and periods are limited to {@code Long.MAX_VALUE >> 1}
+ * nanoseconds, about 146 years, so that deadlines do not overflow.
+ * </P>
+ */
+public final class HashedWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 1;
+
+    private final ScheduledExecutorService executor;
+    private final long tickNanos;
+    private final long start = System.nanoTime();
+    private final Timer<?>[] buckets;
+    private final long[] occupied;
+    private final int mask;
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    /** All ticks up to and including this one have been processed. */
+    private long processedTick;
+    /** Tick the ticker is scheduled for, {@code Long.MAX_VALUE} if none. */
+    private long tickerTick = Long.MAX_VALUE;
+    private ScheduledFuture<?> ticker;
+    private int pending;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a {@code HashedWheelScheduler} with a one millisecond
+     * tick and 1024 buckets.
+     *
+     * @param executor executor for expired timers
+     */
+    public HashedWheelScheduler(ScheduledExecutorService executor) {
+        this(executor, 1, TimeUnit.MILLISECONDS, 1024);
+    }
+
+    /**
+     * Creates a {@code HashedWheelScheduler}.
+     *
+     * @param executor executor for expired timers
+     * @param tickDuration duration of a tick
+     * @param unit unit of {@code tickDuration}
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    public HashedWheelScheduler(ScheduledExecutorService executor,
+            long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("tickDuration: " + tickDuration);
+        if (wheelSize <= 0 || wheelSize > (1 << 30))
+            throw new IllegalArgumentException("wheelSize: " + wheelSize);
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize)
+            size <<= 1;
+        size = Math.max(size, 64);
+
+        this.executor = executor;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.buckets = new Timer<?>[size];
+        this.occupied = new long[size / 64];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns the number of timers waiting to expire.
+     * @return the number of pending timers
+     */
+    public synchronized int getPendingTimers() {
+        return pending;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (isShutdown())
+            throw new RejectedExecutionException();
+        executor.execute(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        long delayNanos = unit.toNanos(delay);
+        if (delayNanos < tickNanos) {
+            if (isShutdown())
+                throw new RejectedExecutionException();
+            return executor.schedule(command, delay, unit);
+        }
+        return add(new Timer<Void>(command, null, deadline(delayNanos), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        long delayNanos = unit.toNanos(delay);
+        if (delayNanos < tickNanos) {
+            if (isShutdown())
+                throw new RejectedExecutionException();
+            return executor.schedule(callable, delay, unit);
+        }
+        return add(new Timer<V>(callable, deadline(delayNanos)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+            TimeUnit unit) {
+        if (period <= 0)
+            throw new IllegalArgumentException("period: " + period);
+        long periodNanos = unit.toNanos(period);
+        if (periodNanos < tickNanos) {
+            if (isShutdown())
+                throw new RejectedExecutionException();
+            return executor.scheduleAtFixedRate(command, initialDelay, period, unit);
+        }
+        return add(new Timer<Void>(command, null, deadline(unit.toNanos(initialDelay)), clamp(periodNanos)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        if (delay <= 0)
+            throw new IllegalArgumentException("delay: " + delay);
+        long delayNanos = unit.toNanos(delay);
+        if (delayNanos < tickNanos) {
+            if (isShutdown())
+                throw new RejectedExecutionException();
+            return executor.scheduleWithFixedDelay(command, initialDelay, delay, unit);
+        }
+        return add(new Timer<Void>(command, null, deadline(unit.toNanos(initialDelay)), -clamp(delayNanos)));
+    }
+
+    /**
+     * Cancels all pending timers. Tasks already passed to
+     * the underlying executor are not affected.
+     */
+    @Override
+    public void shutdown() {
+        shutdownNow();
+    }
+
+    /**
+     * Cancels all pending timers. Tasks already passed to
+     * the underlying executor are not affected.
+     *
+     * @return the timers which were cancelled
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> cancelled = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (int i = 0; i < buckets.length; i++) {
+                for (Timer<?> timer = buckets[i]; timer != null; timer = timer.next)
+                    cancelled.add(timer);
+            }
+            if (ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+        }
+        for (Runnable timer : cancelled)
+            ((Timer<?>) timer).cancel(false);
+        return cancelled;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && pending == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return isTerminated();
+    }
+
+    private static long clamp(long delayNanos) {
+        return Math.min(Math.max(delayNanos, 0), MAX_DELAY_NANOS);
+    }
+
+    /**
+     * Deadline for a delay, clamped so that neither the deadline
+     * nor its distance from {@code start} overflows.
+     */
+    private static long deadline(long delayNanos) {
+        return System.nanoTime() + clamp(delayNanos);
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - start) / tickNanos;
+    }
+
+    /**
+     * Add a timer to the wheel, or dispatch it if it has already expired.
+     */
+    private <V> Timer<V> add(Timer<V> timer) {
+        boolean expired;
+        synchronized (this) {
+            if (shutdown)
+                throw new RejectedExecutionException();
+            // Round up so a timer never expires early.
+            long elapsed = timer.deadlineNanos - start;
+            timer.deadlineTick = elapsed <= 0 ? 0 : (elapsed + tickNanos - 1) / tickNanos;
+            expired = timer.deadlineTick <= processedTick;
+            if (!expired) {
+                link(timer);
+                if (timer.deadlineTick < tickerTick)
+                    scheduleTicker(timer.deadlineTick);
+            }
+        }
+        if (expired)
+            dispatch(timer);
+        return timer;
+    }
+
+    private void link(Timer<?> timer) {
+        int bucket = (int) (timer.deadlineTick & mask);
+        Timer<?> head = buckets[bucket];
+        timer.bucket = bucket;
+        timer.prev = null;
+        timer.next = head;
+        if (head != null)
+            head.prev = timer;
+        buckets[bucket] = timer;
+        occupied[bucket >>> 6] |= 1L << bucket;
+        pending++;
+    }
+
+    private synchronized void unlink(Timer<?> timer) {
+        int bucket = timer.bucket;
+        if (bucket < 0)
+            return;
+        if (timer.prev != null)
+            timer.prev.next = timer.next;
+        else
+            buckets[bucket] = timer.next;
+        if (timer.next != null)
+            timer.next.prev = timer.prev;
+        if (buckets[bucket] == null)
+            occupied[bucket >>> 6] &= ~(1L << bucket);
+        timer.prev = timer.next = null;
+        timer.bucket = -1;
+        pending--;
+    }
+
+    private void scheduleTicker(long tick) {
+        ScheduledFuture<?> previous = ticker;
+        long delay = start + tick * tickNanos - System.nanoTime();
+        try {
+            ticker = executor.schedule(this.tick, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+            tickerTick = tick;
+        } catch (RejectedExecutionException e) {
+            // The underlying executor has been shutdown, thus so has the job.
+            ticker = null;
+            tickerTick = Long.MAX_VALUE;
+        }
+        if (previous != null)
+            previous.cancel(false);
+    }
+
+    /**
+     * Expire the timers of all ticks up to the current one
+     * and schedule the ticker for the next non-empty bucket.
+     */
+    private void tick() {
+        List<Timer<?>> expired = new ArrayList<>();
+        synchronized (this) {
+            ticker = null;
+            tickerTick = Long.MAX_VALUE;
+            final long now = currentTick();
+            if (now > processedTick) {
+                long from = processedTick + 1;
+                if (now - from >= buckets.length)
+                    from = now - buckets.length + 1;
+                for (long t = from; t <= now; t++)
+                    expire((int) (t & mask), now, expired);
+                processedTick = now;
+            }
+            if (pending != 0 && !shutdown)
+                scheduleTicker(now + nextOccupied(now));
+        }
+        for (Timer<?> timer : expired)
+            dispatch(timer);
+    }
+
+    private void expire(int bucket, long now, List<Timer<?>> expired) {
+        Timer<?> timer = buckets[bucket];
+        while (timer != null) {
+            Timer<?> next = timer.next;
+            if (timer.deadlineTick <= now) {
+                unlink(timer);
+                expired.add(timer);
+            }
+            timer = next;
+        }
+    }
+
+    /**
+     * Distance in ticks from {@code now} to the next non-empty bucket.
+     */
+    private int nextOccupied(long now) {
+        final int current = (int) (now & mask);
+        for (int d = 1; d <= buckets.length; ) {
+            int bucket = (current + d) & mask;
+            long word = occupied[bucket >>> 6] >>> (bucket & 63);
+            if (word != 0)
+                return d + Long.numberOfTrailingZeros(word);
+            d += 64 - (bucket & 63);
+        }
+        return buckets.length;
+    }
+
+    private void dispatch(Timer<?> timer) {
+        if (timer.isDone())
+            return;
+        try {
+            executor.execute(timer);
+        } catch (RejectedExecutionException e) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * A delayed or periodic task held in the wheel until it expires.
+     */
+    private final class Timer<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        /** Zero for one shot, positive for fixed rate, negative for fixed delay. */
+        private final long period;
+        private volatile long deadlineNanos;
+        private long deadlineTick;
+        private int bucket = -1;
+        private Timer<?> prev;
+        private Timer<?> next;
+        private volatile Throwable failure;
+
+        Timer(Callable<V> callable, long deadlineNanos) {
+            super(callable);
+            this.deadlineNanos = deadlineNanos;
+            this.period = 0;
+        }
+
+        Timer(Runnable runnable, V result, long deadlineNanos, long period) {
+            super(runnable, result);
+            this.deadlineNanos = deadlineNanos;
+            this.period = period;
+        }
+
+        /**
+         * Executes the task, a periodic task is then returned
+         * to the wheel. A failure is rethrown so that it is
+         * handled by the underlying executor.
+         */
+        @Override
+        public void run() {
+            if (period == 0)
+                super.run();
+            else if (runAndReset()) {
+                deadlineNanos = period > 0 ? deadlineNanos + period : System.nanoTime() - period;
+                try {
+                    add(this);
+                } catch (RejectedExecutionException e) {
+                    cancel(false);
+                }
+            }
+            Throwable t = failure;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            if (t != null)
+                throw new RuntimeException(t);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failure = t;
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            unlink(this);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o == this)
+                return 0;
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        if (isShutdown())
+            throw new RejectedExecutionException();
+        return executor.submit(task);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        if (isShutdown())
+            throw new RejectedExecutionException();
+        return executor.submit(task);
+    }
+}
@@ -11,6 +11,7 @@ import java.util.List;
 import quarks.execution.services.RuntimeServices;
 import quarks.function.Consumer;
 import quarks.function.Functions;
+import quarks.oplet.Credit;
 import quarks.oplet.JobContext;
 import quarks.oplet.Oplet;
 
@@ -37,6 +38,7 @@ public class Invocation<T extends Oplet<I, O>, I, O> implements AutoCloseable {
 
     private List<Consumer<O>> outputs;
     private List<SettableForwarder<I>> inputs;
+    private Credit outputCredit = Credit.UNLIMITED;
 
     protected Invocation(String id, T oplet, int inputCount, int outputCount) {
     	this.id = id;
@@ -117,6 +119,39 @@ public class Invocation<T extends Oplet<I, O>, I, O> implements AutoCloseable {
         return inputs;
     }
 
+    /**
+     * Returns the consumers currently connected to this invocation's outputs.
+     */
+    List<? extends Consumer<O>> getOutputs() {
+        return Collections.unmodifiableList(outputs);
+    }
+
+    /**
+     * Connects the specified port directly to the input consumer of the
+     * downstream oplet, bypassing the downstream invocation's
+     * {@link SettableForwarder}.
+     * <p>
+     * Must be called before this invocation is initialized and after
+     * the downstream invocation has been initialized, as the oplet
+     * caches its outputs at initialization.</p>
+     *
+     * @param port index of the port which is fused
+     * @param input input consumer of the downstream oplet
+     */
+    void fuse(int port, Consumer<O> input) {
+        outputs.set(port, input);
+    }
+
+    /**
+     * Sets the credit for the outputs of this invocation,
+     * must be called before this invocation is initialized.
+     *
+     * @param credit credit for the outputs
+     */
+    void setOutputCredit(Credit credit) {
+        this.outputCredit = credit;
+    }
+
     /**
      * Initialize the invocation.
      * 
@@ -128,7 +163,8 @@ public class Invocation<T extends Oplet<I, O>, I, O> implements AutoCloseable {
         InvocationContext<I, O> context = new InvocationContext<I, O>(
         		id, job, services, 
                 inputs.size(),
-                outputs);
+                outputs,
+                outputCredit);
 
         try {
             oplet.initialize(context);
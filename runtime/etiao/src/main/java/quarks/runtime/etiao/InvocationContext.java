@@ -8,6 +8,7 @@ import java.util.List;
 
 import quarks.execution.services.RuntimeServices;
 import quarks.function.Consumer;
+import quarks.oplet.Credit;
 import quarks.oplet.JobContext;
 
 /**
@@ -36,13 +37,33 @@ public class InvocationContext<I, O> extends AbstractContext<I, O> {
             RuntimeServices services,
             int inputCount,
             List<? extends Consumer<O>> outputs) {
+        this(id, job, services, inputCount, outputs, Credit.UNLIMITED);
+    }
+
+	/**
+	 * Creates an {@code InvocationContext} with the specified parameters.
+	 *  
+	 * @param id the oplet's unique identifier
+	 * @param job the current job's context
+	 * @param services service provider for the current job
+	 * @param inputCount number of oplet's inputs 
+	 * @param outputs list of oplet's outputs
+	 * @param outputCredit credit for the oplet's outputs
+	 */
+    public InvocationContext(String id, JobContext job,
+            RuntimeServices services,
+            int inputCount,
+            List<? extends Consumer<O>> outputs,
+            Credit outputCredit) {
         super(job, services);
         this.id = id;
         this.inputCount = inputCount;
         this.outputs = outputs;
+        this.outputCredit = outputCredit;
     }
 
     private final List<? extends Consumer<O>> outputs;
+    private final Credit outputCredit;
     
     @Override
     public String getId() {
@@ -54,6 +75,10 @@ public class InvocationContext<I, O> extends AbstractContext<I, O> {
         return outputs;
     }
     @Override
+    public Credit getOutputCredit() {
+        return outputCredit;
+    }
+    @Override
     public int getInputCount() {
         return inputCount;
     }
@@ -0,0 +1,440 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.runtime.etiao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import quarks.function.BiConsumer;
+
+/**
+ * A job's view of a {@code ScheduledExecutorService} which may be
+ * shared with other jobs.
+ * <P>
+ * Tasks are executed by the underlying executor's threads. As with
+ * {@link TrackingScheduledExecutor} the tasks of the job are tracked
+ * so that completion of the job can be determined, and if a task completes
+ * abruptly due to an exception all the job's tasks are cancelled and a
+ * completion handler is invoked.
+ * </P>
+ * <P>
+ * The number of the job's tasks executing concurrently can be limited,
+ * so that a job cannot occupy all the threads of a shared executor.
+ * A task which becomes ready to execute while the job is at its limit
+ * is deferred until one of the job's executing tasks completes.
+ * A periodic task has at most one deferred execution.
+ * </P>
+ * <P>
+ * A task that never completes, such as an event setup function that
+ * loops forever, holds one of the job's slots, and one of the shared
+ * executor's threads, for the lifetime of the job. The job's limit
+ * must exceed the number of such tasks or its other tasks never execute.
+ * </P>
+ */
+public final class JobScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final Logger logger = LoggerFactory.getLogger(JobScheduledExecutor.class);
+
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final BiConsumer<Object, Throwable> completer;
+
+    private final Set<JobTask<?>> tasks = Collections.synchronizedSet(new HashSet<JobTask<?>>());
+    private final AtomicInteger active = new AtomicInteger();
+    private final Queue<JobTask<?>> deferred = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger executing = new AtomicInteger();
+    private volatile int maxConcurrency = Integer.MAX_VALUE;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a {@code JobScheduledExecutor} with its own executor
+     * using the supplied thread factory and a completion handler.
+     *
+     * @param threadFactory the thread factory to use
+     * @param completionHandler handler invoked when all tasks have completed,
+     *      due to normal termination, exception, or cancellation.
+     * @return a new (@code JobScheduledExecutor) instance.
+     */
+    public static JobScheduledExecutor newScheduler(
+            ThreadFactory threadFactory, BiConsumer<Object, Throwable> completionHandler) {
+        return new JobScheduledExecutor(newSharedScheduler(
+                Runtime.getRuntime().availableProcessors() * 4, threadFactory), true, completionHandler);
+    }
+
+    /**
+     * Creates a {@code JobScheduledExecutor} which executes the
+     * job's tasks using a shared executor.
+     * Shutting down the returned instance does not shut down {@code executor}.
+     *
+     * @param executor the executor shared across jobs
+     * @param completionHandler handler invoked when all tasks have completed,
+     *      due to normal termination, exception, or cancellation.
+     * @return a new (@code JobScheduledExecutor) instance.
+     */
+    public static JobScheduledExecutor newScheduler(
+            ScheduledExecutorService executor, BiConsumer<Object, Throwable> completionHandler) {
+        return new JobScheduledExecutor(executor, false, completionHandler);
+    }
+
+    /**
+     * Creates an executor suitable for sharing across jobs.
+     * Threads are created as needed up to {@code threads} and
+     * terminate when they have been idle for one second.
+     *
+     * @param threads maximum number of threads
+     * @param threadFactory the thread factory to use
+     * @return a new executor.
+     */
+    public static ScheduledThreadPoolExecutor newSharedScheduler(int threads, ThreadFactory threadFactory) {
+        ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        stpe.setKeepAliveTime(1, TimeUnit.SECONDS);
+        stpe.allowCoreThreadTimeOut(true);
+        stpe.setRemoveOnCancelPolicy(true);
+        return stpe;
+    }
+
+    private JobScheduledExecutor(ScheduledExecutorService executor, boolean ownsExecutor,
+            BiConsumer<Object, Throwable> completer) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.completer = completer;
+    }
+
+    /**
+     * Sets the maximum number of this job's tasks that execute concurrently.
+     * If this instance has its own executor then its number of
+     * threads is also limited to {@code maxConcurrency}.
+     *
+     * @param maxConcurrency maximum number of concurrently executing tasks.
+     */
+    public void setMaximumConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0)
+            throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+        if (ownsExecutor && executor instanceof ScheduledThreadPoolExecutor)
+            ((ScheduledThreadPoolExecutor) executor).setCorePoolSize(maxConcurrency);
+        dispatchDeferred();
+    }
+
+    /**
+     * Returns the maximum number of this job's tasks that execute concurrently.
+     * @return the maximum number of concurrently executing tasks.
+     */
+    public int getMaximumConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Determines whether there are tasks which have been submitted and not completed.
+     *
+     * @return {@code true} is active tasks exist.
+     */
+    public boolean hasActiveTasks() {
+        return active.get() != 0;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        JobTask<Void> task = track(new JobTask<Void>(command, false));
+        try {
+            return task.scheduled(executor.schedule(task, delay, unit));
+        } catch (RejectedExecutionException e) {
+            untrack(task);
+            throw e;
+        }
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        JobTask<V> task = track(new JobTask<V>(callable));
+        try {
+            return task.scheduled(executor.schedule(task, delay, unit));
+        } catch (RejectedExecutionException e) {
+            untrack(task);
+            throw e;
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period,
+            TimeUnit unit) {
+        JobTask<Void> task = track(new JobTask<Void>(command, true));
+        try {
+            return task.scheduled(executor.scheduleAtFixedRate(task, initialDelay, period, unit));
+        } catch (RejectedExecutionException e) {
+            untrack(task);
+            throw e;
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay,
+            TimeUnit unit) {
+        JobTask<Void> task = track(new JobTask<Void>(command, true));
+        try {
+            return task.scheduled(executor.scheduleWithFixedDelay(task, initialDelay, delay, unit));
+        } catch (RejectedExecutionException e) {
+            untrack(task);
+            throw e;
+        }
+    }
+
+    /**
+     * Track a task before it is scheduled so that we are aware of all
+     * background activity.
+     */
+    private <V> JobTask<V> track(JobTask<V> task) {
+        if (shutdown)
+            throw new RejectedExecutionException();
+        active.incrementAndGet();
+        tasks.add(task);
+        return task;
+    }
+
+    /**
+     * Stop tracking a task, the count of active tasks
+     * is decremented at most once for each task.
+     */
+    private void untrack(JobTask<?> task) {
+        if (tasks.remove(task))
+            active.decrementAndGet();
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels the job's periodic and deferred tasks, delayed tasks
+     * continue to be executed.
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (JobTask<?> task : trackedTasks()) {
+            if (task.periodic)
+                task.cancel(false);
+        }
+        if (ownsExecutor)
+            executor.shutdown();
+    }
+
+    /**
+     * Cancels all the job's tasks interrupting executing tasks.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> unstarted = new ArrayList<>(deferred);
+        deferred.clear();
+        cancelAll(true);
+        if (ownsExecutor)
+            executor.shutdownNow();
+        return unstarted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !hasActiveTasks();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return false;
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+        return true;
+    }
+
+    private List<JobTask<?>> trackedTasks() {
+        synchronized (tasks) {
+            return new ArrayList<>(tasks);
+        }
+    }
+
+    private void cancelAll(boolean mayInterruptIfRunning) {
+        for (JobTask<?> task : trackedTasks())
+            task.cancel(mayInterruptIfRunning);
+    }
+
+    private boolean tryAcquire() {
+        for (;;) {
+            int n = executing.get();
+            if (n >= maxConcurrency)
+                return false;
+            if (executing.compareAndSet(n, n + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Submit a deferred task if the job is below its limit.
+     * Called after a task has been deferred and after a task has
+     * completed, so a deferred task is not missed by either.
+     */
+    private void dispatchDeferred() {
+        if (executing.get() >= maxConcurrency)
+            return;
+        JobTask<?> task = deferred.poll();
+        if (task == null)
+            return;
+        task.deferred.set(false);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Report the failure before the task completes, so that the failure 
+     * is visible once the task is no longer active, then cancel 
+     * all the job's tasks.
+     */
+    private void taskFailed(JobTask<?> task, Throwable t) {
+        logger.error("Thread: " + Thread.currentThread().getName() +
+                ": task terminated with exception : ", t);
+        completer.accept(this, t);
+        task.failed(t);
+        cancelAll(true);
+    }
+
+    /**
+     * A task of the job, run by the underlying executor
+     * each time it is ready to execute.
+     */
+    private final class JobTask<V> extends FutureTask<V> implements ScheduledFuture<V>, Runnable {
+        private final boolean periodic;
+        private final AtomicBoolean deferred = new AtomicBoolean();
+        private volatile ScheduledFuture<?> scheduled;
+        private volatile boolean failed;
+
+        JobTask(Callable<V> callable) {
+            super(callable);
+            this.periodic = false;
+        }
+
+        JobTask(Runnable runnable, boolean periodic) {
+            super(runnable, null);
+            this.periodic = periodic;
+        }
+
+        /**
+         * Set the future of this task in the underlying executor.
+         */
+        ScheduledFuture<V> scheduled(ScheduledFuture<?> scheduled) {
+            this.scheduled = scheduled;
+            if (isDone())
+                scheduled.cancel(false);
+            return this;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                cancelScheduled();
+                return;
+            }
+            if (!tryAcquire()) {
+                if (deferred.compareAndSet(false, true))
+                    JobScheduledExecutor.this.deferred.add(this);
+                dispatchDeferred();
+                return;
+            }
+            try {
+                if (periodic)
+                    runAndReset();
+                else
+                    super.run();
+            } finally {
+                executing.decrementAndGet();
+                dispatchDeferred();
+            }
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            failed = true;
+            taskFailed(this, t);
+        }
+
+        void failed(Throwable t) {
+            super.setException(t);
+        }
+
+        /**
+         * Invoked when the task completes normally, abruptly or
+         * by cancellation. Remove tracking of the task and notify
+         * the completer if the job seems to have no work. The completer
+         * of a failed task is notified of the failure instead.
+         */
+        @Override
+        protected void done() {
+            cancelScheduled();
+            untrack(this);
+            if (!failed && !hasActiveTasks())
+                completer.accept(JobScheduledExecutor.this, null);
+        }
+
+        private void cancelScheduled() {
+            ScheduledFuture<?> scheduled = this.scheduled;
+            if (scheduled != null && !scheduled.isDone())
+                scheduled.cancel(false);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            ScheduledFuture<?> scheduled = this.scheduled;
+            return scheduled == null ? 0 : scheduled.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o == this)
+                return 0;
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
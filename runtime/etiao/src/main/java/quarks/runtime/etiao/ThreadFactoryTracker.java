@@ -4,6 +4,7 @@
 */
 package quarks.runtime.etiao;
 
+import java.lang.reflect.Method;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.Executors;
@@ -26,6 +27,12 @@ import quarks.oplet.core.Source;
  * <p>
  * If no {@code ThreadFactory} is provided, then this object uses the
  * factory returned by {@link Executors#defaultThreadFactory()}.</p>
+ * <p>
+ * The tracker can instead hand out virtual threads, when running on
+ * a Java virtual machine which supports them. Virtual threads are 
+ * always daemon threads, the tracker considers them as active non-daemon
+ * threads until they terminate. Virtual threads are named
+ * {@code virtual-thread-}<i>n</i> followed by the tracker's thread name.</p>
  */
 public class ThreadFactoryTracker implements ThreadFactory {
 
@@ -34,6 +41,7 @@ public class ThreadFactoryTracker implements ThreadFactory {
     private final BiConsumer<Object, Throwable> completer;
     private final Thread.UncaughtExceptionHandler handler;
     private volatile boolean shutdown;
+    private volatile ThreadFactory virtualFactory;
     private final ThreadSets threads = new ThreadSets();
     private static final Logger logger = LoggerFactory.getLogger(ThreadFactoryTracker.class);
 
@@ -54,6 +62,25 @@ public class ThreadFactoryTracker implements ThreadFactory {
             }};
     }
 
+    /**
+     * Sets whether this tracker returns virtual threads.
+     * If virtual threads are not supported by the Java virtual machine
+     * then platform threads continue to be returned.
+     * 
+     * @param virtual {@code true} to return virtual threads.
+     * @return {@code true} if the tracker returns virtual threads.
+     */
+    public boolean setVirtualThreads(boolean virtual) {
+        ThreadFactory vf = null;
+        if (virtual) {
+            vf = virtualThreadFactory();
+            if (vf == null)
+                getLogger().warn("Virtual threads are not supported, using platform threads");
+        }
+        virtualFactory = vf;
+        return vf != null;
+    }
+
     /**
      * Return a thread.
      */
@@ -61,6 +88,7 @@ public class ThreadFactoryTracker implements ThreadFactory {
     public Thread newThread(Runnable r) {
         if (shutdown)
             return null;
+        final ThreadFactory vf = virtualFactory;
 
         Runnable wrapper = new Runnable() {
             /**
@@ -83,13 +111,32 @@ public class ThreadFactoryTracker implements ThreadFactory {
             }
         };
         
-        Thread t = factory.newThread(wrapper);
+        Thread t = (vf != null ? vf : factory).newThread(wrapper);
         t.setName(t.getName() + "-" + threadName);
         t.setUncaughtExceptionHandler(handler);
-        threads.addNew(t);
+        threads.addNew(t, vf != null);
         return t;
     }
 
+    /**
+     * Get the virtual thread factory through reflection,
+     * {@code Thread.ofVirtual().name("virtual-thread-", 1).factory()}, as virtual threads
+     * are not available on all supported Java platforms.
+     * 
+     * @return the factory, or {@code null} if virtual threads are not supported.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "virtual-thread-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
     /**
      * This initiates an orderly shutdown in which no new tasks will be 
      * accepted but previously submitted tasks continue to be executed.
@@ -149,13 +196,17 @@ public class ThreadFactoryTracker implements ThreadFactory {
     private static class ThreadSets {
         private final Set<Thread> newThreads = new HashSet<Thread>();     // created, not running yet
         private final Set<Thread> runningThreads = new HashSet<Thread>(); // running
+        private final Set<Thread> virtualThreads = new HashSet<Thread>(); // created or running
         
-        synchronized void addNew(Thread t) {
+        synchronized void addNew(Thread t, boolean virtual) {
             newThreads.add(t);
+            if (virtual)
+                virtualThreads.add(t);
         }
 
         synchronized void removeRunning(Thread t) {
             runningThreads.remove(t);
+            virtualThreads.remove(t);
         }
 
         synchronized void fromNewToRunning(Thread t) {
@@ -171,6 +222,8 @@ public class ThreadFactoryTracker implements ThreadFactory {
             if (runningThreads.isEmpty() && newThreads.isEmpty())
                 return false;
 
+            if (!virtualThreads.isEmpty())
+                return true;
             for (Thread t : runningThreads) {
                 if (t.isDaemon())
                     continue;
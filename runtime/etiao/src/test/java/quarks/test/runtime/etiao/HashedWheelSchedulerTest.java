@@ -0,0 +1,137 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.test.runtime.etiao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import quarks.runtime.etiao.HashedWheelScheduler;
+
+public class HashedWheelSchedulerTest {
+
+    private ScheduledThreadPoolExecutor executor;
+    private HashedWheelScheduler wheel;
+
+    @Before
+    public void setup() {
+        executor = new ScheduledThreadPoolExecutor(2);
+        // Small wheel so that timers wrap around the wheel
+        wheel = new HashedWheelScheduler(executor, 1, TimeUnit.MILLISECONDS, 64);
+    }
+
+    @After
+    public void teardown() {
+        wheel.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        int[] delays = {150, 20, 90, 45};
+        for (int delay : delays) {
+            wheel.schedule(() -> { order.add(delay); done.countDown(); }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(4, wheel.getPendingTimers());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, order.size());
+        assertEquals(Integer.valueOf(20), order.get(0));
+        assertEquals(Integer.valueOf(45), order.get(1));
+        assertEquals(Integer.valueOf(90), order.get(2));
+        assertEquals(Integer.valueOf(150), order.get(3));
+        assertEquals(0, wheel.getPendingTimers());
+    }
+
+    @Test
+    public void testNotEarly() throws Exception {
+        long start = System.nanoTime();
+        ScheduledFuture<Long> f = wheel.schedule(() -> System.nanoTime(), 200, TimeUnit.MILLISECONDS);
+        long elapsed = f.get(5, TimeUnit.SECONDS) - start;
+        assertTrue("elapsed " + elapsed, elapsed >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testHugeDelay() throws Exception {
+        AtomicInteger n = new AtomicInteger();
+        ScheduledFuture<?> f = wheel.schedule(() -> n.incrementAndGet(), Long.MAX_VALUE, TimeUnit.DAYS);
+        ScheduledFuture<?> p = wheel.scheduleAtFixedRate(() -> n.incrementAndGet(),
+                Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        Thread.sleep(200);
+        assertEquals(0, n.get());
+        assertFalse(f.isDone());
+        assertTrue(f.getDelay(TimeUnit.DAYS) > 365);
+        assertEquals(2, wheel.getPendingTimers());
+        assertTrue(f.cancel(false));
+        assertTrue(p.cancel(false));
+        assertEquals(0, wheel.getPendingTimers());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        AtomicInteger n = new AtomicInteger();
+        List<ScheduledFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            futures.add(wheel.schedule(() -> n.incrementAndGet(), 50 + i % 100, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < futures.size(); i += 2)
+            assertTrue(futures.get(i).cancel(false));
+        assertEquals(500, wheel.getPendingTimers());
+        Thread.sleep(500);
+        assertEquals(500, n.get());
+        assertEquals(0, wheel.getPendingTimers());
+    }
+
+    @Test
+    public void testFixedRate() throws Exception {
+        AtomicInteger n = new AtomicInteger();
+        ScheduledFuture<?> f = wheel.scheduleAtFixedRate(() -> n.incrementAndGet(), 10, 10, TimeUnit.MILLISECONDS);
+        Thread.sleep(500);
+        f.cancel(false);
+        int count = n.get();
+        assertTrue("count " + count, count > 20 && count <= 50);
+        assertEquals(0, wheel.getPendingTimers());
+        Thread.sleep(50);
+        assertEquals(count, n.get());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void testFailure() throws Exception {
+        ScheduledFuture<?> f = wheel.scheduleWithFixedDelay(() -> { throw new IllegalStateException(); },
+                5, 5, TimeUnit.MILLISECONDS);
+        try {
+            f.get(5, TimeUnit.SECONDS);
+        } finally {
+            assertTrue(f.isDone());
+            assertFalse(f.isCancelled());
+            assertEquals(0, wheel.getPendingTimers());
+        }
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        AtomicInteger n = new AtomicInteger();
+        for (int i = 0; i < 10; i++)
+            wheel.schedule(() -> n.incrementAndGet(), 100, TimeUnit.MILLISECONDS);
+        assertEquals(10, wheel.shutdownNow().size());
+        assertTrue(wheel.isTerminated());
+        Thread.sleep(200);
+        assertEquals(0, n.get());
+    }
+}
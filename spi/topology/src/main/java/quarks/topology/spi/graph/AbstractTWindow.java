@@ -1,13 +1,20 @@
 package quarks.topology.spi.graph;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import quarks.function.Function;
 import quarks.topology.TStream;
 import quarks.topology.TWindow;
 import quarks.topology.Topology;
+import quarks.window.Window;
 
 public abstract class AbstractTWindow<T, K> implements TWindow<T, K> {
     private final TStream<T> feed;
     private Function<T, K> keyFunction;
+    private long idleTime;
+    private TimeUnit idleUnit = TimeUnit.MILLISECONDS;
+    private int maxPartitions;
     
     AbstractTWindow(TStream<T> feed, Function<T, K> keyFunction){
         this.feed = feed;
@@ -19,6 +26,27 @@ public abstract class AbstractTWindow<T, K> implements TWindow<T, K> {
         return feed.topology();
     }
 
+    @Override
+    public TWindow<T, K> expirePartitions(long idleTime, TimeUnit unit, int maxPartitions) {
+        if (idleTime < 0)
+            throw new IllegalArgumentException("idleTime");
+        if (maxPartitions < 0)
+            throw new IllegalArgumentException("maxPartitions");
+        this.idleTime = idleTime;
+        this.idleUnit = unit;
+        this.maxPartitions = maxPartitions;
+        return this;
+    }
+    
+    /**
+     * Apply this window's partition expiry configuration to {@code window}.
+     */
+    <L extends List<T>> Window<T, K, L> configure(Window<T, K, L> window) {
+        window.setPartitionExpiry(idleTime, idleUnit);
+        window.setMaxPartitions(maxPartitions);
+        return window;
+    }
+
     @Override
     public Function<T, K> getKeyFunction() {
         return keyFunction;
@@ -7,6 +7,8 @@ package quarks.topology.spi.graph;
 import static quarks.function.Functions.synchronizedFunction;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -16,11 +18,14 @@ import quarks.function.Consumer;
 import quarks.function.Function;
 import quarks.function.Functions;
 import quarks.function.Predicate;
+import quarks.function.ToDoubleFunction;
 import quarks.function.ToIntFunction;
+import quarks.function.ToLongFunction;
 import quarks.graph.Connector;
 import quarks.graph.Graph;
 import quarks.graph.Vertex;
 import quarks.oplet.core.Pipe;
+import quarks.oplet.core.Router;
 import quarks.oplet.core.Sink;
 import quarks.oplet.core.Split;
 import quarks.oplet.core.Union;
@@ -28,8 +33,12 @@ import quarks.oplet.functional.Filter;
 import quarks.oplet.functional.FlatMap;
 import quarks.oplet.functional.Map;
 import quarks.oplet.functional.Peek;
+import quarks.oplet.window.EventTimeReorder;
+import quarks.topology.TDoubleWindow;
+import quarks.topology.TEventTimeWindow;
 import quarks.topology.TSink;
 import quarks.topology.TStream;
+import quarks.topology.TTimeWindow;
 import quarks.topology.TWindow;
 import quarks.topology.Topology;
 import quarks.topology.spi.AbstractTStream;
@@ -42,6 +51,12 @@ import quarks.topology.spi.AbstractTStream;
  */
 public class ConnectorStream<G extends Topology, T> extends AbstractTStream<G, T> {
 
+    /**
+     * Default maximum number of tuples held by an event time
+     * window waiting for the watermark to pass them.
+     */
+    private static final int EVENT_TIME_REORDER_CAPACITY = 10_000;
+
     private final Connector<T> connector;
 
     protected ConnectorStream(G topology, Connector<T> connector) {
@@ -95,6 +110,89 @@ public class ConnectorStream<G extends Topology, T> extends AbstractTStream<G, T
         return outputs;
     }
 
+    @Override
+    public List<TStream<T>> route(int n, List<? extends Predicate<T>> predicates,
+            List<? extends Collection<Integer>> ports, Collection<Integer> otherwise) {
+        int[][] routes = ruleRoutes(n, predicates, ports, otherwise);
+        return route(n, new Router<T>(Router.firstMatch(predicates), routes));
+    }
+
+    @Override
+    public List<TStream<T>> routeAll(int n, List<? extends Predicate<T>> predicates,
+            List<? extends Collection<Integer>> ports, Collection<Integer> otherwise) {
+        int[][] routes = ruleRoutes(n, predicates, ports, otherwise);
+        return route(n, new Router<T>(predicates, routes));
+    }
+
+    /**
+     * Routes for rules, route i is rule i, route predicates.size() is otherwise.
+     */
+    private static <T> int[][] ruleRoutes(int n, List<? extends Predicate<T>> predicates,
+            List<? extends Collection<Integer>> ports, Collection<Integer> otherwise) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
+        if (predicates.size() != ports.size())
+            throw new IllegalArgumentException("ports: " + ports.size());
+
+        int[][] routes = new int[predicates.size() + 1][];
+        for (int i = 0; i < predicates.size(); i++)
+            routes[i] = routePorts(n, ports.get(i));
+        routes[predicates.size()] = routePorts(n, otherwise);
+        return routes;
+    }
+
+    @Override
+    public <K> List<TStream<T>> route(int n, Function<T, K> keyFunction,
+            java.util.Map<K, ? extends Collection<Integer>> table, Collection<Integer> otherwise) {
+        if (n <= 0)
+            throw new IllegalArgumentException("n <= 0");
+
+        // Compile the table so that keys routing to the same
+        // set of ports share a route.
+        java.util.Map<Set<Integer>, Integer> routeIndexes = new HashMap<>();
+        List<int[]> routes = new ArrayList<>();
+        java.util.Map<K, Integer> keyRoutes = new HashMap<>();
+        for (java.util.Map.Entry<K, ? extends Collection<Integer>> entry : table.entrySet()) {
+            Set<Integer> ports = new HashSet<>(entry.getValue());
+            Integer r = routeIndexes.get(ports);
+            if (r == null) {
+                r = routes.size();
+                routes.add(routePorts(n, ports));
+                routeIndexes.put(ports, r);
+            }
+            keyRoutes.put(entry.getKey(), r);
+        }
+        int otherwiseRoute = routes.size();
+        routes.add(routePorts(n, otherwise));
+
+        return route(n, new Router<T>(Router.lookup(keyFunction, keyRoutes, otherwiseRoute),
+                routes.toArray(new int[routes.size()][])));
+    }
+
+    private List<TStream<T>> route(int n, Router<T> router) {
+        Vertex<Router<T>, T, T> routerVertex = graph().insert(router, 1, n);
+        connector.connect(routerVertex, 0);
+
+        List<TStream<T>> outputs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            outputs.add(derived(routerVertex.getConnectors().get(i)));
+        }
+
+        return outputs;
+    }
+
+    private static int[] routePorts(int n, Collection<Integer> ports) {
+        Set<Integer> distinct = new HashSet<>(ports);
+        int[] route = new int[distinct.size()];
+        int i = 0;
+        for (int port : distinct) {
+            if (port < 0 || port >= n)
+                throw new IllegalArgumentException("port: " + port);
+            route[i++] = port;
+        }
+        return route;
+    }
+
     @Override
     public TStream<T> peek(Consumer<T> peeker) {
         peeker = Functions.synchronizedConsumer(peeker);
@@ -122,12 +220,62 @@ public class ConnectorStream<G extends Topology, T> extends AbstractTStream<G, T
     
 
     @Override
-    public <K> TWindow<T, K> last(long time, TimeUnit unit,
+    public <K> TTimeWindow<T, K> last(long time, TimeUnit unit,
             Function<T, K> keyFunction) {
         TWindowTimeImpl<T, K> window = new TWindowTimeImpl<T, K>(time, unit, this, keyFunction);
         return window;
     }
     
+    @Override
+    public <K> TWindow<T, K> session(long gap, TimeUnit unit,
+            Function<T, K> keyFunction) {
+        return new TWindowSessionImpl<T, K>(gap, unit, this, keyFunction);
+    }
+    
+    @Override
+    public <K> TWindow<T, K> tumbling(long time, TimeUnit unit,
+            Function<T, K> keyFunction) {
+        return new TWindowTumblingImpl<T, K>(time, unit, this, keyFunction);
+    }
+    
+    @Override
+    public <K> TWindow<T, K> tumbling(int count, long time, TimeUnit unit,
+            Function<T, K> keyFunction) {
+        return new TWindowTumblingImpl<T, K>(count, time, unit, this, keyFunction);
+    }
+    
+    @Override
+    public <K> TEventTimeWindow<T, K> eventTimeWindow(long size, long maxDelay,
+            ToLongFunction<T> timestampFunction, Function<T, K> keyFunction) {
+        return eventTimeWindow(size, maxDelay, EVENT_TIME_REORDER_CAPACITY, timestampFunction, keyFunction);
+    }
+    
+    @Override
+    public <K> TEventTimeWindow<T, K> eventTimeWindow(long size, long maxDelay, int capacity,
+            ToLongFunction<T> timestampFunction, Function<T, K> keyFunction) {
+        EventTimeReorder<T> reorderOp = new EventTimeReorder<T>(timestampFunction, maxDelay, capacity);
+
+        Vertex<EventTimeReorder<T>, T, T> reorderVertex = graph().insert(reorderOp, 1, 2);
+        connector.connect(reorderVertex, 0);
+
+        return new TEventTimeWindowImpl<T, K>(size, this,
+                derived(reorderVertex.getConnectors().get(0)),
+                derived(reorderVertex.getConnectors().get(1)),
+                timestampFunction, keyFunction);
+    }
+    
+    @Override
+    public <K> TDoubleWindow<T, K> lastDoubles(int count, ToDoubleFunction<T> valueFunction,
+            Function<T, K> keyFunction) {
+        return new TDoubleWindowImpl<T, K>(count, this, valueFunction, keyFunction);
+    }
+    
+    @Override
+    public <K> TDoubleWindow<T, K> lastDoubles(long time, TimeUnit unit, ToDoubleFunction<T> valueFunction,
+            Function<T, K> keyFunction) {
+        return new TDoubleWindowImpl<T, K>(time, unit, this, valueFunction, keyFunction);
+    }
+    
     @Override
     public TStream<T> union(Set<TStream<T>> others) {
         if (others.isEmpty())
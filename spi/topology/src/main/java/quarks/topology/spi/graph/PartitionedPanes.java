@@ -0,0 +1,113 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.topology.spi.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import quarks.window.PartitionedState;
+
+/**
+ * Per-partition pane results for a hopping window.
+ * <P>
+ * A hopping window's time is divided into panes of equal length.
+ * When a pane closes its tuples are aggregated once and the result
+ * is retained for as many panes as fit in the window, so that
+ * each emission combines the retained pane results rather than
+ * re-aggregating the window's tuples.
+ * </P>
+ * <P>
+ * Only accessed while holding the partition's lock.
+ * </P>
+ *
+ * @param <K> Key type.
+ * @param <A> Pane result type.
+ */
+class PartitionedPanes<K, A> extends PartitionedState<K, PartitionedPanes.Panes<A>> {
+
+    PartitionedPanes(int windowPanes) {
+        super(() -> new Panes<A>(windowPanes));
+    }
+
+    Panes<A> panes(K key) {
+        return getState(key);
+    }
+
+    void remove(K key) {
+        removeState(key);
+    }
+
+    /**
+     * Ring of the results of the most recent panes for a partition.
+     * An empty pane is held as {@code null}.
+     */
+    static class Panes<A> {
+        private final Object[] results;
+        private int next;
+        private int nonEmpty;
+
+        /**
+         * Number of panes closed since the last emission.
+         */
+        int sinceEmit;
+
+        /**
+         * True if the close of the current pane is scheduled.
+         */
+        boolean scheduled;
+
+        /**
+         * Time the current pane closes.
+         */
+        long nextClose;
+
+        Panes(int windowPanes) {
+            results = new Object[windowPanes];
+        }
+
+        /**
+         * Add the result of a closed pane, dropping the
+         * result of the oldest pane.
+         * @param result Pane result, {@code null} for an empty pane.
+         */
+        void add(A result) {
+            if (results[next] != null)
+                nonEmpty--;
+            results[next] = result;
+            if (result != null)
+                nonEmpty++;
+            next = (next + 1) % results.length;
+        }
+
+        /**
+         * Are all the retained panes empty.
+         */
+        boolean isEmpty() {
+            return nonEmpty == 0;
+        }
+
+        /**
+         * Results of the retained non-empty panes, oldest first.
+         */
+        List<A> results() {
+            return results(results.length);
+        }
+
+        /**
+         * Results of the non-empty panes among
+         * the most recent {@code panes} panes, oldest first.
+         */
+        @SuppressWarnings("unchecked")
+        List<A> results(int panes) {
+            List<A> list = new ArrayList<>(Math.min(panes, nonEmpty));
+            for (int i = results.length - panes; i < results.length; i++) {
+                Object result = results[(next + i) % results.length];
+                if (result != null)
+                    list.add((A) result);
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.topology.spi.graph;
+
+import java.util.concurrent.TimeUnit;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.ToDoubleFunction;
+import quarks.oplet.window.DoubleAggregate;
+import quarks.topology.TDoubleWindow;
+import quarks.topology.TStream;
+import quarks.topology.Topology;
+import quarks.window.DoubleRing;
+
+public class TDoubleWindowImpl<T, K> implements TDoubleWindow<T, K> {
+    private final TStream<T> feed;
+    private final ToDoubleFunction<T> valueFunction;
+    private final Function<T, K> keyFunction;
+    private final int count;
+    private final long time;
+    private final TimeUnit unit;
+    private long idleTime;
+    private TimeUnit idleUnit = TimeUnit.MILLISECONDS;
+    private int maxPartitions;
+    
+    TDoubleWindowImpl(int count, TStream<T> feed, ToDoubleFunction<T> valueFunction, Function<T, K> keyFunction){
+        this.feed = feed;
+        this.valueFunction = valueFunction;
+        this.keyFunction = keyFunction;
+        this.count = count;
+        this.time = 0;
+        this.unit = null;
+    }
+    
+    TDoubleWindowImpl(long time, TimeUnit unit, TStream<T> feed, ToDoubleFunction<T> valueFunction, Function<T, K> keyFunction){
+        this.feed = feed;
+        this.valueFunction = valueFunction;
+        this.keyFunction = keyFunction;
+        this.count = 0;
+        this.time = time;
+        this.unit = unit;
+    }
+
+    @Override
+    public <U> TStream<U> aggregate(BiFunction<DoubleRing, K, U> aggregator) {
+        DoubleAggregate<T,U,K> op = unit == null
+                ? new DoubleAggregate<T,U,K>(count, valueFunction, keyFunction, aggregator)
+                : new DoubleAggregate<T,U,K>(time, unit, valueFunction, keyFunction, aggregator);
+        op.setPartitionExpiry(idleTime, idleUnit);
+        op.setMaxPartitions(maxPartitions);
+        return feeder().pipe(op);
+    }
+    
+    @Override
+    public TDoubleWindow<T, K> expirePartitions(long idleTime, TimeUnit unit, int maxPartitions) {
+        if (idleTime < 0)
+            throw new IllegalArgumentException("idleTime");
+        if (maxPartitions < 0)
+            throw new IllegalArgumentException("maxPartitions");
+        this.idleTime = idleTime;
+        this.idleUnit = unit;
+        this.maxPartitions = maxPartitions;
+        return this;
+    }
+    
+    @Override
+    public Topology topology() {
+        return feed.topology();
+    }
+
+    @Override
+    public ToDoubleFunction<T> getValueFunction() {
+        return valueFunction;
+    }
+
+    @Override
+    public Function<T, K> getKeyFunction() {
+        return keyFunction;
+    }
+    
+    @Override
+    public TStream<T> feeder() {
+        return feed;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.topology.spi.graph;
+
+import java.util.List;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.ToLongFunction;
+import quarks.oplet.window.EventTimeAggregate;
+import quarks.topology.TEventTimeWindow;
+import quarks.topology.TStream;
+import quarks.topology.Topology;
+
+public class TEventTimeWindowImpl<T, K> implements TEventTimeWindow<T, K> {
+    private final TStream<T> feed;
+    private final TStream<T> ordered;
+    private final TStream<T> late;
+    private final long size;
+    private final ToLongFunction<T> timestampFunction;
+    private final Function<T, K> keyFunction;
+    
+    /**
+     * @param size Length of each window in event time units.
+     * @param feed Stream feeding the window.
+     * @param ordered Stream of {@code feed}'s tuples in event time order.
+     * @param late Stream of {@code feed}'s late tuples.
+     */
+    TEventTimeWindowImpl(long size, TStream<T> feed, TStream<T> ordered, TStream<T> late,
+            ToLongFunction<T> timestampFunction, Function<T, K> keyFunction){
+        this.size = size;
+        this.feed = feed;
+        this.ordered = ordered;
+        this.late = late;
+        this.timestampFunction = timestampFunction;
+        this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher) {
+        EventTimeAggregate<T,U,K> op = new EventTimeAggregate<T,U,K>(size, timestampFunction, keyFunction, batcher);
+        return ordered.pipe(op);
+    }
+    
+    @Override
+    public TStream<T> late() {
+        return late;
+    }
+    
+    @Override
+    public Topology topology() {
+        return feed.topology();
+    }
+
+    @Override
+    public ToLongFunction<T> getTimestampFunction() {
+        return timestampFunction;
+    }
+
+    @Override
+    public Function<T, K> getKeyFunction() {
+        return keyFunction;
+    }
+    
+    @Override
+    public TStream<T> feeder() {
+        return feed;
+    }
+}
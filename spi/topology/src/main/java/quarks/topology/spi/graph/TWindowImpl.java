@@ -4,8 +4,10 @@
 */
 package quarks.topology.spi.graph;
 
+import static quarks.window.Policies.accumulateAndProcessOnInsert;
 import static quarks.window.Policies.alwaysInsert;
-import static quarks.window.Policies.processOnInsert;
+import static quarks.window.Policies.countContentsPolicy;
+import static quarks.window.Policies.evictOldest;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -13,9 +15,11 @@ import java.util.List;
 
 import quarks.function.BiFunction;
 import quarks.function.Function;
-import quarks.function.Functions;
+import quarks.function.Supplier;
 import quarks.oplet.window.Aggregate;
 import quarks.topology.TStream;
+import quarks.window.Accumulator;
+import quarks.window.PartitionedAccumulators;
 import quarks.window.Policies;
 import quarks.window.Window;
 import quarks.window.Windows;
@@ -30,15 +34,29 @@ public class TWindowImpl<T, K> extends AbstractTWindow<T, K> {
 
     @Override
     public <U> TStream<U> aggregate(BiFunction<List<T>,K, U> processor) { 
-        processor = Functions.synchronizedBiFunction(processor);
         Window<T, K, LinkedList<T>> window = Windows.lastNProcessOnInsert(size, getKeyFunction());
-        Aggregate<T,U,K> op = new Aggregate<T,U,K>(window, processor);
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), processor);
+        return feeder().pipe(op); 
+    }
+
+    @Override
+    public <U> TStream<U> aggregate(Supplier<? extends Accumulator<T, U>> accumulator) {
+        PartitionedAccumulators<T, K, U> accumulators = new PartitionedAccumulators<>(accumulator);
+        Window<T, K, LinkedList<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        countContentsPolicy(size),
+                        evictOldest(accumulators),
+                        accumulateAndProcessOnInsert(accumulators),
+                        getKeyFunction(),
+                        () -> new LinkedList<T>());
+        window.registerPartitionExpiryHandler(partition -> accumulators.removeAccumulator(partition.getKey()));
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), (tuples, key) -> accumulators.result(key));
         return feeder().pipe(op); 
     }
 
     @Override
     public <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher) {
-        batcher = Functions.synchronizedBiFunction(batcher);
         Window<T, K, List<T>> window =
                 Windows.window(
                         alwaysInsert(),
@@ -48,7 +66,7 @@ public class TWindowImpl<T, K> extends AbstractTWindow<T, K> {
                         getKeyFunction(),
                         () -> new ArrayList<T>(size));
         
-        Aggregate<T,U,K> op = new Aggregate<T,U,K>(window, batcher);
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), batcher);
         return feeder().pipe(op); 
     }
 }
@@ -0,0 +1,108 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016 
+*/
+package quarks.topology.spi.graph;
+
+import static quarks.window.Policies.accumulateAndProcessOnInsert;
+import static quarks.window.Policies.alwaysInsert;
+import static quarks.window.Policies.evictInactive;
+import static quarks.window.Policies.evictInactiveWithProcess;
+import static quarks.window.Policies.insertionTimeList;
+import static quarks.window.Policies.processOnInsert;
+import static quarks.window.Policies.scheduleEvictIfEmpty;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.Supplier;
+import quarks.oplet.window.Aggregate;
+import quarks.topology.TStream;
+import quarks.window.Accumulator;
+import quarks.window.InsertionTimeList;
+import quarks.window.PartitionedAccumulators;
+import quarks.window.Policies;
+import quarks.window.Window;
+import quarks.window.Windows;
+
+public class TWindowSessionImpl<T, K> extends AbstractTWindow<T, K> {
+    private final long gap;
+    private final TimeUnit unit;
+    
+    TWindowSessionImpl(long gap, TimeUnit unit, TStream<T> feed, Function<T, K> keyFunction){
+        super(feed, keyFunction);
+        this.gap = gap;
+        this.unit = unit;
+    }
+
+    /**
+     * Window behaviour here is that:
+     * 
+     * Tuples are always inserted into the partition.
+     * 
+     * If before insertion the partition is empty then
+     * an eviction is scheduled after the gap.
+     * 
+     * After insertion the window is processed so that
+     * any change triggers this continuous aggregation
+     * of the session so far.
+     * 
+     * The evict determiner expires the partition if no tuple
+     * has been inserted within the gap, otherwise it reschedules
+     * the eviction for the gap after the last insertion.
+     */
+    @Override
+    public <U> TStream<U> aggregate(BiFunction<List<T>,K, U> processor) {    
+        Window<T, K, InsertionTimeList<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        scheduleEvictIfEmpty(gap, unit),
+                        evictInactive(gap, unit),
+                        processOnInsert(),
+                        getKeyFunction(),
+                        insertionTimeList());
+        
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), processor);
+        return feeder().pipe(op); 
+    }
+
+    @Override
+    public <U> TStream<U> aggregate(Supplier<? extends Accumulator<T, U>> accumulator) {
+        PartitionedAccumulators<T, K, U> accumulators = new PartitionedAccumulators<>(accumulator);
+        Window<T, K, InsertionTimeList<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        scheduleEvictIfEmpty(gap, unit),
+                        evictInactive(gap, unit),
+                        accumulateAndProcessOnInsert(accumulators),
+                        getKeyFunction(),
+                        insertionTimeList());
+        
+        window.registerPartitionExpiryHandler(partition -> accumulators.removeAccumulator(partition.getKey()));
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), (tuples, key) -> accumulators.result(key));
+        return feeder().pipe(op); 
+    }
+
+    /**
+     * Same window behaviour as {@link #aggregate(BiFunction)}
+     * except the window is not processed on insertion, instead
+     * the evict determiner processes the partition once
+     * when the session closes, before expiring the partition.
+     */
+    @Override
+    public <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher) {
+        Window<T, K, InsertionTimeList<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        scheduleEvictIfEmpty(gap, unit),
+                        evictInactiveWithProcess(gap, unit),
+                        Policies.doNothing(),
+                        getKeyFunction(),
+                        insertionTimeList());
+        
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), batcher);
+        return feeder().pipe(op); 
+    } 
+}
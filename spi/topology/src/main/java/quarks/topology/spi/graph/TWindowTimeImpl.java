@@ -1,5 +1,6 @@
 package quarks.topology.spi.graph;
 
+import static quarks.window.Policies.accumulateAndProcessOnInsert;
 import static quarks.window.Policies.alwaysInsert;
 import static quarks.window.Policies.evictOlderWithProcess;
 import static quarks.window.Policies.insertionTimeList;
@@ -7,20 +8,30 @@ import static quarks.window.Policies.processOnInsert;
 import static quarks.window.Policies.scheduleEvictIfEmpty;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import quarks.function.BiFunction;
 import quarks.function.Function;
-import quarks.function.Functions;
+import quarks.function.Supplier;
 import quarks.oplet.window.Aggregate;
 import quarks.topology.TStream;
+import quarks.topology.TTimeWindow;
+import quarks.window.Accumulator;
 import quarks.window.InsertionTimeList;
+import quarks.window.PartitionedAccumulators;
 import quarks.window.Policies;
 import quarks.window.Window;
 import quarks.window.Windows;
 
-public class TWindowTimeImpl<T, K> extends AbstractTWindow<T, K> {
+public class TWindowTimeImpl<T, K> extends AbstractTWindow<T, K> implements TTimeWindow<T, K> {
+    /**
+     * Maximum number of panes covering a hopping window's time,
+     * bounding the pane results retained for each partition.
+     */
+    static final int MAX_PANES = 10_000;
+    
     private long time;
     private TimeUnit unit;
     
@@ -30,6 +41,12 @@ public class TWindowTimeImpl<T, K> extends AbstractTWindow<T, K> {
         this.unit = unit;
     }
 
+    @Override
+    public TTimeWindow<T, K> expirePartitions(long idleTime, TimeUnit unit, int maxPartitions) {
+        super.expirePartitions(idleTime, unit, maxPartitions);
+        return this;
+    }
+
     /**
      * Window behaviour here is that:
      * 
@@ -48,7 +65,6 @@ public class TWindowTimeImpl<T, K> extends AbstractTWindow<T, K> {
      */
     @Override
     public <U> TStream<U> aggregate(BiFunction<List<T>,K, U> processor) {    
-        processor = Functions.synchronizedBiFunction(processor);
         Window<T, K, InsertionTimeList<T>> window =
                 Windows.window(
                         alwaysInsert(),
@@ -58,13 +74,186 @@ public class TWindowTimeImpl<T, K> extends AbstractTWindow<T, K> {
                         getKeyFunction(),
                         insertionTimeList());
         
-        Aggregate<T,U,K> op = new Aggregate<T,U,K>(window, processor);
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), processor);
         return feeder().pipe(op); 
     }
 
+    /**
+     * Same window behaviour as {@link #aggregate(BiFunction)}
+     * except tuples are added to the partition's accumulator on insertion
+     * and removed from it on eviction, and processing is only
+     * invoked on eviction if at least one tuple was evicted.
+     */
+    @Override
+    public <U> TStream<U> aggregate(Supplier<? extends Accumulator<T, U>> accumulator) {
+        PartitionedAccumulators<T, K, U> accumulators = new PartitionedAccumulators<>(accumulator);
+        Window<T, K, InsertionTimeList<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        scheduleEvictIfEmpty(time, unit),
+                        evictOlderWithProcess(time, unit, accumulators),
+                        accumulateAndProcessOnInsert(accumulators),
+                        getKeyFunction(),
+                        insertionTimeList());
+        
+        window.registerPartitionExpiryHandler(partition -> accumulators.removeAccumulator(partition.getKey()));
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), (tuples, key) -> accumulators.result(key));
+        return feeder().pipe(op); 
+    }
+
+    /**
+     * Hopping window behaviour is described by {@code hopping()},
+     * with panes whose length is the hop, which must divide
+     * the window's time.
+     * 
+     * Every hop the retained pane results are combined and submitted.
+     */
+    @Override
+    public <A, U> TStream<U> aggregate(long hop, TimeUnit hopUnit,
+            BiFunction<List<T>, K, A> paneAggregator, BiFunction<List<A>, K, U> combiner) {
+        long windowMs = TimeUnit.MILLISECONDS.convert(time, unit);
+        long hopMs = TimeUnit.MILLISECONDS.convert(hop, hopUnit);
+        if (hopMs <= 0 || windowMs % hopMs != 0)
+            throw new IllegalArgumentException("hop");
+        long paneMs = checkPanes(windowMs, hopMs);
+        
+        return hopping(hopMs, paneMs, paneAggregator,
+                (panes, key) -> panes.isEmpty() ? null : combiner.apply(panes.results(), key));
+    }
+
+    /**
+     * Multi-resolution hopping window behaviour is the same as
+     * {@link #aggregate(long, TimeUnit, BiFunction, BiFunction)}
+     * except the pane length is the greatest common divisor of
+     * the hop and all the resolutions, each of which must divide
+     * the window's time.
+     * 
+     * A single set of pane results, covering the window's time, is
+     * retained for each partition, each resolution combines
+     * the results of its most recent panes.
+     */
+    @Override
+    public <A, U> TStream<List<U>> aggregate(long hop, TimeUnit hopUnit, long[] resolutions,
+            BiFunction<List<T>, K, A> paneAggregator, BiFunction<List<A>, K, U> combiner) {
+        long windowMs = TimeUnit.MILLISECONDS.convert(time, unit);
+        long hopMs = TimeUnit.MILLISECONDS.convert(hop, hopUnit);
+        if (hopMs <= 0 || windowMs % hopMs != 0)
+            throw new IllegalArgumentException("hop");
+        if (resolutions.length == 0)
+            throw new IllegalArgumentException("resolutions");
+        
+        long paneMs = hopMs;
+        long[] resolutionsMs = new long[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++) {
+            resolutionsMs[i] = TimeUnit.MILLISECONDS.convert(resolutions[i], hopUnit);
+            if (resolutionsMs[i] <= 0 || windowMs % resolutionsMs[i] != 0)
+                throw new IllegalArgumentException("resolutions");
+            paneMs = gcd(paneMs, resolutionsMs[i]);
+        }
+        checkPanes(windowMs, paneMs);
+        int[] resolutionPanes = new int[resolutions.length];
+        for (int i = 0; i < resolutions.length; i++)
+            resolutionPanes[i] = (int) (resolutionsMs[i] / paneMs);
+        
+        return hopping(hopMs, paneMs, paneAggregator, (panes, key) -> {
+            if (panes.isEmpty())
+                return null;
+            List<U> results = new ArrayList<>(resolutionPanes.length);
+            for (int n : resolutionPanes) {
+                List<A> paneResults = panes.results(n);
+                results.add(paneResults.isEmpty() ? null : combiner.apply(paneResults, key));
+            }
+            return Collections.unmodifiableList(results);
+        });
+    }
+    
+    /**
+     * Hopping window behaviour here is that:
+     * 
+     * Time is divided into panes of length {@code paneMs},
+     * starting at the first insertion into the partition.
+     * 
+     * Tuples are inserted into the partition's current pane.
+     * 
+     * The evict determiner closes the current pane, processing it
+     * to aggregate the pane's tuples, and then clears the pane. 
+     * The pane result is retained for the window's duration and every
+     * hop {@code emitter} is called with the retained pane results,
+     * its result being submitted if not {@code null}.
+     * 
+     * Panes are closed while the partition has any tuples in its window.
+     */
+    private <A, R> TStream<R> hopping(long hopMs, long paneMs,
+            BiFunction<List<T>, K, A> paneAggregator, BiFunction<PartitionedPanes.Panes<A>, K, R> emitter) {
+        long windowMs = TimeUnit.MILLISECONDS.convert(time, unit);
+        int hopPanes = (int) (hopMs / paneMs);
+        
+        PartitionedPanes<K, A> panes = new PartitionedPanes<>((int) (windowMs / paneMs));
+        
+        Window<T, K, List<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        (partition, tuple) -> {
+                            PartitionedPanes.Panes<A> p = panes.panes(partition.getKey());
+                            if (!p.scheduled) {
+                                p.scheduled = true;
+                                p.nextClose = System.currentTimeMillis() + paneMs;
+                                partition.getWindow().getScheduledExecutorService().schedule(
+                                        () -> partition.evict(), paneMs, TimeUnit.MILLISECONDS);
+                            }
+                        },
+                        partition -> {
+                            partition.process();
+                            partition.getContents().clear();
+                            
+                            PartitionedPanes.Panes<A> p = panes.panes(partition.getKey());
+                            if (p.isEmpty()) {
+                                p.scheduled = false;
+                                p.sinceEmit = 0;
+                                return;
+                            }
+                            p.nextClose += paneMs;
+                            partition.getWindow().getScheduledExecutorService().schedule(
+                                    () -> partition.evict(),
+                                    Math.max(0, p.nextClose - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                        },
+                        Policies.doNothing(),
+                        getKeyFunction(),
+                        () -> new ArrayList<T>());
+        window.registerPartitionExpiryHandler(partition -> panes.remove(partition.getKey()));
+        
+        Aggregate<T,R,K> op = new Aggregate<T,R,K>(configure(window), (tuples, key) -> {
+            PartitionedPanes.Panes<A> p = panes.panes(key);
+            p.add(tuples.isEmpty() ? null : paneAggregator.apply(tuples, key));
+            if (++p.sinceEmit < hopPanes)
+                return null;
+            p.sinceEmit = 0;
+            return emitter.apply(p, key);
+        });
+        return feeder().pipe(op); 
+    }
+    
+    /**
+     * Check the window's time is covered by at most {@link #MAX_PANES} panes.
+     * @return {@code paneMs}
+     */
+    private static long checkPanes(long windowMs, long paneMs) {
+        if (windowMs / paneMs > MAX_PANES)
+            throw new IllegalArgumentException("panes: " + windowMs / paneMs + " exceeds " + MAX_PANES);
+        return paneMs;
+    }
+    
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
     @Override
     public <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher) {
-        batcher = Functions.synchronizedBiFunction(batcher);
         Window<T, K, List<T>> window =
                 Windows.window(
                         alwaysInsert(),
@@ -74,7 +263,7 @@ public class TWindowTimeImpl<T, K> extends AbstractTWindow<T, K> {
                         getKeyFunction(),
                         () -> new ArrayList<T>());
         
-        Aggregate<T,U,K> op = new Aggregate<T,U,K>(window, batcher);
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), batcher);
         return feeder().pipe(op); 
     } 
 }
@@ -0,0 +1,215 @@
+/*
+# Licensed Materials - Property of IBM
+# Copyright IBM Corp. 2016
+*/
+package quarks.topology.spi.graph;
+
+import static quarks.window.Policies.alwaysInsert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import quarks.function.BiConsumer;
+import quarks.function.BiFunction;
+import quarks.function.Function;
+import quarks.function.Supplier;
+import quarks.oplet.window.Aggregate;
+import quarks.topology.TStream;
+import quarks.window.Accumulator;
+import quarks.window.Partition;
+import quarks.window.PartitionedAccumulators;
+import quarks.window.Policies;
+import quarks.window.Window;
+import quarks.window.Windows;
+
+public class TWindowTumblingImpl<T, K> extends AbstractTWindow<T, K> {
+    private final int count;
+    private final long timeMs;
+    private final boolean aligned;
+
+    /**
+     * Tumbling window closed at each multiple of {@code time}.
+     */
+    TWindowTumblingImpl(long time, TimeUnit unit, TStream<T> feed, Function<T, K> keyFunction){
+        this(Integer.MAX_VALUE, time, unit, true, feed, keyFunction);
+    }
+
+    /**
+     * Tumbling window closed when it contains {@code count} tuples
+     * or {@code time} after its first tuple.
+     */
+    TWindowTumblingImpl(int count, long time, TimeUnit unit, TStream<T> feed, Function<T, K> keyFunction){
+        this(count, time, unit, false, feed, keyFunction);
+    }
+
+    private TWindowTumblingImpl(int count, long time, TimeUnit unit, boolean aligned,
+            TStream<T> feed, Function<T, K> keyFunction){
+        super(feed, keyFunction);
+        if (count < 1)
+            throw new IllegalArgumentException("count");
+        this.count = count;
+        this.timeMs = TimeUnit.MILLISECONDS.convert(time, unit);
+        if (timeMs <= 0)
+            throw new IllegalArgumentException("time");
+        this.aligned = aligned;
+    }
+
+    /**
+     * Window behaviour here is that:
+     *
+     * Tuples are always inserted into the partition.
+     *
+     * If before insertion the partition is empty then
+     * the close of its window is scheduled.
+     *
+     * After insertion the window is processed so that
+     * any change triggers this continuous aggregation,
+     * and the window is closed if it is full.
+     *
+     * The evict determiner closes the window by evicting
+     * all tuples, without processing the partition.
+     */
+    @Override
+    public <U> TStream<U> aggregate(BiFunction<List<T>,K, U> processor) {
+        Window<T, K, Batch<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        scheduleCloseIfEmpty(),
+                        Policies.evictAll(),
+                        (partition, tuple) -> {
+                            partition.process();
+                            closeIfFull(partition);
+                        },
+                        getKeyFunction(),
+                        () -> new Batch<T>());
+
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), processor);
+        return feeder().pipe(op);
+    }
+
+    /**
+     * Same window behaviour as {@link #aggregate(BiFunction)}
+     * except tuples are added to the partition's accumulator
+     * by the insertion policy and are not inserted into the partition,
+     * only their count is kept, so the contents are always empty.
+     * The accumulator is discarded when the window closes.
+     */
+    @Override
+    public <U> TStream<U> aggregate(Supplier<? extends Accumulator<T, U>> accumulator) {
+        PartitionedAccumulators<T, K, U> accumulators = new PartitionedAccumulators<>(accumulator);
+        BiConsumer<Partition<T, K, Batch<T>>, T> scheduleClose = scheduleCloseIfEmpty();
+        Window<T, K, Batch<T>> window =
+                Windows.window(
+                        (partition, tuple) -> {
+                            scheduleClose.accept(partition, tuple);
+                            partition.getContents().accumulated++;
+                            accumulators.add(partition.getKey(), tuple);
+                            partition.process();
+                            closeIfFull(partition);
+                            return false;
+                        },
+                        Policies.doNothing(),
+                        partition -> {
+                            accumulators.removeAccumulator(partition.getKey());
+                            partition.getContents().clear();
+                        },
+                        Policies.doNothing(),
+                        getKeyFunction(),
+                        () -> new Batch<T>(0));
+
+        window.registerPartitionExpiryHandler(partition -> accumulators.removeAccumulator(partition.getKey()));
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), (tuples, key) -> accumulators.result(key));
+        return feeder().pipe(op);
+    }
+
+    /**
+     * Same window behaviour as {@link #aggregate(BiFunction)}
+     * except the window is not processed on insertion, instead
+     * the evict determiner processes the partition once
+     * when its window closes, before evicting all tuples.
+     */
+    @Override
+    public <U> TStream<U> batch(BiFunction<List<T>, K, U> batcher) {
+        Window<T, K, Batch<T>> window =
+                Windows.window(
+                        alwaysInsert(),
+                        scheduleCloseIfEmpty(),
+                        partition -> {
+                            if (!partition.getContents().isEmpty())
+                                partition.process();
+                            partition.getContents().clear();
+                        },
+                        (partition, tuple) -> closeIfFull(partition),
+                        getKeyFunction(),
+                        () -> new Batch<T>(Math.min(count, 16)));
+
+        Aggregate<T,U,K> op = new Aggregate<T,U,K>(configure(window), batcher);
+        return feeder().pipe(op);
+    }
+
+    /**
+     * Contents policy that schedules the close of the partition's
+     * window when its first tuple is inserted. The close is
+     * ignored if the window has already been closed by its count.
+     */
+    private BiConsumer<Partition<T, K, Batch<T>>, T> scheduleCloseIfEmpty() {
+        return (partition, tuple) -> {
+            Batch<T> batch = partition.getContents();
+            if (batch.count() != 0)
+                return;
+
+            long delay = timeMs;
+            if (aligned)
+                delay -= System.currentTimeMillis() % timeMs;
+
+            long generation = batch.generation;
+            partition.getWindow().getScheduledExecutorService().schedule(() -> {
+                synchronized (partition) {
+                    if (batch.generation == generation)
+                        partition.evict();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        };
+    }
+
+    private void closeIfFull(Partition<T, K, Batch<T>> partition) {
+        if (partition.getContents().count() >= count)
+            partition.evict();
+    }
+
+    /**
+     * Contents of a tumbling window, each clear closes
+     * the current window and starts a new generation
+     * so that a scheduled close of an earlier window is ignored.
+     * Tuples that were accumulated rather than inserted
+     * are only counted.
+     * Only accessed while holding the partition's lock.
+     */
+    @SuppressWarnings("serial")
+    static class Batch<T> extends ArrayList<T> {
+        long generation;
+        int accumulated;
+
+        Batch() {
+        }
+
+        Batch(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        /**
+         * Number of tuples in the current window.
+         */
+        int count() {
+            return size() + accumulated;
+        }
+
+        @Override
+        public void clear() {
+            generation++;
+            accumulated = 0;
+            super.clear();
+        }
+    }
+}